@@ -0,0 +1,74 @@
+#!/bin/sh
+# Genera un archivo AppCDS (Class Data Sharing) para arrancar el servicio mas rapido.
+#
+# Desempaqueta el jar en target/appcds, lo arranca una vez con el perfil faststart como entrenamiento (atiende una
+# peticion y se para) y guarda en target/appcds/app.jsa las clases que cargo. Los siguientes arranques las leen ya
+# preparadas del archivo en vez de buscarlas, verificarlas y parsearlas de nuevo.
+#
+# Requiere JDK 13 o superior y la base de datos accesible, como en un arranque normal. El archivo solo vale para la
+# misma JVM y el mismo classpath: hay que regenerarlo en cada build. Uso:
+#   ./mvnw package && ./appcds.sh
+#   java -XX:SharedArchiveFile=target/appcds/app.jsa -Dspring.profiles.active=faststart \
+#        -cp "$(cat target/appcds/classpath)" es.remorandev.poll.PollServiceApplication
+set -e
+
+cd "$(dirname "$0")"
+BASE_DIR=$(pwd)
+OUT_DIR="$BASE_DIR/target/appcds"
+MAIN_CLASS=es.remorandev.poll.PollServiceApplication
+TRAINING_PORT=${TRAINING_PORT:-5001}
+
+JAR=$(ls target/poll-service-*.jar 2>/dev/null | head -1)
+if [ -z "$JAR" ]; then
+    echo "No hay jar en target/, ejecuta antes ./mvnw package" >&2
+    exit 1
+fi
+
+# El classpath tiene que ser identico al generar y al usar el archivo, por eso se desempaqueta y se ordena.
+# CDS no admite directorios en el classpath: las clases de la aplicacion se empaquetan en su propio jar, junto con
+# el META-INF de la aplicacion (spring.factories) que el plugin de Spring Boot deja en la raiz del jar
+rm -rf "$OUT_DIR"
+mkdir -p "$OUT_DIR/app"
+(cd "$OUT_DIR/app" && unzip -q "$BASE_DIR/$JAR")
+mkdir -p "$OUT_DIR/app/BOOT-INF/classes/META-INF"
+cp "$OUT_DIR"/app/META-INF/*.factories "$OUT_DIR/app/BOOT-INF/classes/META-INF/" 2>/dev/null || true
+jar cf "$OUT_DIR/app/classes.jar" -C "$OUT_DIR/app/BOOT-INF/classes" .
+CLASSPATH="$OUT_DIR/app/classes.jar"
+for LIB in $(ls "$OUT_DIR"/app/BOOT-INF/lib/*.jar | sort); do
+    CLASSPATH="$CLASSPATH:$LIB"
+done
+echo "$CLASSPATH" > "$OUT_DIR/classpath"
+
+echo "Arranque de entrenamiento en el puerto $TRAINING_PORT"
+java -XX:ArchiveClassesAtExit="$OUT_DIR/app.jsa" -Dspring.profiles.active=faststart -cp "$CLASSPATH" "$MAIN_CLASS" \
+    --server.port="$TRAINING_PORT" > "$OUT_DIR/training.log" 2>&1 &
+PID=$!
+
+# La primera peticion crea los beans perezosos y carga las clases del camino de una peticion
+READY=false
+for i in $(seq 1 180); do
+    if ! kill -0 "$PID" 2>/dev/null; then
+        break
+    fi
+    if curl -sf -o /dev/null "http://localhost:$TRAINING_PORT/api/polls"; then
+        READY=true
+        break
+    fi
+    sleep 1
+done
+if [ "$READY" != true ]; then
+    kill "$PID" 2>/dev/null || true
+    echo "El arranque de entrenamiento no respondio, ver $OUT_DIR/training.log" >&2
+    exit 1
+fi
+curl -sf -o /dev/null "http://localhost:$TRAINING_PORT/api/polls/search?q=a" || true
+
+# Con SIGTERM la JVM termina de forma ordenada y escribe el archivo al salir
+kill -TERM "$PID"
+wait "$PID" || true
+
+if [ ! -s "$OUT_DIR/app.jsa" ]; then
+    echo "No se genero $OUT_DIR/app.jsa, ver $OUT_DIR/training.log" >&2
+    exit 1
+fi
+echo "Archivo AppCDS generado en $OUT_DIR/app.jsa"
@@ -0,0 +1,41 @@
+package es.remorandev.poll.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Ratio de aciertos de cada region de la cache de segundo nivel y de la cache de consultas, acumulado desde el
+ * arranque. Los contadores de aciertos y fallos los publica ya Micrometer (hibernate.second.level.cache.requests).
+ */
+@Configuration
+public class CacheMetricsConfig {
+
+    @Bean
+    public MeterBinder secondLevelCacheHitRatios(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        return registry -> {
+            for (String region : statistics.getSecondLevelCacheRegionNames()) {
+                Gauge.builder("hibernate.cache.hit_ratio", statistics, s -> {
+                    CacheRegionStatistics regionStatistics = s.getDomainDataRegionStatistics(region);
+                    return hitRatio(regionStatistics.getHitCount(), regionStatistics.getMissCount());
+                }).tag("region", region).register(registry);
+            }
+            Gauge.builder("hibernate.cache.hit_ratio", statistics,
+                    s -> hitRatio(s.getQueryCacheHitCount(), s.getQueryCacheMissCount()))
+                    .tag("region", "queries").register(registry);
+        };
+    }
+
+    private static double hitRatio(long hits, long misses) {
+        long requests = hits + misses;
+        return requests == 0 ? Double.NaN : (double) hits / requests;
+    }
+}
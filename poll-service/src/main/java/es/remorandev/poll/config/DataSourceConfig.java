@@ -0,0 +1,60 @@
+package es.remorandev.poll.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import es.remorandev.poll.datasource.ReadYourWritesTracker;
+import es.remorandev.poll.datasource.ReplicaRoutingDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configura el datasource primario (spring.datasource) y las replicas de lectura (app.datasource.replicas).
+ * El datasource que usan JPA y JdbcTemplate es un proxy perezoso sobre ReplicaRoutingDataSource: la conexion
+ * real se pide al ejecutar la primera sentencia, cuando ya se sabe si la transaccion es de solo lectura.
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class DataSourceConfig {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment, ReplicaProperties replicaProperties,
+                                 ReadYourWritesTracker readYourWritesTracker) {
+        HikariDataSource primaryDataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primaryDataSource));
+        primaryDataSource.setPoolName("primary");
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaProperties.getReplicas().size(); i++) {
+            replicas.add(createReplica(i, replicaProperties.getReplicas().get(i), replicaProperties, primaryDataSource));
+        }
+
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(
+                primaryDataSource, replicas, readYourWritesTracker, replicaProperties.getReplicaRetryMs()));
+    }
+
+    private HikariDataSource createReplica(int index, ReplicaProperties.Replica replica, ReplicaProperties replicaProperties,
+                                           HikariDataSource primaryDataSource) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica-" + index);
+        dataSource.setJdbcUrl(replica.getUrl());
+        dataSource.setUsername(replica.getUsername() != null ? replica.getUsername() : primaryDataSource.getUsername());
+        dataSource.setPassword(replica.getPassword() != null ? replica.getPassword() : primaryDataSource.getPassword());
+        dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+        dataSource.setReadOnly(true);
+        // Mismas propiedades del driver que el primario, como el registro de consultas lentas
+        dataSource.setDataSourceProperties(primaryDataSource.getDataSourceProperties());
+        // Una replica caida no debe impedir el arranque ni bloquear peticiones: se usa el primario
+        dataSource.setInitializationFailTimeout(-1);
+        dataSource.setConnectionTimeout(replicaProperties.getConnectionTimeoutMs());
+        return dataSource;
+    }
+}
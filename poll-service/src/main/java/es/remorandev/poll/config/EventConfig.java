@@ -0,0 +1,23 @@
+package es.remorandev.poll.config;
+
+import es.remorandev.poll.event.DomainEventBus;
+import es.remorandev.poll.event.DomainEventListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Bus de eventos de dominio: todos los beans DomainEventListener reciben los eventos, cada uno en su hilo.
+ */
+@Configuration
+public class EventConfig {
+
+    @Bean
+    public DomainEventBus domainEventBus(List<DomainEventListener> listeners, MeterRegistry meterRegistry,
+                                         @Value("${app.events.bufferSize}") int bufferSize) {
+        return new DomainEventBus(listeners, bufferSize, meterRegistry);
+    }
+}
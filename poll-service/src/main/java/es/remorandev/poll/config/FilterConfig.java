@@ -0,0 +1,36 @@
+package es.remorandev.poll.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.remorandev.poll.security.JwtTokenProvider;
+import es.remorandev.poll.web.AdaptiveConcurrencyLimiter;
+import es.remorandev.poll.web.ConcurrencyLimitFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Registro de los filtros de servlet que se ejecutan antes de la cadena de Spring Security.
+ */
+@Configuration
+public class FilterConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.concurrencyLimit.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            JwtTokenProvider tokenProvider, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${app.concurrencyLimit.initialLimit}") int initialLimit,
+            @Value("${app.concurrencyLimit.minLimit}") int minLimit,
+            @Value("${app.concurrencyLimit.maxLimit}") int maxLimit,
+            @Value("${app.concurrencyLimit.windowMs}") long windowMs) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, windowMs);
+
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(limiter, tokenProvider, objectMapper, meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
@@ -0,0 +1,24 @@
+package es.remorandev.poll.config;
+
+import es.remorandev.poll.journal.VoteJournal;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Diario local de votos en app.journal.directory; recibe los votos como listener del bus de eventos.
+ */
+@Configuration
+public class JournalConfig {
+
+    @Bean
+    public VoteJournal voteJournal(MeterRegistry meterRegistry,
+                                   @Value("${app.journal.directory}") String directory,
+                                   @Value("${app.journal.recordsPerSegment}") int recordsPerSegment) throws IOException {
+        return new VoteJournal(Paths.get(directory), recordsPerSegment, meterRegistry);
+    }
+}
@@ -0,0 +1,46 @@
+package es.remorandev.poll.config;
+
+import es.remorandev.poll.PollServiceApplication;
+import es.remorandev.poll.datasource.ReadYourWritesTracker;
+import es.remorandev.poll.journal.VoteJournal;
+import es.remorandev.poll.security.RateLimiter;
+import es.remorandev.poll.service.IdempotencyService;
+import es.remorandev.poll.service.PollExpirationWatcher;
+import es.remorandev.poll.service.PollSearchService;
+import es.remorandev.poll.service.TrendingService;
+import es.remorandev.poll.service.VoteArchiveService;
+import es.remorandev.poll.service.VotePartitionManager;
+import es.remorandev.poll.tally.ClusterVoteTally;
+import es.remorandev.poll.tally.SnapshotVoteTally;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Beans que se crean al arrancar aunque spring.main.lazy-initialization este activo (perfil faststart).
+ *
+ * Son los que trabajan sin que nadie los pida: tareas @Scheduled y estado que se carga en @PostConstruct (indice de
+ * busqueda, tendencias, recuento en cluster o desde la instantanea, diario de votos), ademas de la zona horaria por
+ * defecto que fija la aplicacion. Sin ellos las tareas no se programarian hasta el primer uso y la primera peticion
+ * pagaria la carga.
+ */
+@Configuration
+public class LazyInitializationConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerBeansExcludeFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(
+                PollServiceApplication.class,
+                VoteArchiveService.class,
+                VotePartitionManager.class,
+                PollExpirationWatcher.class,
+                PollSearchService.class,
+                TrendingService.class,
+                IdempotencyService.class,
+                ReadYourWritesTracker.class,
+                RateLimiter.class,
+                ClusterVoteTally.class,
+                SnapshotVoteTally.class,
+                VoteJournal.class);
+    }
+}
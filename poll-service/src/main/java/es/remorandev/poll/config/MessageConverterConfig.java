@@ -0,0 +1,30 @@
+package es.remorandev.poll.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Convertidores Smile ({@code application/x-jackson-smile}) y CBOR ({@code application/cbor}) para los clientes
+ * que los pidan en la cabecera Accept; JSON sigue siendo el formato por defecto.
+ *
+ * Se construyen con el Jackson2ObjectMapperBuilder de Spring Boot para que respeten las propiedades spring.jackson.*
+ * (fechas ISO en UTC) igual que el convertidor JSON. Sustituyen a los que Spring MVC registra por defecto.
+ */
+@Configuration
+public class MessageConverterConfig {
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.createXmlMapper(false).factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.createXmlMapper(false).factory(new CBORFactory()).build());
+    }
+}
@@ -0,0 +1,93 @@
+package es.remorandev.poll.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuracion de las replicas de lectura (app.datasource.*). Sin replicas, todo va al primario.
+ */
+@ConfigurationProperties(prefix = "app.datasource")
+public class ReplicaProperties {
+    private List<Replica> replicas = new ArrayList<>();
+
+    // Tiempo durante el que las lecturas de un usuario van al primario despues de que escriba
+    private long stickyWindowMs = 5000;
+
+    // Tiempo durante el que una replica que ha fallado deja de recibir lecturas
+    private long replicaRetryMs = 30000;
+
+    private long connectionTimeoutMs = 1000;
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<Replica> replicas) {
+        this.replicas = replicas;
+    }
+
+    public long getStickyWindowMs() {
+        return stickyWindowMs;
+    }
+
+    public void setStickyWindowMs(long stickyWindowMs) {
+        this.stickyWindowMs = stickyWindowMs;
+    }
+
+    public long getReplicaRetryMs() {
+        return replicaRetryMs;
+    }
+
+    public void setReplicaRetryMs(long replicaRetryMs) {
+        this.replicaRetryMs = replicaRetryMs;
+    }
+
+    public long getConnectionTimeoutMs() {
+        return connectionTimeoutMs;
+    }
+
+    public void setConnectionTimeoutMs(long connectionTimeoutMs) {
+        this.connectionTimeoutMs = connectionTimeoutMs;
+    }
+
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package es.remorandev.poll.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita las tareas periodicas (@Scheduled), como el archivado de votos.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,11 +1,18 @@
 package es.remorandev.poll.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import es.remorandev.poll.security.CustomUserDetailsService;
 import es.remorandev.poll.security.JwtAuthenticationEntryPoint;
 import es.remorandev.poll.security.JwtAuthenticationFilter;
+import es.remorandev.poll.security.PublicReadRequestMatcher;
+import es.remorandev.poll.security.RateLimitFilter;
+import es.remorandev.poll.security.RateLimiter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.BeanIds;
@@ -18,6 +25,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.header.HeaderWriterFilter;
 
 @Configuration
 @EnableWebSecurity
@@ -33,11 +41,25 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     JwtAuthenticationEntryPoint unauthorizedHandler;
 
+    @Autowired
+    RateLimiter rateLimiter;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
         return new JwtAuthenticationFilter();
     }
 
+    // El filtro JWT solo debe ejecutarse dentro de la cadena de seguridad, no registrarse ademas como filtro de servlet
+    @Bean
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthenticationFilterRegistration(JwtAuthenticationFilter filter) {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
 /*
     The AuthenticationManagerBuilder can be use to build in-memory authentication,
     LDAP authentication, JDBC authentication, or add your custom authentication provider.
@@ -90,10 +112,44 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .permitAll()
                 .antMatchers(HttpMethod.GET, "/api/polls/**", "/api/users/**")
                 .permitAll()
+                // Los errores de las lecturas publicas (cadena reducida, sin autorizacion) se resuelven en /error
+                .antMatchers("/error")
+                .permitAll()
                 .anyRequest()
                 .authenticated();
 
         // Add our custom JWT security filter
         http.addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
+        // Rate limiting, once the user (if any) is known
+        http.addFilterAfter(new RateLimitFilter(rateLimiter, objectMapper), JwtAuthenticationFilter.class);
+    }
+
+    /**
+     * Cadena reducida para las lecturas publicas anonimas (ver PublicReadRequestMatcher): sin contexto de seguridad,
+     * JWT, sesion, autenticacion anonima ni autorizacion; solo las cabeceras de seguridad de las respuestas y el
+     * limite de peticiones, que sin usuario se aplica por IP. Se evalua antes que la cadena principal.
+     */
+    @Configuration
+    @Order(1)
+    @ConditionalOnProperty(name = "app.security.publicReadFastPath", havingValue = "true", matchIfMissing = true)
+    public static class PublicReadSecurityConfig extends WebSecurityConfigurerAdapter {
+        @Autowired
+        RateLimiter rateLimiter;
+
+        @Autowired
+        ObjectMapper objectMapper;
+
+        public PublicReadSecurityConfig() {
+            super(true);
+        }
+
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                    .requestMatcher(new PublicReadRequestMatcher())
+                    .headers();
+
+            http.addFilterAfter(new RateLimitFilter(rateLimiter, objectMapper), HeaderWriterFilter.class);
+        }
     }
 }
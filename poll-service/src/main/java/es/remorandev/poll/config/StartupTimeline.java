@@ -0,0 +1,115 @@
+package es.remorandev.poll.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringApplicationRunListener;
+import org.springframework.boot.web.servlet.context.ServletWebServerInitializedEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.web.context.support.ServletRequestHandledEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registra los hitos del arranque, en milisegundos desde que arranco la JVM, hasta la primera peticion atendida.
+ *
+ * Al terminar la primera peticion escribe una linea con cada fase y lo que ha durado, p. ej.:
+ * jvm=410 environment=+620 context=+95 beans=+880 flyway=+1900 jpa=+5400 webServer=+2100 refreshed=+300 ready=+40
+ * firstRequest=+900. Se registra en META-INF/spring.factories para ver tambien lo que ocurre antes que el contexto.
+ */
+public class StartupTimeline implements SpringApplicationRunListener {
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimeline.class);
+
+    private final Map<String, Long> marks = new LinkedHashMap<>();
+    private final AtomicBoolean firstRequestHandled = new AtomicBoolean();
+
+    public StartupTimeline(SpringApplication application, String[] args) {
+    }
+
+    @Override
+    public void starting() {
+        mark("jvm");
+    }
+
+    @Override
+    public void environmentPrepared(ConfigurableEnvironment environment) {
+        mark("environment");
+    }
+
+    @Override
+    public void contextPrepared(ConfigurableApplicationContext context) {
+        mark("context");
+    }
+
+    @Override
+    public void contextLoaded(ConfigurableApplicationContext context) {
+        mark("beans");
+        context.getBeanFactory().addBeanPostProcessor(new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("flywayInitializer".equals(beanName)) {
+                    mark("flyway");
+                } else if ("entityManagerFactory".equals(beanName)) {
+                    mark("jpa");
+                }
+                return bean;
+            }
+        });
+        context.addApplicationListener((ApplicationEvent event) -> {
+            if (event instanceof ServletWebServerInitializedEvent) {
+                mark("webServer");
+            } else if (event instanceof ServletRequestHandledEvent && this.firstRequestHandled.compareAndSet(false, true)) {
+                mark("firstRequest");
+                logger.info("Startup timeline (ms since JVM start): {}", describe());
+            }
+        });
+    }
+
+    @Override
+    public void started(ConfigurableApplicationContext context) {
+        mark("refreshed");
+    }
+
+    @Override
+    public void running(ConfigurableApplicationContext context) {
+        mark("ready");
+        logger.info("Startup timeline (ms since JVM start): {}", describe());
+    }
+
+    @Override
+    public void failed(ConfigurableApplicationContext context, Throwable exception) {
+        mark("failed");
+        logger.info("Startup timeline (ms since JVM start): {}", describe());
+    }
+
+    private synchronized void mark(String phase) {
+        this.marks.putIfAbsent(phase, ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+
+    /**
+     * Hitos en orden de llegada: el primero en absoluto y el resto como incremento sobre el anterior.
+     */
+    private synchronized String describe() {
+        StringBuilder timeline = new StringBuilder();
+        long previous = -1;
+        for (Map.Entry<String, Long> mark : this.marks.entrySet()) {
+            if (timeline.length() > 0) {
+                timeline.append(' ');
+            }
+            timeline.append(mark.getKey()).append('=');
+            if (previous >= 0) {
+                timeline.append('+');
+            }
+            timeline.append(previous >= 0 ? mark.getValue() - previous : mark.getValue());
+            previous = mark.getValue();
+        }
+        long total = previous;
+        return timeline.append(" (total ").append(total).append(" ms)").toString();
+    }
+}
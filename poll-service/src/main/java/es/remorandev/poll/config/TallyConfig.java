@@ -0,0 +1,66 @@
+package es.remorandev.poll.config;
+
+import es.remorandev.poll.repository.VoteRepository;
+import es.remorandev.poll.tally.ClusterVoteTally;
+import es.remorandev.poll.tally.DatabaseVoteTally;
+import es.remorandev.poll.tally.JdbcTallyTransport;
+import es.remorandev.poll.tally.SnapshotVoteTally;
+import es.remorandev.poll.tally.TallyTransport;
+import es.remorandev.poll.tally.VoteTally;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Paths;
+
+/**
+ * Seleccion del recuento de votos segun app.tally.mode: database (por defecto), cluster o snapshot.
+ * En modo cluster el transporte se puede sustituir declarando otro bean TallyTransport.
+ */
+@Configuration
+public class TallyConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tally.mode", havingValue = "database", matchIfMissing = true)
+    public VoteTally databaseVoteTally(VoteRepository voteRepository) {
+        return new DatabaseVoteTally(voteRepository);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tally.mode", havingValue = "cluster")
+    @ConditionalOnMissingBean(TallyTransport.class)
+    public TallyTransport jdbcTallyTransport(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                             @Value("${app.tally.commitLagMs}") long commitLagMs) {
+        return new JdbcTallyTransport(jdbcTemplate, transactionTemplate, commitLagMs);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tally.mode", havingValue = "cluster")
+    public ClusterVoteTally clusterVoteTally(TallyTransport tallyTransport,
+                                             @Value("${app.tally.nodeId:}") String nodeId,
+                                             @Value("${server.port}") int serverPort,
+                                             @Value("${app.tally.rebuildIntervalMs}") long rebuildIntervalMs,
+                                             @Value("${app.tally.commitLagMs}") long commitLagMs)
+            throws UnknownHostException {
+        if (!StringUtils.hasText(nodeId)) {
+            nodeId = InetAddress.getLocalHost().getHostName() + ":" + serverPort;
+        }
+        return new ClusterVoteTally(nodeId, tallyTransport, rebuildIntervalMs, commitLagMs);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tally.mode", havingValue = "snapshot")
+    public SnapshotVoteTally snapshotVoteTally(JdbcTemplate jdbcTemplate, VoteRepository voteRepository,
+                                               @Value("${app.tally.snapshotDirectory}") String snapshotDirectory,
+                                               @Value("${app.tally.commitLagMs}") long commitLagMs) {
+        return new SnapshotVoteTally(jdbcTemplate, new DatabaseVoteTally(voteRepository),
+                Paths.get(snapshotDirectory, "vote-tally.snapshot"), commitLagMs);
+    }
+}
@@ -0,0 +1,80 @@
+package es.remorandev.poll.controller;
+
+import es.remorandev.poll.journal.VoteJournal;
+import es.remorandev.poll.payload.ApiResponse;
+import es.remorandev.poll.payload.ImportReport;
+import es.remorandev.poll.payload.JournalReplayReport;
+import es.remorandev.poll.service.BulkImportService;
+import es.remorandev.poll.service.MultiSelectVoteService;
+import es.remorandev.poll.tally.VoteTally;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Autowired
+    private VoteJournal voteJournal;
+
+    @Autowired
+    private VoteTally voteTally;
+
+    @Autowired
+    private MultiSelectVoteService multiSelectVoteService;
+
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ImportReport> importRecords(HttpServletRequest request) throws IOException {
+        // El cuerpo se lee en streaming: puede tener millones de lineas
+        ImportReport report = this.bulkImportService.importRecords(request.getInputStream());
+
+        HttpStatus status = report.getAbortedBy() == null ? HttpStatus.OK : HttpStatus.INTERNAL_SERVER_ERROR;
+        return ResponseEntity.status(status).body(report);
+    }
+
+    @PostMapping("/journal/replay")
+    @PreAuthorize("hasRole('ADMIN')")
+    public JournalReplayReport replayJournal(@RequestParam(value = "pollId", required = false) Long pollId)
+            throws IOException {
+        // Recorre el diario entero; con pollId reconstruye ademas el recuento de esa encuesta
+        Map<Long, Long> voteCounts = pollId != null ? new TreeMap<>() : null;
+        List<Long> pollChoiceIds = pollId != null
+                ? this.multiSelectVoteService.choiceIdsByPoll(Collections.singletonList(pollId))
+                .getOrDefault(pollId, Collections.emptyList())
+                : Collections.emptyList();
+        long start = System.currentTimeMillis();
+        VoteJournal.ReplayResult result = this.voteJournal.replay((votePollId, choiceId, userId, votedAtMillis, selection) -> {
+            if (voteCounts != null && votePollId == pollId) {
+                if (selection == 0) {
+                    voteCounts.merge(choiceId, 1L, Long::sum);
+                } else {
+                    MultiSelectVoteService.toChoiceIds(pollChoiceIds, selection)
+                            .forEach(selectedChoiceId -> voteCounts.merge(selectedChoiceId, 1L, Long::sum));
+                }
+            }
+        });
+
+        return new JournalReplayReport(result.getSegments(), result.getRecords(), result.getCorruptRecords(),
+                System.currentTimeMillis() - start, pollId, voteCounts);
+    }
+
+    @PostMapping("/tally/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse rebuildTally() {
+        this.voteTally.rebuild();
+        return new ApiResponse(true, "Vote tally rebuilt");
+    }
+}
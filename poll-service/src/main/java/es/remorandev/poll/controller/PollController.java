@@ -1,24 +1,39 @@
 package es.remorandev.poll.controller;
 
+import es.remorandev.poll.exception.ResourceNotFoundException;
 import es.remorandev.poll.model.Poll;
+import es.remorandev.poll.model.PollVersion;
 import es.remorandev.poll.payload.*;
 import es.remorandev.poll.repository.PollRepository;
 import es.remorandev.poll.repository.UserRepository;
 import es.remorandev.poll.repository.VoteRepository;
 import es.remorandev.poll.security.CurrentUser;
 import es.remorandev.poll.security.UserPrincipal;
+import es.remorandev.poll.service.IdempotencyService;
 import es.remorandev.poll.service.PollService;
+import es.remorandev.poll.service.VoteExportService;
 import es.remorandev.poll.util.AppConstants;
+import es.remorandev.poll.util.HttpCaching;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.Valid;
 import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/polls")
@@ -35,39 +50,130 @@ public class PollController {
     @Autowired
     private PollService pollService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private VoteExportService voteExportService;
+
+    @Value("${app.http.expiredPollMaxAgeSeconds}")
+    private long expiredPollMaxAgeSeconds;
+
     private static final Logger logger = LoggerFactory.getLogger(PollController.class);
 
     @GetMapping
     public PagedResponse<PollResponse> getPolls(@CurrentUser UserPrincipal currenUser,
                                                 @RequestParam(value = "page", defaultValue = AppConstants.DEFAULT_PAGE_NUMBER) int page,
-                                                @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size) {
+                                                @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size,
+                                                ServletWebRequest webRequest) {
+        Instant now = Instant.now();
+        Page<PollVersion> versions = this.pollService.getPollVersions(page, size);
+        String eTag = HttpCaching.feedETag(versions.getContent(), versions.getTotalElements(), page, size, currenUser, now,
+                HttpCaching.representationOf(webRequest.getRequest()));
+        // La encuesta mas reciente cuenta para que una pagina desplazada por una encuesta nueva no parezca sin cambios
+        Instant lastModified = HttpCaching.lastModified(versions.getContent(), this.pollService.getLatestPollCreatedAt(), now);
+
+        HttpCaching.applyCacheControl(webRequest.getResponse(), HttpCaching.feedCacheControl(currenUser));
+        if (webRequest.checkNotModified(eTag, lastModified == null ? -1 : lastModified.toEpochMilli())) {
+            return null;
+        }
+
         return pollService.getAllPolls(currenUser, page, size);
     }
 
     @PostMapping
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<?> createPoll(@Valid @RequestBody PollRequest pollRequest) {
-        Poll poll = this.pollService.createPoll(pollRequest);
+    public ResponseEntity<?> createPoll(@CurrentUser UserPrincipal currentUser,
+                                        @RequestHeader(value = AppConstants.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                        @Valid @RequestBody PollRequest pollRequest) {
+        String fingerprint = this.idempotencyService.fingerprint("createPoll",
+                pollRequest.getQuestion(),
+                pollRequest.getChoices() == null ? null : pollRequest.getChoices().stream().map(ChoiceRequest::getText).collect(Collectors.toList()),
+                pollRequest.getPollLength().getDays(),
+                pollRequest.getPollLength().getHour(),
+                pollRequest.getType());
+
+        return this.idempotencyService.execute(idempotencyKey, currentUser.getId(), fingerprint, () -> {
+            Poll poll = this.pollService.createPoll(pollRequest);
+
+            URI location = ServletUriComponentsBuilder
+                    .fromCurrentRequest().path("/{pollId}")
+                    .buildAndExpand(poll.getId()).toUri();
+
+            return ResponseEntity
+                    .created(location)
+                    .body(new ApiResponse(true, "Poll Created Successfully"));
+        });
+    }
 
-        URI location = ServletUriComponentsBuilder
-                .fromCurrentRequest().path("/{pollId}")
-                .buildAndExpand(poll.getId()).toUri();
+    @GetMapping("/trending")
+    public List<PollResponse> getTrendingPolls(@CurrentUser UserPrincipal currentUser,
+                                               @RequestParam(value = "window", defaultValue = "1h") String window,
+                                               @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return this.pollService.getTrendingPolls(currentUser, window, limit);
+    }
 
-        return ResponseEntity
-                .created(location)
-                .body(new ApiResponse(true, "Poll Created Successfully"));
+    @GetMapping("/search")
+    public CursorPagedResponse<PollResponse> searchPolls(@CurrentUser UserPrincipal currentUser,
+                                                         @RequestParam(value = "q") String query,
+                                                         @RequestParam(value = "cursor", required = false) String cursor,
+                                                         @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size) {
+        return this.pollService.searchPolls(currentUser, query, cursor, size);
     }
 
     @GetMapping("/{pollId}")
     public PollResponse getPollById(@CurrentUser UserPrincipal currentUser,
-                                    @PathVariable Long pollId) {
-        return this.pollService.getPollById(pollId, currentUser);
+                                    @PathVariable Long pollId,
+                                    ServletWebRequest webRequest) {
+        Instant now = Instant.now();
+        String representation = HttpCaching.representationOf(webRequest.getRequest());
+        PollVersion version = this.pollService.getPollVersion(pollId);
+        String eTag = HttpCaching.pollETag(version, currentUser, now, representation);
+
+        HttpCaching.applyCacheControl(webRequest.getResponse(), HttpCaching.pollCacheControl(
+                version, currentUser, now, Duration.ofSeconds(this.expiredPollMaxAgeSeconds)));
+        if (webRequest.checkNotModified(eTag, version.getLastModified(now).toEpochMilli())) {
+            return null;
+        }
+
+        // El cuerpo puede venir de una carga compartida anterior: el ETag y Last-Modified describen lo cargado
+        PollService.VersionedPoll poll = this.pollService.getPollById(pollId, currentUser);
+        webRequest.getResponse().setHeader(HttpHeaders.ETAG,
+                HttpCaching.pollETag(poll.getVersion(), currentUser, now, representation));
+        webRequest.getResponse().setDateHeader(HttpHeaders.LAST_MODIFIED, poll.getVersion().getLastModified(now).toEpochMilli());
+        return poll.getResponse();
+    }
+
+    @GetMapping("/{pollId}/timeline")
+    public PollTimelineResponse getPollTimeline(@PathVariable Long pollId,
+                                                @RequestParam(value = "resolution", defaultValue = "hour") String resolution) {
+        return this.pollService.getPollTimeline(pollId, resolution);
+    }
+
+    @GetMapping("/{pollId}/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportVotes(@PathVariable Long pollId,
+                                                             @RequestParam(value = "format", defaultValue = "csv") String format) {
+        VoteExportService.Format exportFormat = VoteExportService.Format.fromCode(format);
+        Poll poll = this.pollRepository.findById(pollId)
+                .orElseThrow(() -> new ResourceNotFoundException("Poll", "id", pollId));
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"poll-" + pollId + "-votes." + exportFormat.getCode() + "\"")
+                .body(outputStream -> this.voteExportService.export(poll, exportFormat, outputStream));
     }
 
     @PostMapping("/{pollId}/votes")
     @PreAuthorize("hasRole('USER')")
     public PollResponse castVote(@CurrentUser UserPrincipal currentUser, @PathVariable("pollId") Long pollId,
+                                 @RequestHeader(value = AppConstants.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
                                  @Valid @RequestBody VoteRequest voteRequest){
-        return this.pollService.castVoteAndGetUpdatedPoll(pollId, voteRequest, currentUser);
+        String fingerprint = this.idempotencyService.fingerprint("castVote",
+                pollId, voteRequest.getChoiceId(), voteRequest.getRanking(), voteRequest.getChoiceIds());
+
+        return this.idempotencyService.execute(idempotencyKey, currentUser.getId(), fingerprint,
+                () -> this.pollService.castVoteAndGetUpdatedPoll(pollId, voteRequest, currentUser));
     }
 }
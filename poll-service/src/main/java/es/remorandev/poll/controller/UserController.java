@@ -1,35 +1,26 @@
 package es.remorandev.poll.controller;
 
-import es.remorandev.poll.exception.ResourceNotFoundException;
-import es.remorandev.poll.model.User;
+import es.remorandev.poll.payload.CursorPagedResponse;
+import es.remorandev.poll.payload.PollResponse;
 import es.remorandev.poll.payload.UserIdentityAvailability;
 import es.remorandev.poll.payload.UserProfile;
 import es.remorandev.poll.payload.UserSummary;
-import es.remorandev.poll.repository.PollRepository;
-import es.remorandev.poll.repository.UserRepository;
-import es.remorandev.poll.repository.VoteRepository;
 import es.remorandev.poll.security.CurrentUser;
 import es.remorandev.poll.security.UserPrincipal;
 import es.remorandev.poll.service.PollService;
+import es.remorandev.poll.service.UserService;
+import es.remorandev.poll.util.AppConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Optional;
-
 @RestController
 @RequestMapping("/api")
 public class UserController {
     @Autowired
-    private UserRepository userRepository;
-
-    @Autowired
-    private PollRepository pollRepository;
-
-    @Autowired
-    private VoteRepository voteRepository;
+    private UserService userService;
 
     @Autowired
     private PollService pollService;
@@ -46,26 +37,34 @@ public class UserController {
 
     @GetMapping("/user/checkUsernameAvailability")
     public UserIdentityAvailability checkUsernameAvailability(@RequestParam(name = "username") String username){
-        Boolean isAvailable = !this.userRepository.existsByUsername(username);
+        Boolean isAvailable = this.userService.isUsernameAvailable(username);
         return new UserIdentityAvailability(isAvailable);
     }
 
     @GetMapping("/user/checkEmailAvailability")
     public UserIdentityAvailability checkEmailAvailability(@RequestParam(name = "email") String email){
-        Boolean isAvailable = !this.userRepository.existsByUsername(email);
+        Boolean isAvailable = this.userService.isEmailAvailable(email);
         return new UserIdentityAvailability(isAvailable);
     }
 
     @GetMapping("/user/{username}")
     public UserProfile getUserProfile(@PathVariable(value = "username") String username){
-        User user = this.userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
-
-        long pollCount = this.pollRepository.countByCreatedBy(user.getId());
-        long voteCount = this.voteRepository.countByUserId(user.getId());
+        return this.userService.getUserProfile(username);
+    }
 
-        UserProfile userProfile = new UserProfile(user.getId(), user.getUsername(), user.getName(), user.getCreatedAt(), pollCount, voteCount);
+    @GetMapping("/users/{username}/polls")
+    public CursorPagedResponse<PollResponse> getPollsCreatedBy(@PathVariable(value = "username") String username,
+                                                               @CurrentUser UserPrincipal currentUser,
+                                                               @RequestParam(value = "cursor", required = false) String cursor,
+                                                               @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size) {
+        return this.pollService.getPollsCreatedBy(username, currentUser, cursor, size);
+    }
 
-        return userProfile;
+    @GetMapping("/users/{username}/votes")
+    public CursorPagedResponse<PollResponse> getPollsVotedBy(@PathVariable(value = "username") String username,
+                                                             @CurrentUser UserPrincipal currentUser,
+                                                             @RequestParam(value = "cursor", required = false) String cursor,
+                                                             @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size) {
+        return this.pollService.getPollsVotedBy(username, currentUser, cursor, size);
     }
 }
@@ -0,0 +1,61 @@
+package es.remorandev.poll.datasource;
+
+import es.remorandev.poll.config.ReplicaProperties;
+import es.remorandev.poll.security.UserPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Recuerda que usuarios han escrito recientemente para que sus lecturas vayan al primario durante
+ * app.datasource.stickyWindowMs, y asi vean su propio voto aunque las replicas vayan con retraso.
+ */
+@Component
+public class ReadYourWritesTracker {
+    private final ConcurrentMap<Long, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    private final long stickyWindowMs;
+
+    @Autowired
+    public ReadYourWritesTracker(ReplicaProperties replicaProperties) {
+        this.stickyWindowMs = replicaProperties.getStickyWindowMs();
+    }
+
+    public void markWrite(Long userId) {
+        if (userId != null) {
+            this.stickyUntil.put(userId, System.currentTimeMillis() + this.stickyWindowMs);
+        }
+    }
+
+    public boolean isSticky(Long userId) {
+        if (userId == null) {
+            return false;
+        }
+        Long until = this.stickyUntil.get(userId);
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    public boolean isCurrentUserSticky() {
+        if (this.stickyUntil.isEmpty()) {
+            return false;
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal)) {
+            return false;
+        }
+
+        return isSticky(((UserPrincipal) authentication.getPrincipal()).getId());
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        this.stickyUntil.values().removeIf(until -> until <= now);
+    }
+}
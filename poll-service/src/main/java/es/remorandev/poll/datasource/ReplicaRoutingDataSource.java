@@ -0,0 +1,79 @@
+package es.remorandev.poll.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Envia las transacciones de solo lectura (@Transactional(readOnly = true)) a las replicas, repartidas
+ * en round-robin, y todo lo demas al primario. Los usuarios que acaban de escribir siguen leyendo del
+ * primario (ver ReadYourWritesTracker). Si una replica no da conexion se aparta durante replicaRetryMs
+ * y la lectura se intenta en la siguiente o, en ultimo caso, en el primario.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final long replicaRetryMs;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final AtomicLongArray replicaDownUntil;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas,
+                                    ReadYourWritesTracker readYourWritesTracker, long replicaRetryMs) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.replicaRetryMs = replicaRetryMs;
+        this.replicaDownUntil = new AtomicLongArray(replicas.size());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!shouldReadFromReplica()) {
+            return this.primary.getConnection();
+        }
+
+        int size = this.replicas.size();
+        int start = Math.floorMod(this.nextReplica.getAndIncrement(), size);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (this.replicaDownUntil.get(index) > now) {
+                continue;
+            }
+
+            try {
+                return this.replicas.get(index).getConnection();
+            } catch (SQLException ex) {
+                this.replicaDownUntil.set(index, now + this.replicaRetryMs);
+                logger.warn("Replica {} is unavailable, skipping it for {} ms: {}", index, this.replicaRetryMs, ex.getMessage());
+            }
+        }
+
+        return this.primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return this.primary.getConnection(username, password);
+    }
+
+    private boolean shouldReadFromReplica() {
+        return !this.replicas.isEmpty()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !this.readYourWritesTracker.isCurrentUserSticky();
+    }
+}
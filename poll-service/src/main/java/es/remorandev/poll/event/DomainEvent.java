@@ -0,0 +1,8 @@
+package es.remorandev.poll.event;
+
+/**
+ * Hecho ya confirmado en la base de datos que se publica en el DomainEventBus. Los eventos son inmutables:
+ * los leen varios hilos a la vez.
+ */
+public interface DomainEvent {
+}
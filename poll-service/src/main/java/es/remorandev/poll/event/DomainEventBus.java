@@ -0,0 +1,208 @@
+package es.remorandev.poll.event;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bus de eventos en proceso sobre un anillo preasignado, para que lo que reacciona a un voto o a una encuesta
+ * (tendencias, linea temporal, indice de busqueda...) no se ejecute en el hilo de la peticion.
+ *
+ * Los productores reservan la siguiente secuencia con un incremento atomico, escriben el evento en su hueco y lo
+ * marcan como publicado con la secuencia. Cada listener tiene un hilo que lee en lotes todo lo publicado despues de
+ * su propia secuencia, que solo escribe el. No hay colas ni locks: la memoria es el anillo (app.events.bufferSize
+ * huecos) y, si el listener mas lento lleva una vuelta de retraso, el productor espera a que libere un hueco.
+ *
+ * Los eventos publicados dentro de una transaccion se entregan al confirmarse. Los pendientes se entregan al parar
+ * la aplicacion; los que no se hayan consumido si la JVM cae se pierden.
+ */
+public class DomainEventBus {
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final List<Consumer> consumers = new ArrayList<>();
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong producerWaits = new AtomicLong();
+
+    // Minimo de las secuencias de los consumidores visto por ultima vez; nunca es mayor que el real
+    private volatile long gatingSequence = -1;
+    private volatile boolean running;
+
+    private static final Logger logger = LoggerFactory.getLogger(DomainEventBus.class);
+
+    public DomainEventBus(List<DomainEventListener> listeners, int bufferSize, MeterRegistry meterRegistry) {
+        if (bufferSize < 2 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Event buffer size must be a power of two, got " + bufferSize);
+        }
+
+        this.slots = new Slot[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            this.slots[i] = new Slot();
+        }
+        this.mask = bufferSize - 1;
+
+        for (DomainEventListener listener : listeners) {
+            this.consumers.add(new Consumer(listener));
+        }
+
+        if (meterRegistry != null) {
+            for (Consumer consumer : this.consumers) {
+                Gauge.builder("app.events.lag", consumer, c -> this.claimed.get() - c.sequence)
+                        .description("Eventos publicados que el listener aun no ha consumido")
+                        .tag("listener", consumer.name)
+                        .register(meterRegistry);
+            }
+            Gauge.builder("app.events.producer.waits", this.producerWaits, AtomicLong::get)
+                    .description("Publicaciones que esperaron a que el listener mas lento liberase un hueco")
+                    .register(meterRegistry);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        this.running = true;
+        for (Consumer consumer : this.consumers) {
+            consumer.thread.start();
+        }
+    }
+
+    /**
+     * Publica el evento al confirmarse la transaccion en curso o, si no hay ninguna, en el momento.
+     */
+    public void publish(DomainEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    enqueue(event);
+                }
+            });
+        } else {
+            enqueue(event);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.running = false;
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+        for (Consumer consumer : this.consumers) {
+            LockSupport.unpark(consumer.thread);
+            try {
+                consumer.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (consumer.thread.isAlive()) {
+                logger.warn("Event listener {} did not finish in time, {} events were not delivered",
+                        consumer.name, this.claimed.get() - consumer.sequence);
+            }
+        }
+    }
+
+    private void enqueue(DomainEvent event) {
+        if (this.consumers.isEmpty()) {
+            return;
+        }
+
+        long sequence = this.claimed.incrementAndGet();
+        long wrapPoint = sequence - this.slots.length;
+        if (wrapPoint > this.gatingSequence) {
+            long minimum;
+            boolean waited = false;
+            while (wrapPoint > (minimum = minimumConsumerSequence())) {
+                waited = true;
+                LockSupport.parkNanos(1000);
+            }
+            if (waited) {
+                this.producerWaits.incrementAndGet();
+            }
+            this.gatingSequence = minimum;
+        }
+
+        Slot slot = this.slots[(int) sequence & this.mask];
+        slot.event = event;
+        // Escritura volatil: el evento queda visible para quien lea esta secuencia
+        slot.sequence = sequence;
+    }
+
+    private long minimumConsumerSequence() {
+        long minimum = Long.MAX_VALUE;
+        for (Consumer consumer : this.consumers) {
+            minimum = Math.min(minimum, consumer.sequence);
+        }
+        return minimum;
+    }
+
+    private static class Slot {
+        private volatile long sequence = -1;
+        private DomainEvent event;
+    }
+
+    private class Consumer implements Runnable {
+        private final DomainEventListener listener;
+        private final String name;
+        private final Thread thread;
+        private final List<DomainEvent> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        // Ultima secuencia consumida; solo la escribe el hilo de este consumidor
+        private volatile long sequence = -1;
+
+        Consumer(DomainEventListener listener) {
+            this.listener = listener;
+            this.name = ClassUtils.getUserClass(listener).getSimpleName();
+            this.thread = new Thread(this, "events-" + this.name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long idleParkNanos = 0;
+            while (true) {
+                long next = this.sequence + 1;
+                while (this.batch.size() < MAX_BATCH_SIZE) {
+                    Slot slot = slots[(int) (next + this.batch.size()) & mask];
+                    if (slot.sequence != next + this.batch.size()) {
+                        break;
+                    }
+                    this.batch.add(slot.event);
+                }
+
+                if (this.batch.isEmpty()) {
+                    if (!running && claimed.get() < next) {
+                        return;
+                    }
+                    // Espera creciente mientras no llegan eventos: poco retraso con carga y poca CPU sin ella
+                    idleParkNanos = Math.min(MAX_IDLE_PARK_NANOS, Math.max(1000, idleParkNanos * 2));
+                    LockSupport.parkNanos(idleParkNanos);
+                    continue;
+                }
+
+                idleParkNanos = 0;
+                try {
+                    this.listener.onEvents(this.batch);
+                } catch (Throwable ex) {
+                    logger.error("Event listener {} failed on a batch of {} events", this.name, this.batch.size(), ex);
+                }
+                this.sequence = next + this.batch.size() - 1;
+                this.batch.clear();
+            }
+        }
+    }
+}
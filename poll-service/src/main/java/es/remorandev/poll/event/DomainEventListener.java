@@ -0,0 +1,16 @@
+package es.remorandev.poll.event;
+
+import java.util.List;
+
+/**
+ * Consumidor de los eventos del DomainEventBus. Cada listener tiene su propio hilo, asi que onEvents nunca se llama
+ * en paralelo consigo mismo; recibe todos los eventos y se queda con los que le interesan.
+ */
+public interface DomainEventListener {
+
+    /**
+     * Lote de eventos en orden de publicacion; la lista se reutiliza y solo es valida durante la llamada.
+     * Una excepcion se registra y el lote se da por consumido.
+     */
+    void onEvents(List<DomainEvent> events);
+}
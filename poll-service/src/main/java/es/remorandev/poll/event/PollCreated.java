@@ -0,0 +1,48 @@
+package es.remorandev.poll.event;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+public class PollCreated implements DomainEvent {
+    private final long pollId;
+    private final long createdBy;
+    private final Instant createdAt;
+    private final Instant expirationDateTime;
+    private final String question;
+    private final List<String> choices;
+
+    public PollCreated(long pollId, long createdBy, Instant createdAt, Instant expirationDateTime, String question,
+                       List<String> choices) {
+        this.pollId = pollId;
+        this.createdBy = createdBy;
+        this.createdAt = createdAt;
+        this.expirationDateTime = expirationDateTime;
+        this.question = question;
+        this.choices = Collections.unmodifiableList(choices);
+    }
+
+    public long getPollId() {
+        return pollId;
+    }
+
+    public long getCreatedBy() {
+        return createdBy;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getExpirationDateTime() {
+        return expirationDateTime;
+    }
+
+    public String getQuestion() {
+        return question;
+    }
+
+    public List<String> getChoices() {
+        return choices;
+    }
+}
@@ -0,0 +1,21 @@
+package es.remorandev.poll.event;
+
+import java.time.Instant;
+
+public class PollExpired implements DomainEvent {
+    private final long pollId;
+    private final Instant expirationDateTime;
+
+    public PollExpired(long pollId, Instant expirationDateTime) {
+        this.pollId = pollId;
+        this.expirationDateTime = expirationDateTime;
+    }
+
+    public long getPollId() {
+        return pollId;
+    }
+
+    public Instant getExpirationDateTime() {
+        return expirationDateTime;
+    }
+}
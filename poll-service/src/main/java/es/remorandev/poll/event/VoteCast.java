@@ -0,0 +1,43 @@
+package es.remorandev.poll.event;
+
+import java.time.Instant;
+
+/**
+ * Voto guardado. En una encuesta MULTIPLE choiceId es la primera opcion marcada y selection la mascara de todas
+ * (ver MultiSelectVoteService); en las demas selection es 0.
+ */
+public class VoteCast implements DomainEvent {
+    private final long pollId;
+    private final long choiceId;
+    private final long userId;
+    private final Instant votedAt;
+    private final int selection;
+
+    public VoteCast(long pollId, long choiceId, long userId, Instant votedAt, int selection) {
+        this.pollId = pollId;
+        this.choiceId = choiceId;
+        this.userId = userId;
+        this.votedAt = votedAt;
+        this.selection = selection;
+    }
+
+    public long getPollId() {
+        return pollId;
+    }
+
+    public long getChoiceId() {
+        return choiceId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public Instant getVotedAt() {
+        return votedAt;
+    }
+
+    public int getSelection() {
+        return selection;
+    }
+}
@@ -0,0 +1,303 @@
+package es.remorandev.poll.journal;
+
+import es.remorandev.poll.event.DomainEvent;
+import es.remorandev.poll.event.DomainEventListener;
+import es.remorandev.poll.event.VoteCast;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Diario local de solo escritura con los votos aceptados, para reconstruir estado derivado (recuentos, lineas
+ * temporales, votantes...) sin leer la tabla votes. La fuente de verdad sigue siendo la base de datos.
+ *
+ * Cada voto es un registro de ancho fijo (RECORD_SIZE bytes) en segmentos mapeados en memoria de
+ * app.journal.recordsPerSegment registros; al llenarse uno se abre el siguiente. Escribir es copiar 40 bytes en
+ * memoria: el sistema operativo los lleva al disco y force() se llama cada app.journal.forceIntervalMs, asi que una
+ * caida del sistema (no de la JVM) puede perder los votos de ese intervalo. Cada registro lleva un CRC32 y la
+ * lectura salta los que no cuadran.
+ *
+ * La mascara de opciones de un voto MULTIPLE va en el byte alto del campo de la fecha, que en milisegundos solo
+ * ocupa los siete bajos; en los demas votos (y en los registros escritos antes de existir) ese byte es 0.
+ */
+public class VoteJournal implements DomainEventListener {
+    public static final int RECORD_SIZE = 40;
+
+    // 'VOT1': un registro sin marca es espacio del segmento aun sin escribir
+    private static final int RECORD_MAGIC = 0x564F5431;
+    private static final int CRC_OFFSET = 4;
+    private static final int PAYLOAD_OFFSET = 8;
+    private static final int PAYLOAD_SIZE = RECORD_SIZE - PAYLOAD_OFFSET;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int SELECTION_SHIFT = 56;
+    private static final long VOTED_AT_MASK = (1L << SELECTION_SHIFT) - 1;
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final CRC32 writeCrc = new CRC32();
+    private final ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_SIZE);
+    private final Timer forceTimer;
+
+    private volatile Segment active;
+    private volatile long appended;
+    private long forcedRecords;
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteJournal.class);
+
+    public VoteJournal(Path directory, int recordsPerSegment, MeterRegistry meterRegistry) throws IOException {
+        if (recordsPerSegment <= 0) {
+            throw new IllegalArgumentException("Journal segments must hold at least one record, got " + recordsPerSegment);
+        }
+
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        Files.createDirectories(directory);
+
+        List<Path> segments = segmentFiles();
+        if (segments.isEmpty()) {
+            this.active = openSegment(0);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            this.active = openSegment(firstRecordOf(last));
+            this.active.position = recoverPosition(this.active);
+            if (this.active.position == this.active.capacity) {
+                roll();
+            }
+            logger.info("Vote journal opened at {} with {} segments, writing at record {}",
+                    directory, segments.size(), this.active.firstRecord + this.active.position);
+        }
+        this.forcedRecords = this.active.firstRecord + this.active.position;
+
+        if (meterRegistry != null) {
+            Gauge.builder("app.journal.appended", this, journal -> journal.appended)
+                    .description("Votos escritos en el diario desde el arranque")
+                    .register(meterRegistry);
+            this.forceTimer = Timer.builder("app.journal.force")
+                    .description("Tiempo de force() del segmento activo")
+                    .register(meterRegistry);
+        } else {
+            this.forceTimer = null;
+        }
+    }
+
+    @Override
+    public void onEvents(List<DomainEvent> events) {
+        for (DomainEvent event : events) {
+            if (event instanceof VoteCast) {
+                VoteCast vote = (VoteCast) event;
+                append(vote.getPollId(), vote.getChoiceId(), vote.getUserId(), vote.getVotedAt().toEpochMilli(),
+                        vote.getSelection());
+            }
+        }
+    }
+
+    public synchronized void append(long pollId, long choiceId, long userId, long votedAtMillis, int selection) {
+        Segment segment = this.active;
+        if (segment.position == segment.capacity) {
+            roll();
+            segment = this.active;
+        }
+
+        this.payload.clear();
+        this.payload.putLong(pollId).putLong(choiceId).putLong(userId)
+                .putLong((long) (selection & 0xFF) << SELECTION_SHIFT | votedAtMillis & VOTED_AT_MASK).flip();
+        this.writeCrc.reset();
+        this.writeCrc.update(this.payload.array(), 0, PAYLOAD_SIZE);
+
+        // La marca se escribe la ultima: un registro a medias se lee como hueco libre o falla el CRC
+        int offset = segment.position * RECORD_SIZE;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.position(offset + PAYLOAD_OFFSET);
+        buffer.put(this.payload);
+        buffer.putInt(offset + CRC_OFFSET, (int) this.writeCrc.getValue());
+        buffer.putInt(offset, RECORD_MAGIC);
+
+        segment.position++;
+        this.appended++;
+    }
+
+    /**
+     * Lleva al disco lo escrito en el segmento activo desde el ultimo force().
+     */
+    @Scheduled(fixedDelayString = "${app.journal.forceIntervalMs}")
+    public void force() {
+        Segment segment;
+        long written;
+        synchronized (this) {
+            segment = this.active;
+            written = segment.firstRecord + segment.position;
+            if (written == this.forcedRecords) {
+                return;
+            }
+            this.forcedRecords = written;
+        }
+
+        long start = System.nanoTime();
+        segment.buffer.force();
+        if (this.forceTimer != null) {
+            this.forceTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Recorre en orden todos los registros escritos hasta ahora. Los que llegan mientras tanto pueden quedar fuera.
+     */
+    public ReplayResult replay(RecordHandler handler) throws IOException {
+        // Posicion fijada antes de leer: lo que hay por debajo ya esta escrito entero
+        long end;
+        synchronized (this) {
+            end = this.active.firstRecord + this.active.position;
+        }
+
+        ReplayResult result = new ReplayResult();
+        CRC32 crc = new CRC32();
+        for (Path file : segmentFiles()) {
+            long firstRecord = firstRecordOf(file);
+            if (firstRecord >= end) {
+                break;
+            }
+
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            int records = (int) Math.min(buffer.capacity() / RECORD_SIZE, end - firstRecord);
+            result.segments++;
+            ByteBuffer recordPayload = buffer.duplicate();
+
+            for (int i = 0; i < records; i++) {
+                int offset = i * RECORD_SIZE;
+                if (buffer.getInt(offset) != RECORD_MAGIC) {
+                    // Fin de lo escrito en un segmento que se cerro tras una caida
+                    break;
+                }
+
+                recordPayload.limit(offset + RECORD_SIZE).position(offset + PAYLOAD_OFFSET);
+                crc.reset();
+                crc.update(recordPayload);
+                if ((int) crc.getValue() != buffer.getInt(offset + CRC_OFFSET)) {
+                    result.corruptRecords++;
+                    continue;
+                }
+
+                long votedAt = buffer.getLong(offset + PAYLOAD_OFFSET + 24);
+                handler.onRecord(buffer.getLong(offset + PAYLOAD_OFFSET), buffer.getLong(offset + PAYLOAD_OFFSET + 8),
+                        buffer.getLong(offset + PAYLOAD_OFFSET + 16), votedAt & VOTED_AT_MASK,
+                        (int) (votedAt >>> SELECTION_SHIFT));
+                result.records++;
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        this.active.buffer.force();
+    }
+
+    private void roll() {
+        Segment full = this.active;
+        full.buffer.force();
+        this.active = openSegment(full.firstRecord + full.capacity);
+    }
+
+    private Segment openSegment(long firstRecord) {
+        Path file = this.directory.resolve(String.format("votes-%020d%s", firstRecord, SEGMENT_SUFFIX));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            // Un segmento ya existente conserva su tamano aunque app.journal.recordsPerSegment haya cambiado
+            long size = raf.length() >= RECORD_SIZE ? raf.length() - raf.length() % RECORD_SIZE
+                    : (long) this.recordsPerSegment * RECORD_SIZE;
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+            // El mapeo sigue valido al cerrar el fichero; se libera cuando el GC recoge el buffer
+            return new Segment(firstRecord, (int) (size / RECORD_SIZE),
+                    raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not open journal segment " + file, ex);
+        }
+    }
+
+    /**
+     * Primer hueco libre del segmento: tras una caida puede quedar un registro a medias, que se conserva y la
+     * lectura descarta por el CRC.
+     */
+    private static int recoverPosition(Segment segment) {
+        int position = 0;
+        while (position < segment.capacity && segment.buffer.getInt(position * RECORD_SIZE) == RECORD_MAGIC) {
+            position++;
+        }
+        return position;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static long firstRecordOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("votes-".length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        void onRecord(long pollId, long choiceId, long userId, long votedAtMillis, int selection);
+    }
+
+    public static class ReplayResult {
+        private int segments;
+        private long records;
+        private long corruptRecords;
+
+        public int getSegments() {
+            return segments;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getCorruptRecords() {
+            return corruptRecords;
+        }
+    }
+
+    private static class Segment {
+        private final long firstRecord;
+        private final int capacity;
+        private final MappedByteBuffer buffer;
+
+        // Registros escritos; solo se modifica con el monitor del diario
+        private int position;
+
+        Segment(long firstRecord, int capacity, MappedByteBuffer buffer) {
+            this.firstRecord = firstRecord;
+            this.capacity = capacity;
+            this.buffer = buffer;
+        }
+    }
+}
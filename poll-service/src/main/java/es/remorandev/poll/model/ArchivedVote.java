@@ -0,0 +1,86 @@
+package es.remorandev.poll.model;
+
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Voto de una encuesta expirada hace tiempo, movido desde votes por VoteArchiveService.
+ * La tabla votes_archive es compacta: sin id propio ni updatedAt, agrupada fisicamente por encuesta.
+ */
+@Entity
+@Immutable
+@IdClass(ArchivedVote.ArchivedVoteId.class)
+@Table(name = "votes_archive", indexes = {
+        @Index(name = "idx_votes_archive_user", columnList = "user_id, created_at"),
+        @Index(name = "idx_votes_archive_poll_choice", columnList = "poll_id, choice_id"),
+        @Index(name = "idx_votes_archive_poll_selection", columnList = "poll_id, selection")
+})
+public class ArchivedVote {
+
+    @Id
+    @Column(name = "poll_id")
+    private Long pollId;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "choice_id", nullable = false)
+    private Long choiceId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "selection", columnDefinition = "TINYINT")
+    private Integer selection;
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getChoiceId() {
+        return choiceId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Integer getSelection() {
+        return selection;
+    }
+
+    public static class ArchivedVoteId implements Serializable {
+        private Long pollId;
+        private Long userId;
+
+        public ArchivedVoteId() {
+        }
+
+        public ArchivedVoteId(Long pollId, Long userId) {
+            this.pollId = pollId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ArchivedVoteId that = (ArchivedVoteId) o;
+            return Objects.equals(pollId, that.pollId) && Objects.equals(userId, that.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pollId, userId);
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package es.remorandev.poll.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
@@ -7,6 +11,9 @@ import java.util.Objects;
 
 @Entity
 @Table(name = "choices")
+// El texto de las opciones no cambia despues de crear la encuesta
+@Immutable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "choices")
 public class Choice {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -2,6 +2,8 @@ package es.remorandev.poll.model;
 
 import es.remorandev.poll.model.audit.UserDateAudit;
 import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
 
@@ -14,7 +16,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "polls")
+@Table(name = "polls", indexes = {
+        @Index(name = "idx_polls_created_at", columnList = "createdAt"),
+        @Index(name = "idx_polls_created_by_created_at", columnList = "createdBy, createdAt"),
+        @Index(name = "idx_polls_expiration", columnList = "expirationDateTime")
+})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "polls")
 public class Poll extends UserDateAudit {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -33,11 +40,22 @@ public class Poll extends UserDateAudit {
     @Size(min = 2, max = 6)
     @Fetch(FetchMode.SELECT)
     @BatchSize(size = 30)
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "polls.choices")
     private List<Choice> choices = new ArrayList<>();
 
     @NotNull
     private Instant expirationDateTime;
 
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private PollType type = PollType.SINGLE;
+
+    // Se incrementa con cada voto o edicion; sirve para generar los ETag sin contar votos.
+    // Lo actualiza PollRepository.incrementVersion directamente en la base de datos, asi que el valor de una
+    // entidad (posiblemente sacada de la cache) puede estar atrasado: hay que leerlo con findVersionById
+    @Column(nullable = false, updatable = false)
+    private long version;
+
     public Long getId() {
         return id;
     }
@@ -70,6 +88,22 @@ public class Poll extends UserDateAudit {
         this.expirationDateTime = expirationDateTime;
     }
 
+    public PollType getType() {
+        return type;
+    }
+
+    public void setType(PollType type) {
+        this.type = type;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public void addChoice(Choice choice) {
         choices.add(choice);
         choice.setPoll(this);
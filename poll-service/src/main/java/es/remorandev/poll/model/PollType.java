@@ -0,0 +1,12 @@
+package es.remorandev.poll.model;
+
+/**
+ * SINGLE: cada votante elige una opcion. RANKED: cada votante ordena las opciones que quiera y la encuesta se
+ * resuelve por segunda vuelta instantanea; la fila de votes guarda su primera preferencia. MULTIPLE: cada votante
+ * marca todas las que quiera; la fila de votes guarda la primera marcada y la mascara de todas (selection).
+ */
+public enum PollType {
+    SINGLE,
+    RANKED,
+    MULTIPLE
+}
@@ -0,0 +1,64 @@
+package es.remorandev.poll.model;
+
+import java.time.Instant;
+
+/**
+ * Proyeccion minima de una encuesta para validar peticiones condicionales (ETag / Last-Modified)
+ * sin cargar las opciones ni contar votos.
+ */
+public class PollVersion {
+    private Long pollId;
+    private long version;
+    private Instant updatedAt;
+    private Instant expirationDateTime;
+    private long tallyRevision;
+
+    public PollVersion(Long pollId, long version, Instant updatedAt, Instant expirationDateTime) {
+        this.pollId = pollId;
+        this.version = version;
+        this.updatedAt = updatedAt;
+        this.expirationDateTime = expirationDateTime;
+    }
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Revision local del recuento (VoteTally.revision); 0 cuando los recuentos salen directamente de la base de datos.
+     */
+    public long getTallyRevision() {
+        return tallyRevision;
+    }
+
+    public void setTallyRevision(long tallyRevision) {
+        this.tallyRevision = tallyRevision;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Instant getExpirationDateTime() {
+        return expirationDateTime;
+    }
+
+    public boolean isExpired(Instant now) {
+        return expirationDateTime.isBefore(now);
+    }
+
+    /**
+     * Ultimo cambio visible de la encuesta: su ultima modificacion o, si ya ha expirado,
+     * el momento en que paso a estar expirada.
+     */
+    public Instant getLastModified(Instant now) {
+        if (isExpired(now) && expirationDateTime.isAfter(updatedAt)) {
+            return expirationDateTime;
+        }
+        return updatedAt;
+    }
+}
@@ -0,0 +1,35 @@
+package es.remorandev.poll.model;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Linea base del recuento en modo cluster: los votos con id menor o igual que maxVoteId (y todo votes_archive)
+ * se contaron una sola vez al activar el modo y se publicaron como la instancia "baseline" en tally_deltas.
+ * Solo existe una fila (id = 1).
+ */
+@Entity
+@Table(name = "tally_baseline")
+public class TallyBaseline {
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private Long maxVoteId;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public Long getMaxVoteId() {
+        return maxVoteId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,91 @@
+package es.remorandev.poll.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Valor publicado del contador G-Counter de una instancia para una opcion (app.tally.mode=cluster).
+ * Solo crece: al fusionar se toma el maximo por instancia y el recuento de la opcion es la suma de todas.
+ */
+@Entity
+@IdClass(TallyDelta.TallyDeltaId.class)
+@Table(name = "tally_deltas", indexes = {
+        @Index(name = "idx_tally_deltas_updated_at", columnList = "updated_at")
+})
+public class TallyDelta {
+
+    @Id
+    @Column(name = "node_id", length = 64)
+    private String nodeId;
+
+    @Id
+    @Column(name = "choice_id")
+    private Long choiceId;
+
+    @Column(name = "poll_id", nullable = false)
+    private Long pollId;
+
+    @Column(name = "vote_count", nullable = false)
+    private long voteCount;
+
+    @Column(name = "updated_at", nullable = false, columnDefinition = "DATETIME(3)")
+    private Instant updatedAt;
+
+    public TallyDelta() {
+    }
+
+    public TallyDelta(String nodeId, Long pollId, Long choiceId, long voteCount) {
+        this.nodeId = nodeId;
+        this.pollId = pollId;
+        this.choiceId = choiceId;
+        this.voteCount = voteCount;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public Long getChoiceId() {
+        return choiceId;
+    }
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public long getVoteCount() {
+        return voteCount;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public static class TallyDeltaId implements Serializable {
+        private String nodeId;
+        private Long choiceId;
+
+        public TallyDeltaId() {
+        }
+
+        public TallyDeltaId(String nodeId, Long choiceId) {
+            this.nodeId = nodeId;
+            this.choiceId = choiceId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TallyDeltaId that = (TallyDeltaId) o;
+            return Objects.equals(nodeId, that.nodeId) && Objects.equals(choiceId, that.choiceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(nodeId, choiceId);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package es.remorandev.poll.model;
 
 import es.remorandev.poll.model.audit.DateAudit;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.NaturalId;
 
 import javax.persistence.*;
@@ -20,6 +22,7 @@ import java.util.Set;
         })
 }
 )
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
 public class User extends DateAudit {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -47,6 +50,7 @@ public class User extends DateAudit {
     @JoinTable(name = "user_roles",
             joinColumns = @JoinColumn(name = "user_id"),
             inverseJoinColumns = @JoinColumn(name = "role_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users.roles")
     private Set<Role> roles = new HashSet<>();
 
     public User() {
@@ -4,12 +4,26 @@ import es.remorandev.poll.model.audit.DateAudit;
 
 import javax.persistence.*;
 
+/**
+ * Voto de un usuario en una encuesta. La tabla votes se particiona por pollPeriod (mes de creacion
+ * de la encuesta, yyyyMM), por eso la clave unica incluye esa columna y las relaciones no generan
+ * claves foraneas: MySQL no las admite en tablas particionadas.
+ */
 @Entity
 @Table(name = "votes", uniqueConstraints = {
-        @UniqueConstraint(columnNames = {
+        @UniqueConstraint(name = "uk_votes_poll_user", columnNames = {
                 "poll_id",
-                "user_id"
+                "user_id",
+                "poll_period"
         })
+}, indexes = {
+        @Index(name = "idx_votes_created_at", columnList = "createdAt"),
+        // Cubre el listado de encuestas votadas por un usuario sin leer las filas
+        @Index(name = "idx_votes_user_created_at", columnList = "user_id, createdAt, poll_id"),
+        // Recuento por opcion solo con el indice
+        @Index(name = "idx_votes_poll_choice", columnList = "poll_id, choice_id"),
+        // Recuento de las encuestas MULTIPLE solo con el indice
+        @Index(name = "idx_votes_poll_selection", columnList = "poll_id, selection")
 })
 public class Vote extends DateAudit {
 
@@ -18,17 +32,24 @@ public class Vote extends DateAudit {
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
-    @JoinColumn(name = "poll_id", nullable = false)
+    @JoinColumn(name = "poll_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Poll poll;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
-    @JoinColumn(name = "choice_id", nullable = false)
+    @JoinColumn(name = "choice_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Choice choice;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
-    @JoinColumn(name = "user_id", nullable = false)
+    @JoinColumn(name = "user_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private User user;
 
+    @Column(name = "poll_period", nullable = false, updatable = false)
+    private Integer pollPeriod;
+
+    // Mascara de las opciones marcadas en una encuesta MULTIPLE (bit i: opcion i en orden de id); null en el resto
+    @Column(name = "selection", columnDefinition = "TINYINT", updatable = false)
+    private Integer selection;
+
     public Long getId() {
         return id;
     }
@@ -60,4 +81,20 @@ public class Vote extends DateAudit {
     public void setUser(User user) {
         this.user = user;
     }
+
+    public Integer getPollPeriod() {
+        return pollPeriod;
+    }
+
+    public void setPollPeriod(Integer pollPeriod) {
+        this.pollPeriod = pollPeriod;
+    }
+
+    public Integer getSelection() {
+        return selection;
+    }
+
+    public void setSelection(Integer selection) {
+        this.selection = selection;
+    }
 }
@@ -0,0 +1,24 @@
+package es.remorandev.poll.model;
+
+import java.time.Instant;
+
+/**
+ * Encuesta en la que ha votado un usuario y cuando voto, para listar su actividad sin cargar los votos.
+ */
+public class VotedPoll {
+    private Long pollId;
+    private Instant votedAt;
+
+    public VotedPoll(Long pollId, Instant votedAt) {
+        this.pollId = pollId;
+        this.votedAt = votedAt;
+    }
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public Instant getVotedAt() {
+        return votedAt;
+    }
+}
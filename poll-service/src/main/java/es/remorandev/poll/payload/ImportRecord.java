@@ -0,0 +1,158 @@
+package es.remorandev.poll.payload;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Una linea del fichero NDJSON de importacion. Los ids son los del sistema de origen:
+ * <pre>
+ * {"type":"user","id":1,"name":"Ana","username":"ana","email":"ana@example.com","passwordHash":"$2a$10$...","createdAt":"..."}
+ * {"type":"poll","id":7,"createdBy":1,"question":"...","choices":["Si","No"],"createdAt":"...","expirationDateTime":"..."}
+ * {"type":"vote","poll":7,"user":1,"choice":0,"createdAt":"..."}
+ * </pre>
+ * {@code choice} es la posicion de la opcion en la encuesta.
+ */
+public class ImportRecord {
+    private String type;
+    private Long id;
+    private Instant createdAt;
+
+    private String name;
+    private String username;
+    private String email;
+    private String passwordHash;
+
+    private Long createdBy;
+    private String question;
+    private List<String> choices;
+    private Instant expirationDateTime;
+
+    private Long poll;
+    private Long user;
+    private Integer choice;
+
+    @JsonIgnore
+    private long lineNumber;
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public void setPasswordHash(String passwordHash) {
+        this.passwordHash = passwordHash;
+    }
+
+    public Long getCreatedBy() {
+        return createdBy;
+    }
+
+    public void setCreatedBy(Long createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    public String getQuestion() {
+        return question;
+    }
+
+    public void setQuestion(String question) {
+        this.question = question;
+    }
+
+    public List<String> getChoices() {
+        return choices;
+    }
+
+    public void setChoices(List<String> choices) {
+        this.choices = choices;
+    }
+
+    public Instant getExpirationDateTime() {
+        return expirationDateTime;
+    }
+
+    public void setExpirationDateTime(Instant expirationDateTime) {
+        this.expirationDateTime = expirationDateTime;
+    }
+
+    public Long getPoll() {
+        return poll;
+    }
+
+    public void setPoll(Long poll) {
+        this.poll = poll;
+    }
+
+    public Long getUser() {
+        return user;
+    }
+
+    public void setUser(Long user) {
+        this.user = user;
+    }
+
+    public Integer getChoice() {
+        return choice;
+    }
+
+    public void setChoice(Integer choice) {
+        this.choice = choice;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public void setLineNumber(long lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+}
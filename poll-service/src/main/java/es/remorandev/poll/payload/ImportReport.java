@@ -0,0 +1,113 @@
+package es.remorandev.poll.payload;
+
+import java.util.List;
+
+public class ImportReport {
+    private long lines;
+    private long users;
+    private long polls;
+    private long choices;
+    private long votes;
+    private long skipped;
+    private List<String> errors;
+    private long elapsedMs;
+    private long rowsPerSecond;
+    // Motivo por el que se interrumpio la importacion; null si se leyo el fichero entero
+    private String abortedBy;
+
+    public ImportReport() {}
+
+    public ImportReport(long lines, long users, long polls, long choices, long votes, long skipped, List<String> errors,
+                        long elapsedMs, String abortedBy) {
+        this.lines = lines;
+        this.users = users;
+        this.polls = polls;
+        this.choices = choices;
+        this.votes = votes;
+        this.skipped = skipped;
+        this.errors = errors;
+        this.elapsedMs = elapsedMs;
+        this.rowsPerSecond = (users + polls + choices + votes) * 1000 / Math.max(1, elapsedMs);
+        this.abortedBy = abortedBy;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public void setLines(long lines) {
+        this.lines = lines;
+    }
+
+    public long getUsers() {
+        return users;
+    }
+
+    public void setUsers(long users) {
+        this.users = users;
+    }
+
+    public long getPolls() {
+        return polls;
+    }
+
+    public void setPolls(long polls) {
+        this.polls = polls;
+    }
+
+    public long getChoices() {
+        return choices;
+    }
+
+    public void setChoices(long choices) {
+        this.choices = choices;
+    }
+
+    public long getVotes() {
+        return votes;
+    }
+
+    public void setVotes(long votes) {
+        this.votes = votes;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(long rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public String getAbortedBy() {
+        return abortedBy;
+    }
+
+    public void setAbortedBy(String abortedBy) {
+        this.abortedBy = abortedBy;
+    }
+}
@@ -0,0 +1,85 @@
+package es.remorandev.poll.payload;
+
+import java.util.Map;
+
+/**
+ * Resultado de recorrer el diario de votos; voteCounts (votos por opcion) solo se rellena si se pidio una encuesta.
+ */
+public class JournalReplayReport {
+    private int segments;
+    private long records;
+    private long corruptRecords;
+    private long elapsedMs;
+    private long recordsPerSecond;
+    private Long pollId;
+    private Map<Long, Long> voteCounts;
+
+    public JournalReplayReport() {}
+
+    public JournalReplayReport(int segments, long records, long corruptRecords, long elapsedMs, Long pollId,
+                               Map<Long, Long> voteCounts) {
+        this.segments = segments;
+        this.records = records;
+        this.corruptRecords = corruptRecords;
+        this.elapsedMs = elapsedMs;
+        this.recordsPerSecond = records * 1000 / Math.max(1, elapsedMs);
+        this.pollId = pollId;
+        this.voteCounts = voteCounts;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    public void setSegments(int segments) {
+        this.segments = segments;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public void setRecords(long records) {
+        this.records = records;
+    }
+
+    public long getCorruptRecords() {
+        return corruptRecords;
+    }
+
+    public void setCorruptRecords(long corruptRecords) {
+        this.corruptRecords = corruptRecords;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    public long getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    public void setRecordsPerSecond(long recordsPerSecond) {
+        this.recordsPerSecond = recordsPerSecond;
+    }
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public void setPollId(Long pollId) {
+        this.pollId = pollId;
+    }
+
+    public Map<Long, Long> getVoteCounts() {
+        return voteCounts;
+    }
+
+    public void setVoteCounts(Map<Long, Long> voteCounts) {
+        this.voteCounts = voteCounts;
+    }
+}
@@ -1,5 +1,7 @@
 package es.remorandev.poll.payload;
 
+import es.remorandev.poll.model.PollType;
+
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -17,6 +19,9 @@ public class PollRequest {
     @Valid
     private PollLength pollLength;
 
+    // SINGLE si no se indica
+    private PollType type;
+
     public String getQuestion() {
         return question;
     }
@@ -40,4 +45,12 @@ public class PollRequest {
     public void setPollLength(PollLength pollLength) {
         this.pollLength = pollLength;
     }
+
+    public PollType getType() {
+        return type;
+    }
+
+    public void setType(PollType type) {
+        this.type = type;
+    }
 }
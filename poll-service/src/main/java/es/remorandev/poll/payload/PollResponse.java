@@ -1,6 +1,7 @@
 package es.remorandev.poll.payload;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import es.remorandev.poll.model.PollType;
 
 import java.time.Instant;
 import java.util.List;
@@ -17,6 +18,18 @@ public class PollResponse {
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private Long selectedChoice;
     private Long totalVotes;
+    private PollType type;
+
+    // Solo en las encuestas RANKED: choices[].voteCount son las primeras preferencias
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Long> selectedRanking;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private RankedResultResponse rankedResult;
+
+    // Solo en las encuestas MULTIPLE: choices[].voteCount son los votantes que marcaron cada opcion y totalVotes
+    // los votantes
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Long> selectedChoices;
 
     public Long getId() {
         return id;
@@ -89,4 +102,36 @@ public class PollResponse {
     public void setTotalVotes(Long totalVotes) {
         this.totalVotes = totalVotes;
     }
+
+    public PollType getType() {
+        return type;
+    }
+
+    public void setType(PollType type) {
+        this.type = type;
+    }
+
+    public List<Long> getSelectedRanking() {
+        return selectedRanking;
+    }
+
+    public void setSelectedRanking(List<Long> selectedRanking) {
+        this.selectedRanking = selectedRanking;
+    }
+
+    public RankedResultResponse getRankedResult() {
+        return rankedResult;
+    }
+
+    public void setRankedResult(RankedResultResponse rankedResult) {
+        this.rankedResult = rankedResult;
+    }
+
+    public List<Long> getSelectedChoices() {
+        return selectedChoices;
+    }
+
+    public void setSelectedChoices(List<Long> selectedChoices) {
+        this.selectedChoices = selectedChoices;
+    }
 }
@@ -0,0 +1,54 @@
+package es.remorandev.poll.payload;
+
+import java.util.List;
+
+/**
+ * Votos por intervalo de tiempo; los recuentos de cada cubeta siguen el orden de choiceIds.
+ */
+public class PollTimelineResponse {
+    private Long pollId;
+    private String resolution;
+    private List<Long> choiceIds;
+    private List<TimelineBucket> buckets;
+
+    public PollTimelineResponse() {}
+
+    public PollTimelineResponse(Long pollId, String resolution, List<Long> choiceIds, List<TimelineBucket> buckets) {
+        this.pollId = pollId;
+        this.resolution = resolution;
+        this.choiceIds = choiceIds;
+        this.buckets = buckets;
+    }
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public void setPollId(Long pollId) {
+        this.pollId = pollId;
+    }
+
+    public String getResolution() {
+        return resolution;
+    }
+
+    public void setResolution(String resolution) {
+        this.resolution = resolution;
+    }
+
+    public List<Long> getChoiceIds() {
+        return choiceIds;
+    }
+
+    public void setChoiceIds(List<Long> choiceIds) {
+        this.choiceIds = choiceIds;
+    }
+
+    public List<TimelineBucket> getBuckets() {
+        return buckets;
+    }
+
+    public void setBuckets(List<TimelineBucket> buckets) {
+        this.buckets = buckets;
+    }
+}
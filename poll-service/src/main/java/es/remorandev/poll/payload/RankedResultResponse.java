@@ -0,0 +1,34 @@
+package es.remorandev.poll.payload;
+
+import java.util.List;
+
+/**
+ * Resultado de la segunda vuelta instantanea de una encuesta RANKED; winner es null sin votos o con empate.
+ */
+public class RankedResultResponse {
+    private Long winner;
+    private List<RankedRoundResponse> rounds;
+
+    public RankedResultResponse() {}
+
+    public RankedResultResponse(Long winner, List<RankedRoundResponse> rounds) {
+        this.winner = winner;
+        this.rounds = rounds;
+    }
+
+    public Long getWinner() {
+        return winner;
+    }
+
+    public void setWinner(Long winner) {
+        this.winner = winner;
+    }
+
+    public List<RankedRoundResponse> getRounds() {
+        return rounds;
+    }
+
+    public void setRounds(List<RankedRoundResponse> rounds) {
+        this.rounds = rounds;
+    }
+}
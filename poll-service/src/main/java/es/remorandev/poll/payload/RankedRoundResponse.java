@@ -0,0 +1,45 @@
+package es.remorandev.poll.payload;
+
+import java.util.Map;
+
+/**
+ * Una ronda: votos de cada opcion que sigue en juego (por id), papeletas sin ninguna opcion en juego y la opcion
+ * eliminada al final (null en la ultima ronda).
+ */
+public class RankedRoundResponse {
+    private Map<Long, Long> voteCounts;
+    private long exhaustedBallots;
+    private Long eliminated;
+
+    public RankedRoundResponse() {}
+
+    public RankedRoundResponse(Map<Long, Long> voteCounts, long exhaustedBallots, Long eliminated) {
+        this.voteCounts = voteCounts;
+        this.exhaustedBallots = exhaustedBallots;
+        this.eliminated = eliminated;
+    }
+
+    public Map<Long, Long> getVoteCounts() {
+        return voteCounts;
+    }
+
+    public void setVoteCounts(Map<Long, Long> voteCounts) {
+        this.voteCounts = voteCounts;
+    }
+
+    public long getExhaustedBallots() {
+        return exhaustedBallots;
+    }
+
+    public void setExhaustedBallots(long exhaustedBallots) {
+        this.exhaustedBallots = exhaustedBallots;
+    }
+
+    public Long getEliminated() {
+        return eliminated;
+    }
+
+    public void setEliminated(Long eliminated) {
+        this.eliminated = eliminated;
+    }
+}
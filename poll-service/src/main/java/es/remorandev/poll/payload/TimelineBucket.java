@@ -0,0 +1,31 @@
+package es.remorandev.poll.payload;
+
+import java.time.Instant;
+
+public class TimelineBucket {
+    private Instant start;
+    private long[] voteCounts;
+
+    public TimelineBucket() {}
+
+    public TimelineBucket(Instant start, long[] voteCounts) {
+        this.start = start;
+        this.voteCounts = voteCounts;
+    }
+
+    public Instant getStart() {
+        return start;
+    }
+
+    public void setStart(Instant start) {
+        this.start = start;
+    }
+
+    public long[] getVoteCounts() {
+        return voteCounts;
+    }
+
+    public void setVoteCounts(long[] voteCounts) {
+        this.voteCounts = voteCounts;
+    }
+}
@@ -1,11 +1,18 @@
 package es.remorandev.poll.payload;
 
-import javax.validation.constraints.NotNull;
+import java.util.List;
 
+/**
+ * choiceId en las encuestas SINGLE; ranking (ids de opcion por orden de preferencia) en las RANKED; choiceIds (las
+ * opciones marcadas) en las MULTIPLE.
+ */
 public class VoteRequest {
-    @NotNull
     private Long choiceId;
 
+    private List<Long> ranking;
+
+    private List<Long> choiceIds;
+
     public Long getChoiceId() {
         return choiceId;
     }
@@ -13,4 +20,20 @@ public class VoteRequest {
     public void setChoiceId(Long choiceId) {
         this.choiceId = choiceId;
     }
+
+    public List<Long> getRanking() {
+        return ranking;
+    }
+
+    public void setRanking(List<Long> ranking) {
+        this.ranking = ranking;
+    }
+
+    public List<Long> getChoiceIds() {
+        return choiceIds;
+    }
+
+    public void setChoiceIds(List<Long> choiceIds) {
+        this.choiceIds = choiceIds;
+    }
 }
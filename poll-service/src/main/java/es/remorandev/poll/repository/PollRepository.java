@@ -1,19 +1,44 @@
 package es.remorandev.poll.repository;
 
 import es.remorandev.poll.model.Poll;
+import es.remorandev.poll.model.PollVersion;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
-public interface PollRepository extends JpaRepository<Poll, Long> {
+public interface PollRepository extends JpaRepository<Poll, Long>, PollRepositoryCustom {
     Page<Poll> findByCreatedBy(Long userId, Pageable pageable);
 
     long countByCreatedBy(Long userId);
 
+    @Query("SELECT p FROM Poll p WHERE p.createdBy = :userId ORDER BY p.createdAt DESC, p.id DESC")
+    List<Poll> findLatestByCreatedBy(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT p FROM Poll p WHERE p.createdBy = :userId " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :pollId)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Poll> findByCreatedByBefore(@Param("userId") Long userId, @Param("createdAt") Instant createdAt,
+                                     @Param("pollId") Long pollId, Pageable pageable);
+
     List<Poll> findByIdIn(List<Long> pollIds);
 
     List<Poll> findByIdIn(List<Long> pollIds, Sort sort);
+
+    @Query("SELECT NEW es.remorandev.poll.model.PollVersion(p.id, p.version, p.updatedAt, p.expirationDateTime) " +
+            "FROM Poll p WHERE p.id = :pollId")
+    Optional<PollVersion> findVersionById(@Param("pollId") Long pollId);
+
+    @Query(value = "SELECT NEW es.remorandev.poll.model.PollVersion(p.id, p.version, p.updatedAt, p.expirationDateTime) FROM Poll p",
+            countQuery = "SELECT COUNT(p) FROM Poll p")
+    Page<PollVersion> findAllVersions(Pageable pageable);
+
+    @Query("SELECT MAX(p.createdAt) FROM Poll p")
+    Instant findLatestCreatedAt();
 }
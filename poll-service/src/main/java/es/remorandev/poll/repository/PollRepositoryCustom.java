@@ -0,0 +1,10 @@
+package es.remorandev.poll.repository;
+
+import java.time.Instant;
+
+public interface PollRepositoryCustom {
+    /**
+     * Incrementa la version de la encuesta (ver Poll.version) sin invalidar la cache de segundo nivel.
+     */
+    int incrementVersion(Long pollId, Instant now);
+}
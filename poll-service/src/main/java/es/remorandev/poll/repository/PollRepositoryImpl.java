@@ -0,0 +1,26 @@
+package es.remorandev.poll.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * El incremento de version se hace con JDBC y no con un UPDATE de JPQL: Hibernate vacia la region de cache
+ * completa de Poll en cada UPDATE masivo, y con uno por voto la cache de encuestas no serviria de nada.
+ * version y updated_at quedan atrasados en las entidades cacheadas; solo se leen con findVersionById.
+ */
+public class PollRepositoryImpl implements PollRepositoryCustom {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public int incrementVersion(Long pollId, Instant now) {
+        return this.jdbcTemplate.update("UPDATE polls SET version = version + 1, updated_at = ? WHERE id = ?",
+                Timestamp.from(now), pollId);
+    }
+}
@@ -3,11 +3,15 @@ package es.remorandev.poll.repository;
 import es.remorandev.poll.model.Role;
 import es.remorandev.poll.model.RoleName;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.Optional;
 
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Long> {
+    // Se consulta en cada registro; los roles no cambian
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<Role> findByName(RoleName roleName);
 }
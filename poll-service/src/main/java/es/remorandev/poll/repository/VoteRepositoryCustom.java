@@ -0,0 +1,26 @@
+package es.remorandev.poll.repository;
+
+import es.remorandev.poll.model.ChoiceVoteCount;
+import es.remorandev.poll.model.Vote;
+import es.remorandev.poll.model.VotedPoll;
+import es.remorandev.poll.util.KeysetCursor;
+
+import java.util.List;
+
+public interface VoteRepositoryCustom {
+    List<ChoiceVoteCount> countByPollIdInGroupByChoiceId(List<Long> pollIds);
+
+    List<ChoiceVoteCount> countByPollIdGroupByChoiceId(Long pollId);
+
+    List<Vote> findByUserIdAndPollIdIn(Long userId, List<Long> pollIds);
+
+    Vote findByUserIdAndPollId(Long userId, Long pollId);
+
+    long countByUserId(Long userId);
+
+    /**
+     * Encuestas votadas por el usuario del voto mas reciente al mas antiguo (desempate por pollId),
+     * a continuacion de {@code after} si no es null.
+     */
+    List<VotedPoll> findVotedPollsByUserId(Long userId, KeysetCursor after, int limit);
+}
@@ -0,0 +1,149 @@
+package es.remorandev.poll.repository;
+
+import es.remorandev.poll.model.*;
+import es.remorandev.poll.util.KeysetCursor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.util.*;
+
+/**
+ * Lee los votos de la tabla caliente (votes) y del archivo (votes_archive) y combina los resultados.
+ * VoteArchiveService mueve los votos de una encuesta en una unica transaccion, asi que los votos de
+ * una encuesta estan siempre en un solo sitio.
+ *
+ * Los votos devueltos desde el archivo son instancias de Vote no gestionadas, con referencias
+ * perezosas a Poll, Choice y User; solo deben usarse para lectura.
+ */
+public class VoteRepositoryImpl implements VoteRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ChoiceVoteCount> countByPollIdInGroupByChoiceId(List<Long> pollIds) {
+        List<ChoiceVoteCount> votes = this.entityManager.createQuery(
+                "SELECT NEW es.remorandev.poll.model.ChoiceVoteCount(v.choice.id, count(v.id)) FROM Vote v WHERE v.poll.id in :pollIds GROUP BY v.choice.id",
+                ChoiceVoteCount.class)
+                .setParameter("pollIds", pollIds)
+                .getResultList();
+
+        List<ChoiceVoteCount> archived = this.entityManager.createQuery(
+                "SELECT NEW es.remorandev.poll.model.ChoiceVoteCount(a.choiceId, count(a.userId)) FROM ArchivedVote a WHERE a.pollId in :pollIds GROUP BY a.choiceId",
+                ChoiceVoteCount.class)
+                .setParameter("pollIds", pollIds)
+                .getResultList();
+
+        return merge(votes, archived);
+    }
+
+    @Override
+    public List<ChoiceVoteCount> countByPollIdGroupByChoiceId(Long pollId) {
+        return countByPollIdInGroupByChoiceId(Collections.singletonList(pollId));
+    }
+
+    @Override
+    public List<Vote> findByUserIdAndPollIdIn(Long userId, List<Long> pollIds) {
+        List<Vote> votes = new ArrayList<>(this.entityManager.createQuery(
+                "SELECT v FROM Vote v WHERE v.user.id = :userId AND v.poll.id in :pollIds", Vote.class)
+                .setParameter("userId", userId)
+                .setParameter("pollIds", pollIds)
+                .getResultList());
+
+        if (votes.size() < pollIds.size()) {
+            this.entityManager.createQuery(
+                    "SELECT a FROM ArchivedVote a WHERE a.userId = :userId AND a.pollId in :pollIds", ArchivedVote.class)
+                    .setParameter("userId", userId)
+                    .setParameter("pollIds", pollIds)
+                    .getResultList()
+                    .forEach(archivedVote -> votes.add(toVote(archivedVote)));
+        }
+
+        return votes;
+    }
+
+    @Override
+    public Vote findByUserIdAndPollId(Long userId, Long pollId) {
+        List<Vote> votes = findByUserIdAndPollIdIn(userId, Collections.singletonList(pollId));
+        return votes.isEmpty() ? null : votes.get(0);
+    }
+
+    @Override
+    public long countByUserId(Long userId) {
+        Long votes = this.entityManager.createQuery(
+                "SELECT count(v.id) FROM Vote v WHERE v.user.id = :userId", Long.class)
+                .setParameter("userId", userId)
+                .getSingleResult();
+
+        Long archived = this.entityManager.createQuery(
+                "SELECT count(a.pollId) FROM ArchivedVote a WHERE a.userId = :userId", Long.class)
+                .setParameter("userId", userId)
+                .getSingleResult();
+
+        return votes + archived;
+    }
+
+    /**
+     * Aplica el mismo cursor a votes y a votes_archive, pide {@code limit} filas de cada una y mezcla
+     * las dos listas ordenadas. Un voto que se archive entre dos paginas conserva su createdAt y su posicion.
+     */
+    @Override
+    public List<VotedPoll> findVotedPollsByUserId(Long userId, KeysetCursor after, int limit) {
+        String afterCondition = after == null ? "" : " AND (%1$s.createdAt < :createdAt OR (%1$s.createdAt = :createdAt AND %2$s < :pollId))";
+
+        TypedQuery<VotedPoll> votes = this.entityManager.createQuery(
+                "SELECT NEW es.remorandev.poll.model.VotedPoll(v.poll.id, v.createdAt) FROM Vote v WHERE v.user.id = :userId" +
+                        String.format(afterCondition, "v", "v.poll.id") +
+                        " ORDER BY v.createdAt DESC, v.poll.id DESC", VotedPoll.class);
+        TypedQuery<VotedPoll> archived = this.entityManager.createQuery(
+                "SELECT NEW es.remorandev.poll.model.VotedPoll(a.pollId, a.createdAt) FROM ArchivedVote a WHERE a.userId = :userId" +
+                        String.format(afterCondition, "a", "a.pollId") +
+                        " ORDER BY a.createdAt DESC, a.pollId DESC", VotedPoll.class);
+
+        for (TypedQuery<VotedPoll> query : Arrays.asList(votes, archived)) {
+            query.setParameter("userId", userId).setMaxResults(limit);
+            if (after != null) {
+                query.setParameter("createdAt", after.getCreatedAt()).setParameter("pollId", after.getId());
+            }
+        }
+
+        List<VotedPoll> hot = votes.getResultList();
+        List<VotedPoll> cold = archived.getResultList();
+        if (cold.isEmpty()) {
+            return hot;
+        }
+
+        Comparator<VotedPoll> newestFirst = Comparator.comparing(VotedPoll::getVotedAt)
+                .thenComparing(VotedPoll::getPollId).reversed();
+        List<VotedPoll> merged = new ArrayList<>(hot.size() + cold.size());
+        merged.addAll(hot);
+        merged.addAll(cold);
+        merged.sort(newestFirst);
+
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    private Vote toVote(ArchivedVote archivedVote) {
+        Vote vote = new Vote();
+        vote.setPoll(this.entityManager.getReference(Poll.class, archivedVote.getPollId()));
+        vote.setChoice(this.entityManager.getReference(Choice.class, archivedVote.getChoiceId()));
+        vote.setUser(this.entityManager.getReference(User.class, archivedVote.getUserId()));
+        vote.setCreatedAt(archivedVote.getCreatedAt());
+        vote.setSelection(archivedVote.getSelection());
+        return vote;
+    }
+
+    private List<ChoiceVoteCount> merge(List<ChoiceVoteCount> votes, List<ChoiceVoteCount> archived) {
+        if (archived.isEmpty()) {
+            return votes;
+        }
+
+        Map<Long, ChoiceVoteCount> merged = new LinkedHashMap<>();
+        votes.forEach(count -> merged.put(count.getChoiceId(), count));
+        archived.forEach(count -> merged.merge(count.getChoiceId(), count,
+                (a, b) -> new ChoiceVoteCount(a.getChoiceId(), a.getVoteCount() + b.getVoteCount())));
+
+        return new ArrayList<>(merged.values());
+    }
+}
@@ -1,17 +1,21 @@
 package es.remorandev.poll.security;
 
 import io.jsonwebtoken.*;
+import es.remorandev.poll.util.RateLimitedLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.Date;
 
 @Component
 public class JwtTokenProvider {
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
+    // Cualquiera puede enviar tokens invalidos: son errores del cliente y se escriben con limite
+    private static final RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 10, Duration.ofMinutes(1));
 
     @Value("${app.jwtSecret}")
     private String jwtSecret;
@@ -47,15 +51,15 @@ public class JwtTokenProvider {
             Jwts.parser().setSigningKey(this.jwtSecret).parseClaimsJws(authToken);
             return true;
         } catch (SignatureException ex) {
-            logger.error("Invalid JWT signature");
+            rateLimitedLogger.warn("Invalid JWT signature");
         } catch (MalformedJwtException ex) {
-            logger.error("Invalid JWT token");
+            rateLimitedLogger.warn("Invalid JWT token");
         } catch (ExpiredJwtException ex) {
-            logger.error("Expired JWT token");
+            rateLimitedLogger.warn("Expired JWT token");
         } catch (UnsupportedJwtException ex) {
-            logger.error("Unsupported JWT token");
+            rateLimitedLogger.warn("Unsupported JWT token");
         } catch (IllegalArgumentException ex) {
-            logger.error("JWT claims string is empty.");
+            rateLimitedLogger.warn("JWT claims string is empty.");
         }
 
         return false;
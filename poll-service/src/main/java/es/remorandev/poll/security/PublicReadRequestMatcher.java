@@ -0,0 +1,44 @@
+package es.remorandev.poll.security;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lecturas publicas anonimas: GET sin cabecera Authorization a rutas permitAll cuya respuesta no depende de
+ * ningun usuario. SecurityConfig les asigna una cadena de Spring Security reducida que solo escribe las cabeceras de
+ * seguridad: sin contexto de seguridad, JWT, autenticacion anonima ni autorizacion.
+ *
+ * Las rutas GET que exigen un rol con @PreAuthorize tienen que quedar fuera, porque en esa cadena no hay
+ * autenticacion anonima que rechazar con 401.
+ */
+public class PublicReadRequestMatcher implements RequestMatcher {
+    private static final List<String> PUBLIC_PATTERNS = Arrays.asList(
+            "/api/polls/**",
+            "/api/users/**",
+            "/api/user/checkUsernameAvailability",
+            "/api/user/checkEmailAvailability");
+
+    private static final List<String> PROTECTED_PATTERNS = Arrays.asList(
+            "/api/polls/*/export");
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    @Override
+    public boolean matches(HttpServletRequest request) {
+        if (!HttpMethod.GET.matches(request.getMethod()) || request.getHeader(HttpHeaders.AUTHORIZATION) != null) {
+            return false;
+        }
+
+        String path = this.urlPathHelper.getPathWithinApplication(request);
+        return PUBLIC_PATTERNS.stream().anyMatch(pattern -> this.pathMatcher.match(pattern, path))
+                && PROTECTED_PATTERNS.stream().noneMatch(pattern -> this.pathMatcher.match(pattern, path));
+    }
+}
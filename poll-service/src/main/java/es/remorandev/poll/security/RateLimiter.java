@@ -0,0 +1,195 @@
+package es.remorandev.poll.security;
+
+import es.remorandev.poll.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Limitador de peticiones en memoria por ruta y por usuario o IP.
+ *
+ * Cada cubeta es un unico AtomicLong con el "theoretical arrival time" del algoritmo GCRA (equivalente a
+ * un token bucket), asi que comprobar una peticion es una lectura del mapa y un compareAndSet, sin locks.
+ * Una cubeta cuyo instante teorico ya ha pasado esta llena y equivale a no tenerla, por eso se puede
+ * eliminar en cualquier momento. Cuando una ruta alcanza maxBuckets, un cliente nuevo hace sitio: primero se
+ * eliminan las cubetas llenas (como mucho una pasada completa cada FULL_SWEEP_INTERVAL_NANOS) y, si todas
+ * estan en uso, la mas cercana a llenarse de una muestra. Asi quien rota IPs o tokens solo desplaza a sus
+ * propias cubetas y a las que ya casi no limitan, y cada cliente nuevo sigue teniendo la suya.
+ */
+@Component
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimiter {
+    private static final long FULL_SWEEP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int EVICTION_SAMPLE_SIZE = 32;
+
+    private final List<Route> routes = new ArrayList<>();
+    private final boolean enabled;
+
+    @Autowired
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        for (Map.Entry<String, RateLimitProperties.Route> entry : properties.getRoutes().entrySet()) {
+            Route route = new Route(entry.getKey(), entry.getValue(), properties.getMaxBuckets(), meterRegistry);
+            this.routes.add(route);
+            meterRegistry.gauge("rate_limit.buckets", Tags.of("route", route.name),
+                    route.buckets, Map::size);
+        }
+    }
+
+    /**
+     * Comprueba la peticion contra la primera ruta que coincida.
+     *
+     * @return 0 si se permite, o los nanosegundos que el cliente debe esperar antes de reintentar
+     */
+    public long tryAcquire(HttpServletRequest request, Long userId) {
+        if (!this.enabled) {
+            return 0;
+        }
+
+        String method = request.getMethod();
+        String path = request.getRequestURI();
+        for (int i = 0; i < this.routes.size(); i++) {
+            Route route = this.routes.get(i);
+            if (route.matches(method, path)) {
+                Object key = route.keyType == RateLimitProperties.KeyType.USER && userId != null
+                        ? userId
+                        : request.getRemoteAddr();
+                return route.tryAcquire(key, System.nanoTime());
+            }
+        }
+
+        return 0;
+    }
+
+    @Scheduled(fixedDelay = 10000)
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        for (Route route : this.routes) {
+            route.buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        }
+    }
+
+    private static final class Route {
+        private final String name;
+        private final String method;
+        private final Pattern pattern;
+        private final RateLimitProperties.KeyType keyType;
+        private final long emissionIntervalNanos;
+        private final long burstToleranceNanos;
+        private final int maxBuckets;
+
+        private final ConcurrentHashMap<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final Counter allowed;
+        private final Counter rejected;
+        private final Counter evicted;
+        private long nextFullSweep = System.nanoTime();
+
+        private Route(String name, RateLimitProperties.Route properties, int maxBuckets, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.method = StringUtils.hasText(properties.getMethod()) ? properties.getMethod().toUpperCase() : null;
+            this.pattern = compile(properties.getPattern());
+            this.keyType = properties.getKey();
+            this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / properties.getPermitsPerSecond());
+            this.burstToleranceNanos = this.emissionIntervalNanos * Math.max(1, properties.getBurst());
+            this.maxBuckets = maxBuckets;
+            this.allowed = meterRegistry.counter("rate_limit.requests", "route", name, "outcome", "allowed");
+            this.rejected = meterRegistry.counter("rate_limit.requests", "route", name, "outcome", "rejected");
+            this.evicted = meterRegistry.counter("rate_limit.evictions", "route", name);
+        }
+
+        private boolean matches(String method, String path) {
+            return (this.method == null || this.method.equals(method)) && this.pattern.matcher(path).matches();
+        }
+
+        private long tryAcquire(Object key, long now) {
+            AtomicLong bucket = this.buckets.get(key);
+            if (bucket == null) {
+                if (this.buckets.size() >= this.maxBuckets) {
+                    makeRoom(now);
+                }
+                AtomicLong created = new AtomicLong(now);
+                bucket = this.buckets.putIfAbsent(key, created);
+                if (bucket == null) {
+                    bucket = created;
+                }
+            }
+
+            while (true) {
+                long tat = bucket.get();
+                long newTat = (tat - now > 0 ? tat : now) + this.emissionIntervalNanos;
+                long waitNanos = newTat - now - this.burstToleranceNanos;
+                if (waitNanos > 0) {
+                    this.rejected.increment();
+                    return waitNanos;
+                }
+                if (bucket.compareAndSet(tat, newTat)) {
+                    this.allowed.increment();
+                    return 0;
+                }
+            }
+        }
+
+        private synchronized void makeRoom(long now) {
+            if (this.buckets.size() < this.maxBuckets) {
+                return;
+            }
+            if (now - this.nextFullSweep >= 0) {
+                this.nextFullSweep = now + FULL_SWEEP_INTERVAL_NANOS;
+                int before = this.buckets.size();
+                this.buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+                this.evicted.increment(before - this.buckets.size());
+            }
+
+            while (this.buckets.size() >= this.maxBuckets) {
+                Map.Entry<Object, AtomicLong> oldest = null;
+                int sampled = 0;
+                for (Map.Entry<Object, AtomicLong> entry : this.buckets.entrySet()) {
+                    if (oldest == null || entry.getValue().get() - oldest.getValue().get() < 0) {
+                        oldest = entry;
+                    }
+                    if (++sampled == EVICTION_SAMPLE_SIZE) {
+                        break;
+                    }
+                }
+                if (oldest == null) {
+                    return;
+                }
+                this.buckets.remove(oldest.getKey(), oldest.getValue());
+                this.evicted.increment();
+            }
+        }
+
+        // Convierte un patron estilo Ant (* dentro de un segmento, ** cualquier numero de segmentos) en una regex
+        private static Pattern compile(String antPattern) {
+            StringBuilder regex = new StringBuilder();
+            String[] parts = antPattern.split("\\*\\*", -1);
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    regex.append(".*");
+                }
+                String[] segments = parts[i].split("\\*", -1);
+                for (int j = 0; j < segments.length; j++) {
+                    if (j > 0) {
+                        regex.append("[^/]*");
+                    }
+                    regex.append(Pattern.quote(segments[j]));
+                }
+            }
+            return Pattern.compile(regex.toString());
+        }
+    }
+}
@@ -0,0 +1,636 @@
+package es.remorandev.poll.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import es.remorandev.poll.event.VoteCast;
+import es.remorandev.poll.exception.AppException;
+import es.remorandev.poll.journal.VoteJournal;
+import es.remorandev.poll.model.RoleName;
+import es.remorandev.poll.payload.ImportRecord;
+import es.remorandev.poll.payload.ImportReport;
+import es.remorandev.poll.repository.RoleRepository;
+import es.remorandev.poll.tally.VoteTally;
+import es.remorandev.poll.util.VotePartitions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Importacion masiva de usuarios, encuestas y votos desde NDJSON (una linea por registro, ver ImportRecord).
+ *
+ * Las lineas se agrupan en bloques que se parsean en paralelo. Los bloques se procesan en orden en el hilo de la
+ * peticion: los usuarios y las encuestas se insertan con INSERT de muchas filas y el id generado para cada id de
+ * origen se guarda en memoria, asi que las referencias (creador de una encuesta, encuesta y usuario de un voto) se
+ * resuelven sin consultar la base de datos. Los votos, que son el grueso, se escriben en paralelo desde varios hilos,
+ * tambien en lotes. Como mucho hay unos pocos bloques en vuelo, de modo que la memoria solo crece con los mapas de ids.
+ *
+ * Los registros deben llegar en orden: un usuario antes que sus encuestas y una encuesta antes que sus votos. Las
+ * contraseñas llegan ya cifradas con BCrypt. Los votos de encuestas que el archivado ya habria movido van directamente
+ * a votes_archive. Cada lote de votos confirmado se anade tambien al diario de votos, y al terminar se reconstruye el
+ * recuento (VoteTally.rebuild). Un registro invalido se salta; un error de la base de datos interrumpe la importacion.
+ * Tambien se saltan, antes de llegar a la base de datos, los usuarios con un nombre o un correo ya usado (en la tabla o
+ * antes en el archivo) y el segundo voto de un usuario en una encuesta, que romperian una clave unica.
+ */
+@Service
+public class BulkImportService {
+    private static final Pattern BCRYPT_HASH = Pattern.compile("\\$2[aby]?\\$\\d\\d\\$[./0-9A-Za-z]{53}");
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private VoteArchiveService voteArchiveService;
+
+    @Autowired
+    private VoteTimelineService voteTimelineService;
+
+    @Autowired
+    private PollSearchService pollSearchService;
+
+    @Autowired
+    private VoteJournal voteJournal;
+
+    @Autowired
+    private VoteTally voteTally;
+
+    @Value("${app.import.chunkSize}")
+    private int chunkSize;
+
+    @Value("${app.import.batchSize}")
+    private int batchSize;
+
+    @Value("${app.import.parserThreads}")
+    private int parserThreads;
+
+    @Value("${app.import.writerThreads}")
+    private int writerThreads;
+
+    @Value("${app.import.progressIntervalMs}")
+    private long progressIntervalMs;
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkImportService.class);
+
+    public ImportReport importRecords(InputStream input) throws IOException {
+        int parsers = this.parserThreads > 0 ? this.parserThreads : Runtime.getRuntime().availableProcessors();
+        ImportRun run = new ImportRun(
+                this.roleRepository.findByName(RoleName.ROLE_USER).orElseThrow(() -> new AppException("User Role not set")).getId(),
+                this.voteArchiveService.archiveCutoff(), firstPartitionPeriod());
+        ExecutorService parserPool = Executors.newFixedThreadPool(parsers, new CustomizableThreadFactory("import-parser-"));
+        ExecutorService writerPool = Executors.newFixedThreadPool(this.writerThreads, new CustomizableThreadFactory("import-writer-"));
+        Semaphore writeSlots = new Semaphore(this.writerThreads * 2);
+        ObjectReader recordReader = this.objectMapper.readerFor(ImportRecord.class);
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16);
+            Deque<Future<ParsedChunk>> parsing = new ArrayDeque<>();
+            List<String> lines = new ArrayList<>(this.chunkSize);
+            String line;
+            while ((line = reader.readLine()) != null && run.failure.get() == null) {
+                lines.add(line);
+                if (lines.size() == this.chunkSize) {
+                    parsing.add(submitParse(parserPool, recordReader, lines, run.lines + 1));
+                    run.lines += lines.size();
+                    lines = new ArrayList<>(this.chunkSize);
+                    // Se parsean por delante como mucho dos bloques por hilo
+                    if (parsing.size() >= parsers * 2) {
+                        process(run, parsing.poll().get(), writerPool, writeSlots);
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                parsing.add(submitParse(parserPool, recordReader, lines, run.lines + 1));
+                run.lines += lines.size();
+            }
+            while (!parsing.isEmpty() && run.failure.get() == null) {
+                process(run, parsing.poll().get(), writerPool, writeSlots);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            run.fail(ex);
+        } catch (ExecutionException ex) {
+            run.fail(ex.getCause());
+        } catch (RuntimeException ex) {
+            run.fail(ex);
+        } finally {
+            parserPool.shutdownNow();
+            writerPool.shutdown();
+            awaitTermination(writerPool);
+        }
+
+        if (run.polls > 0) {
+            // Las encuestas importadas tienen fechas antiguas y la actualizacion incremental del indice no las veria
+            this.pollSearchService.rebuild();
+        }
+        if (run.votes.get() > 0) {
+            // Los votos importados no pasan por recordVote; tambien los de una importacion interrumpida
+            this.voteTally.rebuild();
+        }
+
+        Throwable failure = run.failure.get();
+        ImportReport report = new ImportReport(run.lines, run.users, run.polls, run.choices, run.votes.get(), run.skipped,
+                run.errors, run.elapsedMs(), failure == null ? null : String.valueOf(failure.getMessage()));
+        if (failure != null) {
+            logger.error("Import aborted after {} lines", run.lines, failure);
+        }
+        logger.info("Imported {} users, {} polls, {} choices and {} votes in {} ms ({} rows/s, {} records skipped)",
+                report.getUsers(), report.getPolls(), report.getChoices(), report.getVotes(), report.getElapsedMs(),
+                report.getRowsPerSecond(), report.getSkipped());
+
+        return report;
+    }
+
+    private Future<ParsedChunk> submitParse(ExecutorService parserPool, ObjectReader recordReader, List<String> lines,
+                                            long firstLineNumber) {
+        return parserPool.submit(() -> {
+            ParsedChunk chunk = new ParsedChunk();
+            long lineNumber = firstLineNumber;
+            for (String line : lines) {
+                if (!line.trim().isEmpty()) {
+                    try {
+                        ImportRecord record = recordReader.readValue(line);
+                        record.setLineNumber(lineNumber);
+                        chunk.records.add(record);
+                    } catch (JsonProcessingException ex) {
+                        chunk.errors.add("line " + lineNumber + ": " + ex.getOriginalMessage());
+                    }
+                }
+                lineNumber++;
+            }
+            return chunk;
+        });
+    }
+
+    /**
+     * Inserta los usuarios y encuestas del bloque, resuelve sus votos y los entrega a los hilos de escritura.
+     */
+    private void process(ImportRun run, ParsedChunk chunk, ExecutorService writerPool, Semaphore writeSlots)
+            throws InterruptedException {
+        chunk.errors.forEach(run::skip);
+
+        List<ImportRecord> users = new ArrayList<>();
+        List<ImportRecord> polls = new ArrayList<>();
+        List<ImportRecord> votes = new ArrayList<>();
+        for (ImportRecord record : chunk.records) {
+            if ("user".equals(record.getType())) {
+                users.add(record);
+            } else if ("poll".equals(record.getType())) {
+                polls.add(record);
+            } else if ("vote".equals(record.getType())) {
+                votes.add(record);
+            } else {
+                run.skip(record, "unknown record type '" + record.getType() + "'");
+            }
+        }
+
+        this.transactionTemplate.execute(status -> {
+            insertUsers(run, users);
+            insertPolls(run, polls);
+            return null;
+        });
+
+        VoteBatch batch = resolveVotes(run, votes);
+        if (batch.size() > 0) {
+            writeSlots.acquire();
+            writerPool.execute(() -> {
+                try {
+                    if (run.failure.get() == null) {
+                        writeVotes(batch);
+                        run.votes.addAndGet(batch.size());
+                    }
+                } catch (RuntimeException ex) {
+                    run.fail(ex);
+                } finally {
+                    writeSlots.release();
+                }
+            });
+        }
+
+        run.logProgress(this.progressIntervalMs);
+    }
+
+    private void insertUsers(ImportRun run, List<ImportRecord> records) {
+        loadTakenIdentities(run, records);
+
+        List<ImportRecord> valid = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (ImportRecord record : records) {
+            String error = validateUser(run, record);
+            if (error != null) {
+                run.skip(record, error);
+                continue;
+            }
+            Timestamp createdAt = Timestamp.from(record.getCreatedAt() != null ? record.getCreatedAt() : Instant.now());
+            run.usernames.add(identityKey(record.getUsername()));
+            run.emails.add(identityKey(record.getEmail()));
+            valid.add(record);
+            rows.add(new Object[]{record.getName(), record.getUsername(), record.getEmail(), record.getPasswordHash(),
+                    createdAt, createdAt});
+        }
+
+        long[] ids = insert("users", "name, username, email, password, created_at, updated_at", rows, true);
+        List<Object[]> roles = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            run.userIds.put(valid.get(i).getId(), ids[i]);
+            roles.add(new Object[]{ids[i], run.userRoleId});
+        }
+        insert("user_roles", "user_id, role_id", roles, false);
+        run.users += ids.length;
+    }
+
+    /**
+     * Anade a los ya usados los nombres y correos del bloque que existen en la tabla users.
+     */
+    private void loadTakenIdentities(ImportRun run, List<ImportRecord> records) {
+        List<ImportRecord> candidates = records.stream()
+                .filter(record -> record.getUsername() != null && record.getEmail() != null)
+                .collect(Collectors.toList());
+        for (int from = 0; from < candidates.size(); from += this.batchSize) {
+            List<ImportRecord> batch = candidates.subList(from, Math.min(from + this.batchSize, candidates.size()));
+            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+            List<Object> args = new ArrayList<>(batch.size() * 2);
+            batch.forEach(record -> args.add(record.getUsername()));
+            batch.forEach(record -> args.add(record.getEmail()));
+
+            this.jdbcTemplate.query(
+                    "SELECT username, email FROM users WHERE username IN (" + placeholders + ") OR email IN (" + placeholders + ")",
+                    args.toArray(),
+                    (RowCallbackHandler) rs -> {
+                        run.usernames.add(identityKey(rs.getString(1)));
+                        run.emails.add(identityKey(rs.getString(2)));
+                    });
+        }
+    }
+
+    private void insertPolls(ImportRun run, List<ImportRecord> records) {
+        List<ImportRecord> valid = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (ImportRecord record : records) {
+            String error = validatePoll(run, record);
+            if (error != null) {
+                run.skip(record, error);
+                continue;
+            }
+            Long createdBy = run.userIds.get(record.getCreatedBy());
+            Timestamp createdAt = Timestamp.from(record.getCreatedAt());
+            valid.add(record);
+            rows.add(new Object[]{record.getQuestion(), createdBy, createdBy, createdAt, createdAt,
+                    Timestamp.from(record.getExpirationDateTime()), 0L});
+        }
+
+        long[] pollIds = insert("polls", "question, created_by, updated_by, created_at, updated_at, expiration_date_time, version",
+                rows, true);
+
+        List<Object[]> choiceRows = new ArrayList<>();
+        for (int i = 0; i < pollIds.length; i++) {
+            for (String text : valid.get(i).getChoices()) {
+                choiceRows.add(new Object[]{text, pollIds[i]});
+            }
+        }
+        long[] choiceIds = insert("choices", "text, poll_id", choiceRows, true);
+
+        int nextChoice = 0;
+        for (int i = 0; i < pollIds.length; i++) {
+            ImportRecord record = valid.get(i);
+            long[] pollChoiceIds = new long[record.getChoices().size()];
+            System.arraycopy(choiceIds, nextChoice, pollChoiceIds, 0, pollChoiceIds.length);
+            nextChoice += pollChoiceIds.length;
+
+            int period = VotePartitions.periodOf(record.getCreatedAt());
+            boolean archived = record.getExpirationDateTime().isBefore(run.archiveCutoff) || period < run.firstPartitionPeriod;
+            run.pollsById.put(record.getId(), new ImportedPoll(pollIds[i], pollChoiceIds, period, archived, record.getCreatedAt()));
+        }
+        run.polls += pollIds.length;
+        run.choices += choiceIds.length;
+    }
+
+    private VoteBatch resolveVotes(ImportRun run, List<ImportRecord> records) {
+        VoteBatch batch = new VoteBatch();
+        for (ImportRecord record : records) {
+            ImportedPoll poll = record.getPoll() != null ? run.pollsById.get(record.getPoll()) : null;
+            Long userId = record.getUser() != null ? run.userIds.get(record.getUser()) : null;
+            if (poll == null) {
+                run.skip(record, "unknown poll " + record.getPoll());
+                continue;
+            }
+            if (userId == null) {
+                run.skip(record, "unknown user " + record.getUser());
+                continue;
+            }
+            if (record.getChoice() == null || record.getChoice() < 0 || record.getChoice() >= poll.choiceIds.length) {
+                run.skip(record, "poll " + record.getPoll() + " has no choice " + record.getChoice());
+                continue;
+            }
+
+            // Las encuestas son nuevas: un voto solo puede repetirse dentro del propio archivo
+            if (!poll.voters.add(userId)) {
+                run.skip(record, "user " + record.getUser() + " already voted in poll " + record.getPoll());
+                continue;
+            }
+
+            long choiceId = poll.choiceIds[record.getChoice()];
+            Instant votedAt = record.getCreatedAt() != null ? record.getCreatedAt() : poll.createdAt;
+            Timestamp votedAtTimestamp = Timestamp.from(votedAt);
+            if (poll.archived) {
+                batch.archived.add(new Object[]{poll.id, userId, choiceId, votedAtTimestamp});
+            } else {
+                batch.hot.add(new Object[]{poll.id, userId, choiceId, poll.period, votedAtTimestamp, votedAtTimestamp});
+            }
+            batch.timeline.add(new VoteTimelineService.TimelineVote(poll.id, choiceId, votedAt));
+            // Las encuestas importadas son de opcion unica
+            batch.journal.add(new VoteCast(poll.id, choiceId, userId, votedAt, 0));
+        }
+        return batch;
+    }
+
+    private void writeVotes(VoteBatch batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                this.transactionTemplate.execute(status -> {
+                    insert("votes", "poll_id, user_id, choice_id, poll_period, created_at, updated_at", batch.hot, false);
+                    insert("votes_archive", "poll_id, user_id, choice_id, created_at", batch.archived, false);
+                    this.voteTimelineService.recordVotes(batch.timeline);
+                    return null;
+                });
+                for (VoteCast vote : batch.journal) {
+                    this.voteJournal.append(vote.getPollId(), vote.getChoiceId(), vote.getUserId(),
+                            vote.getVotedAt().toEpochMilli(), vote.getSelection());
+                }
+                return;
+            } catch (PessimisticLockingFailureException ex) {
+                // Dos lotes de la misma encuesta pueden bloquearse en las cubetas; la transaccion se repite entera
+                if (attempt == MAX_WRITE_ATTEMPTS) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * INSERT de varias filas por sentencia; devuelve los ids generados en el orden de las filas si se piden.
+     */
+    private long[] insert(String table, String columns, List<Object[]> rows, boolean returnIds) {
+        if (rows.isEmpty()) {
+            return new long[0];
+        }
+
+        return this.jdbcTemplate.execute((ConnectionCallback<long[]>) connection -> {
+            long[] ids = new long[returnIds ? rows.size() : 0];
+            int nextId = 0;
+            String rowPlaceholders = "(" + String.join(", ", Collections.nCopies(rows.get(0).length, "?")) + ")";
+            for (int from = 0; from < rows.size(); from += this.batchSize) {
+                List<Object[]> batch = rows.subList(from, Math.min(from + this.batchSize, rows.size()));
+                String sql = "INSERT INTO " + table + " (" + columns + ") VALUES " +
+                        String.join(", ", Collections.nCopies(batch.size(), rowPlaceholders));
+                try (PreparedStatement statement = returnIds
+                        ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                        : connection.prepareStatement(sql)) {
+                    int index = 1;
+                    for (Object[] row : batch) {
+                        for (Object value : row) {
+                            statement.setObject(index++, value);
+                        }
+                    }
+                    statement.executeUpdate();
+                    if (returnIds) {
+                        try (ResultSet keys = statement.getGeneratedKeys()) {
+                            while (keys.next()) {
+                                ids[nextId++] = keys.getLong(1);
+                            }
+                        }
+                    }
+                }
+            }
+            return ids;
+        });
+    }
+
+    private String validateUser(ImportRun run, ImportRecord record) {
+        if (record.getId() == null) {
+            return "missing id";
+        }
+        if (run.userIds.containsKey(record.getId())) {
+            return "duplicated user " + record.getId();
+        }
+        if (isBlankOrLonger(record.getName(), 40) || isBlankOrLonger(record.getUsername(), 15)
+                || isBlankOrLonger(record.getEmail(), 40)) {
+            return "name, username and email are required (max 40, 15 and 40 characters)";
+        }
+        if (record.getPasswordHash() == null || !BCRYPT_HASH.matcher(record.getPasswordHash()).matches()) {
+            return "passwordHash must be a BCrypt hash";
+        }
+        if (run.usernames.contains(identityKey(record.getUsername()))) {
+            return "username " + record.getUsername() + " is already taken";
+        }
+        if (run.emails.contains(identityKey(record.getEmail()))) {
+            return "email " + record.getEmail() + " is already in use";
+        }
+        return null;
+    }
+
+    private String validatePoll(ImportRun run, ImportRecord record) {
+        if (record.getId() == null) {
+            return "missing id";
+        }
+        if (run.pollsById.containsKey(record.getId())) {
+            return "duplicated poll " + record.getId();
+        }
+        if (record.getCreatedBy() == null || !run.userIds.containsKey(record.getCreatedBy())) {
+            return "unknown user " + record.getCreatedBy();
+        }
+        if (isBlankOrLonger(record.getQuestion(), 140)) {
+            return "question is required (max 140 characters)";
+        }
+        List<String> choices = record.getChoices();
+        if (choices == null || choices.size() < 2 || choices.size() > 6
+                || choices.stream().anyMatch(choice -> isBlankOrLonger(choice, 40))) {
+            return "a poll needs between 2 and 6 choices (max 40 characters)";
+        }
+        if (record.getCreatedAt() == null || record.getExpirationDateTime() == null
+                || !record.getExpirationDateTime().isAfter(record.getCreatedAt())) {
+            return "createdAt and a later expirationDateTime are required";
+        }
+        return null;
+    }
+
+    /**
+     * Las claves unicas de users no distinguen mayusculas.
+     */
+    private static String identityKey(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isBlankOrLonger(String value, int maxLength) {
+        return value == null || value.trim().isEmpty() || value.length() > maxLength;
+    }
+
+    /**
+     * Periodo de la particion mensual mas antigua de votes: los votos anteriores ya no caben en la tabla.
+     */
+    private int firstPartitionPeriod() {
+        List<String> partitions = this.jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'votes' AND PARTITION_NAME IS NOT NULL",
+                String.class);
+
+        return partitions.stream()
+                .mapToInt(VotePartitions::periodOfPartition)
+                .filter(period -> period >= 0)
+                .min()
+                .orElse(0);
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Waiting for import writers to finish");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class ParsedChunk {
+        private final List<ImportRecord> records = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+    }
+
+    private static class ImportedPoll {
+        private final long id;
+        private final long[] choiceIds;
+        private final int period;
+        private final boolean archived;
+        private final Instant createdAt;
+        private final Set<Long> voters = new HashSet<>();
+
+        ImportedPoll(long id, long[] choiceIds, int period, boolean archived, Instant createdAt) {
+            this.id = id;
+            this.choiceIds = choiceIds;
+            this.period = period;
+            this.archived = archived;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static class VoteBatch {
+        private final List<Object[]> hot = new ArrayList<>();
+        private final List<Object[]> archived = new ArrayList<>();
+        private final List<VoteTimelineService.TimelineVote> timeline = new ArrayList<>();
+        private final List<VoteCast> journal = new ArrayList<>();
+
+        int size() {
+            return this.hot.size() + this.archived.size();
+        }
+    }
+
+    /**
+     * Estado de una importacion. Salvo failure y votes, solo lo toca el hilo de la peticion.
+     */
+    private static class ImportRun {
+        private final long userRoleId;
+        private final Instant archiveCutoff;
+        private final int firstPartitionPeriod;
+        private final long startNanos = System.nanoTime();
+
+        private final Map<Long, Long> userIds = new HashMap<>();
+        private final Map<Long, ImportedPoll> pollsById = new HashMap<>();
+        private final Set<String> usernames = new HashSet<>();
+        private final Set<String> emails = new HashSet<>();
+        private final List<String> errors = new ArrayList<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicLong votes = new AtomicLong();
+
+        private long lines;
+        private long users;
+        private long polls;
+        private long choices;
+        private long skipped;
+        private long lastProgressNanos = System.nanoTime();
+
+        ImportRun(long userRoleId, Instant archiveCutoff, int firstPartitionPeriod) {
+            this.userRoleId = userRoleId;
+            this.archiveCutoff = archiveCutoff;
+            this.firstPartitionPeriod = firstPartitionPeriod;
+        }
+
+        void skip(ImportRecord record, String error) {
+            skip("line " + record.getLineNumber() + ": " + error);
+        }
+
+        void skip(String error) {
+            this.skipped++;
+            if (this.errors.size() < MAX_REPORTED_ERRORS) {
+                this.errors.add(error);
+            }
+        }
+
+        void fail(Throwable failure) {
+            this.failure.compareAndSet(null, failure);
+        }
+
+        long elapsedMs() {
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos));
+        }
+
+        void logProgress(long intervalMs) {
+            long now = System.nanoTime();
+            if (TimeUnit.NANOSECONDS.toMillis(now - this.lastProgressNanos) < intervalMs) {
+                return;
+            }
+            this.lastProgressNanos = now;
+            long rows = this.users + this.polls + this.choices + this.votes.get();
+            logger.info("Import progress: {} lines, {} users, {} polls, {} votes ({} rows/s)",
+                    this.lines, this.users, this.polls, this.votes.get(), rows * 1000 / elapsedMs());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package es.remorandev.poll.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.remorandev.poll.exception.AppException;
+import es.remorandev.poll.exception.BadRequestException;
+import es.remorandev.poll.exception.ConflictException;
+import es.remorandev.poll.exception.ServiceUnavailableException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Guarda en memoria el resultado de las peticiones con cabecera Idempotency-Key para que los reintentos
+ * se respondan sin volver a ejecutarlas. Las peticiones concurrentes con la misma clave esperan el
+ * resultado de la primera. Si la peticion falla no se guarda nada y el siguiente reintento se ejecuta.
+ *
+ * El almacen esta acotado a app.idempotency.maxEntries y cada resultado caduca a los app.idempotency.ttlMs. Las
+ * entradas en curso nunca se descartan, porque un reintento concurrente volveria a ejecutar la peticion: al llenarse
+ * se descartan primero las terminadas mas antiguas y, si todas estan en curso, la peticion nueva se rechaza con 503.
+ * Es local a cada instancia.
+ */
+@Service
+public class IdempotencyService {
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    @Value("${app.idempotency.ttlMs}")
+    private long ttlMs;
+
+    @Value("${app.idempotency.maxEntries}")
+    private int maxEntries;
+
+    @Value("${app.idempotency.waitTimeoutMs}")
+    private long waitTimeoutMs;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * SHA-256 de la operacion y el contenido de la peticion serializados como un array JSON, que no es ambiguo
+     * (dos peticiones distintas no dan el mismo texto).
+     */
+    public String fingerprint(String operation, Object... parts) {
+        List<Object> canonical = new ArrayList<>();
+        canonical.add(operation);
+        canonical.addAll(Arrays.asList(parts));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(this.objectMapper.writeValueAsBytes(canonical));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (JsonProcessingException | NoSuchAlgorithmException ex) {
+            throw new AppException("Could not fingerprint the " + operation + " request", ex);
+        }
+    }
+
+    /**
+     * Ejecuta action una sola vez por (userId, idempotencyKey). Sin clave, simplemente ejecuta action.
+     *
+     * @param fingerprint identifica el contenido de la peticion; reutilizar la clave con otro contenido es un error
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String idempotencyKey, Long userId, String fingerprint, Supplier<T> action) {
+        if (!StringUtils.hasText(idempotencyKey)) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must not be longer than " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String key = userId + ":" + idempotencyKey;
+        Entry entry = new Entry(key, fingerprint);
+
+        while (true) {
+            Entry existing = this.entries.putIfAbsent(key, entry);
+            if (existing == null) {
+                break;
+            }
+            if (existing.isExpired(System.currentTimeMillis())) {
+                this.entries.remove(key, existing);
+                continue;
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new BadRequestException("Idempotency-Key has already been used for a different request");
+            }
+            return (T) existing.await(this.waitTimeoutMs);
+        }
+
+        this.insertionOrder.add(entry);
+        if (!evictOverflow()) {
+            ServiceUnavailableException ex = new ServiceUnavailableException(
+                    "Too many requests with an Idempotency-Key in progress, please try again later");
+            this.entries.remove(key, entry);
+            entry.fail(ex);
+            throw ex;
+        }
+
+        try {
+            T result = action.get();
+            entry.complete(result, System.currentTimeMillis() + this.ttlMs);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            this.entries.remove(key, entry);
+            entry.fail(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Descarta los resultados caducados. Caducan desde que terminan, no en orden de llegada, asi que se recorre toda
+     * la cola; las entradas en curso se quedan.
+     */
+    @Scheduled(fixedDelayString = "${app.idempotency.ttlMs}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Entry> iterator = this.insertionOrder.iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            if (this.entries.get(entry.key) != entry) {
+                iterator.remove();
+            } else if (entry.isExpired(now)) {
+                iterator.remove();
+                this.entries.remove(entry.key, entry);
+            }
+        }
+    }
+
+    /**
+     * Hace sitio descartando las entradas terminadas mas antiguas; devuelve false si no queda sitio porque el resto
+     * estan en curso.
+     */
+    private boolean evictOverflow() {
+        Iterator<Entry> iterator = this.insertionOrder.iterator();
+        while (this.entries.size() > this.maxEntries && iterator.hasNext()) {
+            Entry oldest = iterator.next();
+            if (this.entries.get(oldest.key) != oldest) {
+                iterator.remove();
+            } else if (oldest.isDone()) {
+                iterator.remove();
+                this.entries.remove(oldest.key, oldest);
+            }
+        }
+        return this.entries.size() <= this.maxEntries;
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String fingerprint;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        private Entry(String key, String fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean isDone() {
+            return this.result.isDone();
+        }
+
+        private boolean isExpired(long now) {
+            return this.expiresAt <= now;
+        }
+
+        private void complete(Object value, long expiresAt) {
+            this.expiresAt = expiresAt;
+            this.result.complete(value);
+        }
+
+        private void fail(Throwable ex) {
+            this.result.completeExceptionally(ex);
+        }
+
+        private Object await(long timeoutMs) {
+            try {
+                return this.result.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                throw new ConflictException("A request with the same Idempotency-Key is still in progress");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new AppException("Interrupted while waiting for a request with the same Idempotency-Key", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new AppException("Request with the same Idempotency-Key failed", ex.getCause());
+            }
+        }
+    }
+}
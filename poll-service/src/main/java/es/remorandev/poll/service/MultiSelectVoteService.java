@@ -0,0 +1,172 @@
+package es.remorandev.poll.service;
+
+import es.remorandev.poll.exception.BadRequestException;
+import es.remorandev.poll.model.Choice;
+import es.remorandev.poll.model.Poll;
+import es.remorandev.poll.model.PollType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Votos y recuentos de las encuestas MULTIPLE.
+ *
+ * Una papeleta es una sola fila de votes: choice_id guarda la primera opcion marcada (la clave unica y el resto de
+ * lectores de votes siguen igual) y selection todas las marcadas como mascara de bits sobre sus posiciones en el
+ * orden de id. Con 6 opciones como mucho hay 63 mascaras distintas, asi que el recuento agrupa por
+ * (poll_id, selection) solo con el indice y suma cada grupo a las opciones con su bit encendido.
+ */
+@Service
+public class MultiSelectVoteService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Mascara de las opciones marcadas.
+     */
+    public static int toSelection(Poll poll, List<Long> choiceIds) {
+        if (choiceIds == null || choiceIds.isEmpty()) {
+            throw new BadRequestException("A multiple choice poll needs at least one choice");
+        }
+
+        List<Long> pollChoiceIds = sortedChoiceIds(poll);
+        int selection = 0;
+        for (Long choiceId : choiceIds) {
+            int position = pollChoiceIds.indexOf(choiceId);
+            if (position < 0) {
+                throw new BadRequestException("Choice " + choiceId + " does not belong to this poll");
+            }
+            if ((selection & (1 << position)) != 0) {
+                throw new BadRequestException("Choice " + choiceId + " appears more than once");
+            }
+            selection |= 1 << position;
+        }
+        return selection;
+    }
+
+    /**
+     * Ids de las opciones marcadas, en orden de id.
+     */
+    public static List<Long> toChoiceIds(Poll poll, int selection) {
+        return toChoiceIds(sortedChoiceIds(poll), selection);
+    }
+
+    /**
+     * Ids de las opciones marcadas, a partir de los ids de todas las opciones de la encuesta en orden.
+     */
+    public static List<Long> toChoiceIds(List<Long> pollChoiceIds, int selection) {
+        List<Long> choiceIds = new ArrayList<>();
+        for (int position = 0; position < pollChoiceIds.size(); position++) {
+            if ((selection & (1 << position)) != 0) {
+                choiceIds.add(pollChoiceIds.get(position));
+            }
+        }
+        return choiceIds;
+    }
+
+    /**
+     * Ids de las opciones de cada encuesta, en orden, para traducir mascaras sin cargar las encuestas.
+     */
+    public Map<Long, List<Long>> choiceIdsByPoll(Collection<Long> pollIds) {
+        if (pollIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Long, List<Long>> choiceIds = new HashMap<>();
+        this.jdbcTemplate.query(
+                "SELECT poll_id, id FROM choices WHERE poll_id IN (" + String.join(", ", Collections.nCopies(pollIds.size(), "?")) + ") " +
+                        "ORDER BY poll_id, id",
+                pollIds.toArray(),
+                (RowCallbackHandler) rs -> choiceIds.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getLong(2)));
+        return choiceIds;
+    }
+
+    /**
+     * Recuentos de las encuestas MULTIPLE de la lista, por id de encuesta.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, SelectionCounts> countByPolls(List<Poll> polls) {
+        List<Poll> multiple = polls.stream().filter(poll -> poll.getType() == PollType.MULTIPLE).collect(Collectors.toList());
+        if (multiple.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // Una encuesta archivada tiene todos sus votos en votes_archive
+        Map<Long, Map<Integer, Long>> selectionCounts = new HashMap<>();
+        Object[] pollIds = multiple.stream().map(Poll::getId).toArray();
+        String placeholders = String.join(", ", Collections.nCopies(pollIds.length, "?"));
+        this.jdbcTemplate.query(
+                "SELECT poll_id, selection, COUNT(*) FROM votes WHERE poll_id IN (" + placeholders + ") " +
+                        "AND selection IS NOT NULL GROUP BY poll_id, selection " +
+                        "UNION ALL " +
+                        "SELECT poll_id, selection, COUNT(*) FROM votes_archive WHERE poll_id IN (" + placeholders + ") " +
+                        "AND selection IS NOT NULL GROUP BY poll_id, selection",
+                Stream.of(pollIds, pollIds).flatMap(Stream::of).toArray(),
+                (RowCallbackHandler) rs -> selectionCounts.computeIfAbsent(rs.getLong(1), id -> new HashMap<>())
+                        .merge(rs.getInt(2), rs.getLong(3), Long::sum));
+
+        Map<Long, SelectionCounts> counts = new HashMap<>();
+        for (Poll poll : multiple) {
+            counts.put(poll.getId(), count(sortedChoiceIds(poll),
+                    selectionCounts.getOrDefault(poll.getId(), Collections.emptyMap())));
+        }
+        return counts;
+    }
+
+    private static SelectionCounts count(List<Long> choiceIds, Map<Integer, Long> selectionCounts) {
+        long[] votes = new long[choiceIds.size()];
+        long ballots = 0;
+        for (Map.Entry<Integer, Long> entry : selectionCounts.entrySet()) {
+            ballots += entry.getValue();
+            for (int bits = entry.getKey(); bits != 0; bits &= bits - 1) {
+                int position = Integer.numberOfTrailingZeros(bits);
+                if (position < votes.length) {
+                    votes[position] += entry.getValue();
+                }
+            }
+        }
+
+        Map<Long, Long> choiceVoteCounts = new HashMap<>();
+        for (int position = 0; position < votes.length; position++) {
+            choiceVoteCounts.put(choiceIds.get(position), votes[position]);
+        }
+        return new SelectionCounts(choiceVoteCounts, ballots);
+    }
+
+    static List<Long> sortedChoiceIds(Poll poll) {
+        return poll.getChoices().stream().map(Choice::getId).sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Votantes que marcaron cada opcion (por id de opcion) y papeletas de la encuesta.
+     */
+    public static class SelectionCounts {
+        private final Map<Long, Long> choiceVoteCounts;
+        private final long ballots;
+
+        SelectionCounts(Map<Long, Long> choiceVoteCounts, long ballots) {
+            this.choiceVoteCounts = choiceVoteCounts;
+            this.ballots = ballots;
+        }
+
+        public Map<Long, Long> getChoiceVoteCounts() {
+            return choiceVoteCounts;
+        }
+
+        public long getBallots() {
+            return ballots;
+        }
+    }
+}
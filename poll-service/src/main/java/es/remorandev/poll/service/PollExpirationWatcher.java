@@ -0,0 +1,42 @@
+package es.remorandev.poll.service;
+
+import es.remorandev.poll.event.DomainEventBus;
+import es.remorandev.poll.event.PollExpired;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Publica PollExpired cuando vence una encuesta. Una encuesta no cambia al expirar, asi que se buscan
+ * periodicamente las que han vencido desde la comprobacion anterior (usa idx_polls_expiration).
+ *
+ * Solo mira hacia delante desde el arranque, y cada instancia publica en su propio bus.
+ */
+@Service
+public class PollExpirationWatcher {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DomainEventBus domainEventBus;
+
+    private Instant lastCheck = Instant.now();
+
+    @Scheduled(initialDelayString = "${app.events.expirationCheckIntervalMs}", fixedDelayString = "${app.events.expirationCheckIntervalMs}")
+    public void publishExpiredPolls() {
+        Instant now = Instant.now();
+
+        this.jdbcTemplate.query(
+                "SELECT id, expiration_date_time FROM polls WHERE expiration_date_time > ? AND expiration_date_time <= ? " +
+                        "ORDER BY expiration_date_time",
+                new Object[]{Timestamp.from(this.lastCheck), Timestamp.from(now)},
+                (RowCallbackHandler) rs -> this.domainEventBus.publish(new PollExpired(rs.getLong(1), rs.getTimestamp(2).toInstant())));
+
+        this.lastCheck = now;
+    }
+}
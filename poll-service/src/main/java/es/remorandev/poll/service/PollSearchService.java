@@ -0,0 +1,241 @@
+package es.remorandev.poll.service;
+
+import es.remorandev.poll.event.DomainEvent;
+import es.remorandev.poll.event.DomainEventListener;
+import es.remorandev.poll.event.PollCreated;
+import es.remorandev.poll.exception.BadRequestException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Indice invertido en memoria sobre la pregunta y las opciones de las encuestas.
+ *
+ * Los terminos estan ordenados (skip list), asi una busqueda por prefijo es un rango del mapa. Cada termino apunta
+ * a las encuestas que lo contienen y a en que campo aparece. Todas las palabras de la consulta deben coincidir
+ * (como palabra completa o como prefijo); la relevancia suma, por palabra, el mejor peso encontrado:
+ * pregunta exacta 4, pregunta prefijo 2, opcion exacta 2, opcion prefijo 1. A igual relevancia va primero la mas reciente.
+ *
+ * Se construye al arrancar y se actualiza con los eventos PollCreated; ademas, cada app.search.refreshIntervalMs se indexan
+ * las encuestas creadas recientemente, por si las ha creado otra instancia.
+ */
+@Service
+public class PollSearchService implements DomainEventListener {
+    private static final int QUESTION = 1;
+    private static final int CHOICE = 2;
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final Duration CATCH_UP_OVERLAP = Duration.ofMinutes(1);
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Comparator<Hit> RANKING = Comparator.comparingInt((Hit hit) -> hit.score).reversed()
+            .thenComparing(Comparator.comparingLong((Hit hit) -> hit.createdAt).reversed())
+            .thenComparing(Comparator.comparingLong((Hit hit) -> hit.pollId).reversed());
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // termino -> (pollId -> campos en los que aparece)
+    private final NavigableMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final Map<Long, Long> createdAt = new ConcurrentHashMap<>();
+
+    private volatile Instant lastCatchUp = Instant.EPOCH;
+
+    private static final Logger logger = LoggerFactory.getLogger(PollSearchService.class);
+
+    public static class SearchResult {
+        private final List<Long> pollIds;
+        private final String nextCursor;
+
+        SearchResult(List<Long> pollIds, String nextCursor) {
+            this.pollIds = pollIds;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Long> getPollIds() {
+            return pollIds;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        int polls = indexCreatedSince(Instant.EPOCH);
+        logger.info("Search index built with {} polls and {} terms", polls, this.postings.size());
+    }
+
+    @Scheduled(initialDelayString = "${app.search.refreshIntervalMs}", fixedDelayString = "${app.search.refreshIntervalMs}")
+    public void catchUp() {
+        // Volver a indexar una encuesta no cambia nada, el solape cubre las que se confirmaron tarde
+        indexCreatedSince(this.lastCatchUp.minus(CATCH_UP_OVERLAP));
+    }
+
+    @Override
+    public void onEvents(List<DomainEvent> events) {
+        for (DomainEvent event : events) {
+            if (event instanceof PollCreated) {
+                PollCreated poll = (PollCreated) event;
+                index(poll.getPollId(), poll.getCreatedAt(), QUESTION, poll.getQuestion());
+                for (String choice : poll.getChoices()) {
+                    index(poll.getPollId(), poll.getCreatedAt(), CHOICE, choice);
+                }
+            }
+        }
+    }
+
+    public SearchResult search(String query, String cursor, int size) {
+        Set<String> queryTokens = new LinkedHashSet<>();
+        for (String token : tokenize(query)) {
+            if (token.length() >= MIN_TOKEN_LENGTH) {
+                queryTokens.add(token);
+            }
+        }
+        if (queryTokens.isEmpty()) {
+            throw new BadRequestException("Search query must contain at least one word of " + MIN_TOKEN_LENGTH + " or more characters");
+        }
+
+        Map<Long, Integer> scores = null;
+        for (String token : queryTokens) {
+            Map<Long, Integer> tokenScores = scoreToken(token);
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                Map<Long, Integer> matchedSoFar = scores;
+                tokenScores.keySet().retainAll(matchedSoFar.keySet());
+                tokenScores.replaceAll((pollId, score) -> score + matchedSoFar.get(pollId));
+                scores = tokenScores;
+            }
+        }
+
+        Hit after = cursor == null ? null : decodeCursor(cursor);
+        List<Hit> hits = new ArrayList<>();
+        scores.forEach((pollId, score) -> {
+            Hit hit = new Hit(pollId, score, this.createdAt.getOrDefault(pollId, 0L));
+            if (after == null || RANKING.compare(hit, after) > 0) {
+                hits.add(hit);
+            }
+        });
+        hits.sort(RANKING);
+
+        List<Long> pollIds = new ArrayList<>(Math.min(size, hits.size()));
+        for (int i = 0; i < Math.min(size, hits.size()); i++) {
+            pollIds.add(hits.get(i).pollId);
+        }
+        String nextCursor = hits.size() > size ? encodeCursor(hits.get(size - 1)) : null;
+
+        return new SearchResult(pollIds, nextCursor);
+    }
+
+    private Map<Long, Integer> scoreToken(String token) {
+        Map<Long, Integer> best = new HashMap<>();
+        for (Map.Entry<String, Map<Long, Integer>> term : this.postings.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+            boolean exact = term.getKey().equals(token);
+            term.getValue().forEach((pollId, fields) -> {
+                int weight = (fields & QUESTION) != 0 ? 2 : 1;
+                best.merge(pollId, exact ? weight * 2 : weight, Math::max);
+            });
+        }
+        return best;
+    }
+
+    private int indexCreatedSince(Instant since) {
+        Instant startedAt = Instant.now();
+        Set<Long> indexed = new HashSet<>();
+
+        this.jdbcTemplate.query(
+                "SELECT id, question, created_at FROM polls WHERE created_at >= ?",
+                new Object[]{Timestamp.from(since)},
+                rs -> {
+                    long pollId = rs.getLong(1);
+                    index(pollId, rs.getTimestamp(3).toInstant(), QUESTION, rs.getString(2));
+                    indexed.add(pollId);
+                });
+        this.jdbcTemplate.query(
+                "SELECT c.poll_id, c.text, p.created_at FROM choices c JOIN polls p ON p.id = c.poll_id WHERE p.created_at >= ?",
+                new Object[]{Timestamp.from(since)},
+                rs -> {
+                    index(rs.getLong(1), rs.getTimestamp(3).toInstant(), CHOICE, rs.getString(2));
+                });
+
+        this.lastCatchUp = startedAt;
+        return indexed.size();
+    }
+
+    private void index(Long pollId, Instant pollCreatedAt, int field, String text) {
+        this.createdAt.put(pollId, pollCreatedAt.toEpochMilli());
+        for (String token : tokenize(text)) {
+            this.postings.computeIfAbsent(token, term -> new ConcurrentHashMap<>())
+                    .merge(pollId, field, (fields, newField) -> fields | newField);
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static String encodeCursor(Hit hit) {
+        String value = hit.score + ":" + hit.createdAt + ":" + hit.pollId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Hit decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            return new Hit(Long.parseLong(parts[2]), Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    private static final class Hit {
+        private final long pollId;
+        private final int score;
+        private final long createdAt;
+
+        private Hit(long pollId, int score, long createdAt) {
+            this.pollId = pollId;
+            this.score = score;
+            this.createdAt = createdAt;
+        }
+    }
+}
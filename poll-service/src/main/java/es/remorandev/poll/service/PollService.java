@@ -1,33 +1,52 @@
 package es.remorandev.poll.service;
 
+import es.remorandev.poll.datasource.ReadYourWritesTracker;
+import es.remorandev.poll.event.DomainEventBus;
+import es.remorandev.poll.event.PollCreated;
+import es.remorandev.poll.event.VoteCast;
 import es.remorandev.poll.exception.BadRequestException;
 import es.remorandev.poll.exception.ResourceNotFoundException;
 import es.remorandev.poll.model.*;
+import es.remorandev.poll.payload.CursorPagedResponse;
 import es.remorandev.poll.payload.PagedResponse;
 import es.remorandev.poll.payload.PollRequest;
 import es.remorandev.poll.payload.PollResponse;
+import es.remorandev.poll.payload.PollTimelineResponse;
+import es.remorandev.poll.payload.RankedResultResponse;
 import es.remorandev.poll.payload.VoteRequest;
 import es.remorandev.poll.repository.PollRepository;
 import es.remorandev.poll.repository.UserRepository;
 import es.remorandev.poll.repository.VoteRepository;
 import es.remorandev.poll.security.UserPrincipal;
+import es.remorandev.poll.tally.VoteTally;
 import es.remorandev.poll.util.AppConstants;
+import es.remorandev.poll.util.KeysetCursor;
 import es.remorandev.poll.util.ModelMapper;
+import es.remorandev.poll.util.RateLimitedLogger;
+import es.remorandev.poll.util.SingleFlight;
+import es.remorandev.poll.util.VotePartitions;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -43,8 +62,48 @@ public class PollService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Autowired
+    private VoteTally voteTally;
+
+    @Autowired
+    private TrendingService trendingService;
+
+    @Autowired
+    private PollSearchService pollSearchService;
+
+    @Autowired
+    private VoteTimelineService voteTimelineService;
+
+    @Autowired
+    private DomainEventBus domainEventBus;
+
+    @Autowired
+    private RankedVoteService rankedVoteService;
+
+    @Autowired
+    private MultiSelectVoteService multiSelectVoteService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.coalescing.timeoutMs}")
+    private long coalescingTimeoutMs;
+
+    // Cargas de getPollById en curso, por id de encuesta
+    private SingleFlight<Long, LoadedPoll> pollLoads;
+
     private static final Logger logger = LoggerFactory.getLogger(PollService.class);
+    private static final RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 10, Duration.ofMinutes(1));
 
+    @PostConstruct
+    public void initialize() {
+        this.pollLoads = new SingleFlight<>("poll", this.coalescingTimeoutMs, this.meterRegistry);
+    }
+
+    @Transactional(readOnly = true)
     public PagedResponse<PollResponse> getAllPolls(UserPrincipal username, int page, int size) {
         validatePageNumber(page, size);
 
@@ -56,50 +115,141 @@ public class PollService {
                     polls.getSize(), polls.getTotalElements(), polls.getTotalPages(), polls.isLast());
         }
 
-        List<Long> pollIds = polls.map(Poll::getId).getContent();
-        Map<Long, Long> choiceVoteCountMap = getChoiceVoteCountMap(pollIds);
-        Map<Long, Long> pollUserVoteMap = getPollUserVoteMap(username, pollIds);
-        Map<Long, User> creatorMap = getPollCreatorMap(polls.getContent());
-
-        List<PollResponse> pollResponses = polls.map(poll -> ModelMapper.mapPollToPollResponse(
-                poll,
-                choiceVoteCountMap,
-                creatorMap.get(poll.getCreatedBy()),
-                pollUserVoteMap == null ? null : pollUserVoteMap.getOrDefault(poll.getId(), null))
-        ).getContent();
+        List<PollResponse> pollResponses = mapPollsToPollResponses(polls.getContent(), username);
 
         return new PagedResponse<>(pollResponses, polls.getNumber(),
                 polls.getSize(), polls.getTotalElements(), polls.getTotalPages(), polls.isLast());
     }
 
-    private PagedResponse<PollResponse> getPollsCreatedBy(String username, UserPrincipal currentUser, int page, int size) {
-        validatePageNumber(page, size);
+    @Transactional(readOnly = true)
+    public List<PollResponse> getTrendingPolls(UserPrincipal currentUser, String window, int limit) {
+        if (limit < 1 || limit > this.trendingService.getTopK()) {
+            throw new BadRequestException("Limit must be between 1 and " + this.trendingService.getTopK());
+        }
+
+        List<Long> pollIds = this.trendingService.getTrendingPollIds(TrendingService.Window.fromCode(window), limit);
+
+        return mapPollsToPollResponses(findPollsInOrder(pollIds), currentUser);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPagedResponse<PollResponse> searchPolls(UserPrincipal currentUser, String query, String cursor, int size) {
+        validateCursorPageSize(size);
+
+        PollSearchService.SearchResult result = this.pollSearchService.search(query, cursor, size);
+        List<PollResponse> pollResponses = mapPollsToPollResponses(findPollsInOrder(result.getPollIds()), currentUser);
+
+        return new CursorPagedResponse<>(pollResponses, size, result.getNextCursor());
+    }
+
+    /**
+     * Carga las encuestas respetando el orden de los ids (findByIdIn no lo hace).
+     */
+    private List<Poll> findPollsInOrder(List<Long> pollIds) {
+        if (pollIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Poll> pollMap = this.pollRepository.findByIdIn(pollIds).stream()
+                .collect(Collectors.toMap(Poll::getId, Function.identity()));
+
+        return pollIds.stream()
+                .map(pollMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Convierte una pagina de encuestas con una consulta por tipo de dato (recuentos, votos del usuario, creadores,
+     * ordenes del usuario en las RANKED) en lugar de varias por encuesta.
+     */
+    private List<PollResponse> mapPollsToPollResponses(List<Poll> polls, UserPrincipal currentUser) {
+        if (polls.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Long> pollIds = polls.stream().map(Poll::getId).collect(Collectors.toList());
+        Map<Long, Long> choiceVoteCountMap = getChoiceVoteCountMap(pollIds);
+        Map<Long, Vote> pollUserVoteMap = getPollUserVoteMap(currentUser, pollIds);
+        Map<Long, List<Long>> userRankings = pollUserVoteMap == null
+                ? Collections.emptyMap()
+                : this.rankedVoteService.getRankings(polls, pollUserVoteMap);
+        Map<Long, User> creatorMap = getPollCreatorMap(polls);
+        Map<Long, RankedResultResponse> rankedResults = this.rankedVoteService.getResults(polls);
+        Map<Long, Long> pollBallots = applySelectionCounts(polls, choiceVoteCountMap);
+
+        return polls.stream().map(poll -> {
+            Vote userVote = pollUserVoteMap == null ? null : pollUserVoteMap.get(poll.getId());
+            PollResponse pollResponse = ModelMapper.mapPollToPollResponse(
+                    poll,
+                    choiceVoteCountMap,
+                    creatorMap.get(poll.getCreatedBy()),
+                    userVote == null ? null : userVote.getChoice().getId());
+            pollResponse.setRankedResult(rankedResults.get(poll.getId()));
+            pollResponse.setSelectedRanking(userRankings.get(poll.getId()));
+            if (pollBallots.containsKey(poll.getId())) {
+                pollResponse.setTotalVotes(pollBallots.get(poll.getId()));
+            }
+            if (poll.getType() == PollType.MULTIPLE && userVote != null && userVote.getSelection() != null) {
+                pollResponse.setSelectedChoices(MultiSelectVoteService.toChoiceIds(poll, userVote.getSelection()));
+            }
+            return pollResponse;
+        }).collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPagedResponse<PollResponse> getPollsCreatedBy(String username, UserPrincipal currentUser, String cursor, int size) {
+        validateCursorPageSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
 
         User user = this.userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
 
-        Pageable pageable = PageRequest.of(page, size, Sort.Direction.DESC, "createdAt");
-        Page<Poll> polls = pollRepository.findByCreatedBy(user.getId(), pageable);
+        // Se pide una fila de mas para saber si hay otra pagina
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Poll> polls = after == null
+                ? this.pollRepository.findLatestByCreatedBy(user.getId(), limit)
+                : this.pollRepository.findByCreatedByBefore(user.getId(), after.getCreatedAt(), after.getId(), limit);
+
+        String nextCursor = null;
+        if (polls.size() > size) {
+            polls = polls.subList(0, size);
+            Poll lastPoll = polls.get(size - 1);
+            nextCursor = new KeysetCursor(lastPoll.getCreatedAt(), lastPoll.getId()).encode();
+        }
 
-        if (polls.getNumberOfElements() == 0) {
-            return new PagedResponse<>(Collections.emptyList(), polls.getNumber(), polls.getSize(), polls.getTotalElements(),
-                    polls.getTotalPages(), polls.isLast());
+        return new CursorPagedResponse<>(mapPollsToPollResponses(polls, currentUser), size, nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPagedResponse<PollResponse> getPollsVotedBy(String username, UserPrincipal currentUser, String cursor, int size) {
+        validateCursorPageSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+
+        User user = this.userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+
+        List<VotedPoll> votedPolls = this.voteRepository.findVotedPollsByUserId(user.getId(), after, size + 1);
+
+        String nextCursor = null;
+        if (votedPolls.size() > size) {
+            votedPolls = votedPolls.subList(0, size);
+            VotedPoll lastVote = votedPolls.get(size - 1);
+            nextCursor = new KeysetCursor(lastVote.getVotedAt(), lastVote.getPollId()).encode();
         }
 
-        // Map Polls a PollResponse
-        List<Long> pollIds = polls.map(Poll::getId).getContent();
-        Map<Long, Long> choiceVoteCountMap = getChoiceVoteCountMap(pollIds);
-        Map<Long, Long> pollUserVoteMap = getPollUserVoteMap(currentUser, pollIds);
+        List<Long> pollIds = votedPolls.stream().map(VotedPoll::getPollId).collect(Collectors.toList());
 
-        List<PollResponse> pollResponses = polls.map(poll -> ModelMapper.mapPollToPollResponse(
-                poll,
-                choiceVoteCountMap,
-                user,
-                pollUserVoteMap == null ? null : pollUserVoteMap.getOrDefault(poll.getId(), null)
-        )).getContent();
+        return new CursorPagedResponse<>(mapPollsToPollResponses(findPollsInOrder(pollIds), currentUser), size, nextCursor);
+    }
 
-        return new PagedResponse<>(pollResponses, polls.getNumber(),
-                polls.getSize(), polls.getTotalElements(), polls.getTotalPages(), polls.isLast());
+    private void validateCursorPageSize(int size) {
+        if (size < 1) {
+            throw new BadRequestException("Page size must be greater than zero");
+        }
+        if (size > AppConstants.MAX_PAGE_SIZE) {
+            throw new BadRequestException("Page size must not be greater than " + AppConstants.MAX_PAGE_SIZE);
+        }
     }
 
     private void validatePageNumber(int page, int size) {
@@ -112,7 +262,7 @@ public class PollService {
     }
 
     private Map<Long, Long> getChoiceVoteCountMap(List<Long> pollIds) {
-        List<ChoiceVoteCount> votes = this.voteRepository.countByPollIdInGroupByChoiceId(pollIds);
+        List<ChoiceVoteCount> votes = this.voteTally.countByPollIdIn(pollIds);
 
         Map<Long, Long> choiceVotesMap = votes.stream()
                 .collect(Collectors.toMap(ChoiceVoteCount::getChoiceId, ChoiceVoteCount::getVoteCount));
@@ -120,11 +270,27 @@ public class PollService {
         return choiceVotesMap;
     }
 
-    private Map<Long, Long> getPollUserVoteMap(UserPrincipal currentUser, List<Long> pollIds) {
+    /**
+     * En las encuestas MULTIPLE la fila de votes solo cuenta la primera opcion marcada: sustituye sus recuentos en
+     * choiceVoteMap por los de todas las marcadas y devuelve las papeletas de cada una.
+     */
+    private Map<Long, Long> applySelectionCounts(List<Poll> polls, Map<Long, Long> choiceVoteMap) {
+        Map<Long, Long> pollBallots = new HashMap<>();
+        this.multiSelectVoteService.countByPolls(polls).forEach((pollId, counts) -> {
+            choiceVoteMap.putAll(counts.getChoiceVoteCounts());
+            pollBallots.put(pollId, counts.getBallots());
+        });
+        return pollBallots;
+    }
+
+    private Map<Long, Vote> getPollUserVoteMap(UserPrincipal currentUser, List<Long> pollIds) {
 
-        Map<Long, Long> pollUserVoteMap = null;
+        Map<Long, Vote> pollUserVoteMap = null;
         if (currentUser != null) {
             List<Vote> userVotes = voteRepository.findByUserIdAndPollIdIn(currentUser.getId(), pollIds);
+
+            pollUserVoteMap = userVotes.stream()
+                    .collect(Collectors.toMap(vote -> vote.getPoll().getId(), Function.identity()));
         }
 
         return pollUserVoteMap;
@@ -143,9 +309,50 @@ public class PollService {
         return creatorMap;
     }
 
+    @Transactional(readOnly = true)
+    public PollTimelineResponse getPollTimeline(Long pollId, String resolution) {
+        VoteTimelineService.Resolution timelineResolution = VoteTimelineService.Resolution.fromCode(resolution);
+
+        Poll poll = this.pollRepository.findById(pollId)
+                .orElseThrow(() -> new ResourceNotFoundException("Poll", "id", pollId));
+
+        // Una encuesta expirada ya no recibe votos: la evolucion termina en su cierre
+        Instant now = Instant.now();
+        Instant until = poll.getExpirationDateTime().isBefore(now) ? poll.getExpirationDateTime() : now;
+        List<Long> choiceIds = poll.getChoices().stream().map(Choice::getId).collect(Collectors.toList());
+
+        return new PollTimelineResponse(pollId, timelineResolution.getCode(), choiceIds,
+                this.voteTimelineService.getTimeline(pollId, choiceIds, timelineResolution, until));
+    }
+
+    @Transactional(readOnly = true)
+    public PollVersion getPollVersion(Long pollId) {
+        PollVersion version = this.pollRepository.findVersionById(pollId)
+                .orElseThrow(() -> new ResourceNotFoundException("Poll", "id", pollId));
+        version.setTallyRevision(this.voteTally.revision(pollId));
+
+        return version;
+    }
+
+    @Transactional(readOnly = true)
+    public Page<PollVersion> getPollVersions(int page, int size) {
+        validatePageNumber(page, size);
+
+        Page<PollVersion> versions = this.pollRepository.findAllVersions(PageRequest.of(page, size, Sort.Direction.DESC, "createdAt"));
+        versions.forEach(version -> version.setTallyRevision(this.voteTally.revision(version.getPollId())));
+
+        return versions;
+    }
+
+    @Transactional(readOnly = true)
+    public Instant getLatestPollCreatedAt() {
+        return this.pollRepository.findLatestCreatedAt();
+    }
+
     public Poll createPoll(PollRequest pollRequest) {
         Poll poll = new Poll();
         poll.setQuestion(pollRequest.getQuestion());
+        poll.setType(pollRequest.getType() != null ? pollRequest.getType() : PollType.SINGLE);
 
         pollRequest.getChoices().forEach(choiceRequest -> poll.addChoice(new Choice(choiceRequest.getText())));
 
@@ -155,7 +362,13 @@ public class PollService {
 
         poll.setExpirationDateTime(expirationDateTime);
 
-        return pollRepository.save(poll);
+        Poll result = pollRepository.save(poll);
+        this.readYourWritesTracker.markWrite(result.getCreatedBy());
+        this.domainEventBus.publish(new PollCreated(result.getId(), result.getCreatedBy(), result.getCreatedAt(),
+                result.getExpirationDateTime(), result.getQuestion(),
+                result.getChoices().stream().map(Choice::getText).collect(Collectors.toList())));
+
+        return result;
     }
 
     public PollResponse castVoteAndGetUpdatedPoll(Long pollId, VoteRequest voteRequest, UserPrincipal currentUser) {
@@ -168,25 +381,57 @@ public class PollService {
 
         User user = this.userRepository.getOne((currentUser.getId()));
 
+        // En una encuesta RANKED la fila de votes guarda la primera preferencia; en una MULTIPLE la primera opcion
+        // marcada, ademas de la mascara de todas
+        validateBallotShape(poll.getType(), voteRequest);
+        int[] rankingPositions = null;
+        Integer selection = null;
+        Long selectedChoiceId = voteRequest.getChoiceId();
+        if (poll.getType() == PollType.RANKED) {
+            rankingPositions = RankedVoteService.toPositions(poll, voteRequest.getRanking());
+            selectedChoiceId = voteRequest.getRanking().get(0);
+        } else if (poll.getType() == PollType.MULTIPLE) {
+            selection = MultiSelectVoteService.toSelection(poll, voteRequest.getChoiceIds());
+            selectedChoiceId = MultiSelectVoteService.toChoiceIds(poll, selection).get(0);
+        }
+
+        Long choiceId = selectedChoiceId;
         Choice selectedChoice = poll.getChoices().stream()
-                .filter(choice -> choice.getId().equals(voteRequest.getChoiceId()))
+                .filter(choice -> choice.getId().equals(choiceId))
                 .findFirst()
-                .orElseThrow(() -> new ResourceNotFoundException("choice", "id", voteRequest.getChoiceId()));
+                .orElseThrow(() -> new ResourceNotFoundException("choice", "id", choiceId));
 
         Vote vote = new Vote();
         vote.setPoll(poll);
         vote.setUser(user);
         vote.setChoice(selectedChoice);
+        vote.setPollPeriod(VotePartitions.periodOf(poll.getCreatedAt()));
+        vote.setSelection(selection);
 
         try {
-            vote = voteRepository.save(vote);
+            vote = rankingPositions != null
+                    ? this.rankedVoteService.saveBallot(vote, rankingPositions, Instant.now())
+                    : voteRepository.save(vote);
         } catch (DataIntegrityViolationException ex) {
-            logger.info("User {} has already voted in Poll {}", currentUser.getId(), pollId);
+            rateLimitedLogger.info("User {} has already voted in Poll {}", currentUser.getId(), pollId);
             throw new BadRequestException("Sorry! You have already cast your vote in this poll");
         }
 
+        // El recuento y la version se actualizan aqui porque la respuesta ya debe incluir el voto;
+        // el resto (tendencias, linea temporal...) lo hacen los listeners del bus fuera de la peticion
+        this.voteTally.recordVote(vote);
+
+        // Despues de guardar el voto, para que un ETag nuevo nunca describa un recuento antiguo. La papeleta de
+        // una encuesta RANKED ya la ha subido en su transaccion
+        if (rankingPositions == null) {
+            this.pollRepository.incrementVersion(pollId, Instant.now());
+        }
+        this.readYourWritesTracker.markWrite(currentUser.getId());
+        this.domainEventBus.publish(new VoteCast(pollId, selectedChoice.getId(), currentUser.getId(), vote.getCreatedAt(),
+                selection == null ? 0 : selection));
+
         // Retrieve Vote Counts of every choice belonging to the current poll
-        List<ChoiceVoteCount> votes = this.voteRepository.countByPollIdGroupByChoiceId(pollId);
+        List<ChoiceVoteCount> votes = this.voteTally.countByPollId(pollId);
 
         Map<Long, Long> choiceVoteMap = votes.stream()
                 .collect(Collectors.toMap(ChoiceVoteCount::getChoiceId, ChoiceVoteCount::getVoteCount));
@@ -194,14 +439,70 @@ public class PollService {
         User creator = this.userRepository.findById(poll.getCreatedBy())
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", poll.getCreatedBy()));
 
-        return ModelMapper.mapPollToPollResponse(poll, choiceVoteMap, creator, vote.getChoice().getId());
+        Map<Long, Long> pollBallots = selection != null
+                ? applySelectionCounts(Collections.singletonList(poll), choiceVoteMap) : Collections.emptyMap();
+
+        PollResponse pollResponse = ModelMapper.mapPollToPollResponse(poll, choiceVoteMap, creator, vote.getChoice().getId());
+        if (rankingPositions != null) {
+            pollResponse.setSelectedRanking(voteRequest.getRanking());
+            pollResponse.setRankedResult(this.rankedVoteService.getResults(Collections.singletonList(poll)).get(pollId));
+        }
+        if (selection != null) {
+            pollResponse.setSelectedChoices(MultiSelectVoteService.toChoiceIds(poll, selection));
+            pollResponse.setTotalVotes(pollBallots.get(pollId));
+        }
+
+        return pollResponse;
     }
 
-    public PollResponse getPollById(Long pollId, UserPrincipal currentUser){
+    /**
+     * La parte comun a todos los usuarios (encuesta, recuentos y creador) se carga una sola vez para todas las
+     * peticiones concurrentes de la misma encuesta (ver pollLoads); cada peticion solo busca su propio voto. Quien
+     * acaba de escribir carga por su cuenta, para que la carga compartida nunca le oculte su voto.
+     *
+     * La carga compartida puede haber empezado antes de que el llamante leyera la version de la encuesta, asi que
+     * se devuelve con la version que leyo ella misma: el ETag de la respuesta debe salir de esa.
+     */
+    @Transactional(readOnly = true)
+    public VersionedPoll getPollById(Long pollId, UserPrincipal currentUser){
+        LoadedPoll loaded = this.readYourWritesTracker.isCurrentUserSticky()
+                ? loadPoll(pollId)
+                : this.pollLoads.execute(pollId, () -> loadPoll(pollId));
+        Poll poll = loaded.poll;
+
+        Vote userVote = null;
+        if (currentUser != null){
+            userVote = this.voteRepository.findByUserIdAndPollId(currentUser.getId(), pollId);
+        }
+
+        PollResponse pollResponse = ModelMapper.mapPollToPollResponse(poll, loaded.choiceVoteMap, loaded.creator, userVote != null ? userVote.getChoice().getId() :  null);
+        if (poll.getType() == PollType.MULTIPLE) {
+            pollResponse.setTotalVotes(loaded.ballots);
+            if (userVote != null && userVote.getSelection() != null) {
+                pollResponse.setSelectedChoices(MultiSelectVoteService.toChoiceIds(poll, userVote.getSelection()));
+            }
+        }
+        if (poll.getType() == PollType.RANKED) {
+            pollResponse.setRankedResult(loaded.rankedResult);
+            if (userVote != null) {
+                pollResponse.setSelectedRanking(this.rankedVoteService.getRanking(poll, userVote.getId()));
+            }
+        }
+
+        return new VersionedPoll(pollResponse, loaded.version);
+     }
+
+    /**
+     * Lo que se comparte entre peticiones no se modifica despues: las opciones de la encuesta quedan cargadas aqui.
+     */
+    private LoadedPoll loadPoll(Long pollId) {
+        // Antes que los recuentos: lo cargado nunca es mas antiguo que la version que lo describe
+        PollVersion version = getPollVersion(pollId);
         Poll poll = this.pollRepository.findById(pollId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", pollId));
+        Hibernate.initialize(poll.getChoices());
 
-        List<ChoiceVoteCount> choices = this.voteRepository.countByPollIdGroupByChoiceId(pollId);
+        List<ChoiceVoteCount> choices = this.voteTally.countByPollId(pollId);
 
         Map<Long, Long> choiceVoteMap = choices.stream()
                 .collect(Collectors.toMap(ChoiceVoteCount::getChoiceId, ChoiceVoteCount::getVoteCount));
@@ -209,11 +510,62 @@ public class PollService {
         User creator = this.userRepository.findById(poll.getCreatedBy())
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", poll.getCreatedBy()));
 
-        Vote userVote = null;
-        if (currentUser != null){
-            userVote = this.voteRepository.findByUserIdAndPollId(currentUser.getId(), pollId);
+        LoadedPoll loaded = new LoadedPoll(poll, version, choiceVoteMap, creator);
+        if (poll.getType() == PollType.MULTIPLE) {
+            loaded.ballots = applySelectionCounts(Collections.singletonList(poll), choiceVoteMap).get(pollId);
+        }
+        if (poll.getType() == PollType.RANKED) {
+            loaded.rankedResult = this.rankedVoteService.getResults(Collections.singletonList(poll)).get(pollId);
         }
+        return loaded;
+    }
 
-        return ModelMapper.mapPollToPollResponse(poll, choiceVoteMap, creator, userVote != null ? userVote.getChoice().getId() :  null);
-     }
+    /**
+     * Cada tipo de encuesta recibe un solo campo de VoteRequest: choiceId, ranking o choiceIds.
+     */
+    private static void validateBallotShape(PollType type, VoteRequest voteRequest) {
+        if ((voteRequest.getChoiceId() != null) != (type == PollType.SINGLE)
+                || (voteRequest.getRanking() != null) != (type == PollType.RANKED)
+                || (voteRequest.getChoiceIds() != null) != (type == PollType.MULTIPLE)) {
+            String field = type == PollType.RANKED ? "a ranking" : type == PollType.MULTIPLE ? "choiceIds" : "a choiceId";
+            throw new BadRequestException("A " + type + " poll takes " + field + " and nothing else");
+        }
+    }
+
+    private static final class LoadedPoll {
+        private final Poll poll;
+        private final PollVersion version;
+        private final Map<Long, Long> choiceVoteMap;
+        private final User creator;
+        private Long ballots;
+        private RankedResultResponse rankedResult;
+
+        private LoadedPoll(Poll poll, PollVersion version, Map<Long, Long> choiceVoteMap, User creator) {
+            this.poll = poll;
+            this.version = version;
+            this.choiceVoteMap = choiceVoteMap;
+            this.creator = creator;
+        }
+    }
+
+    /**
+     * Respuesta de getPollById y la version de la encuesta que describe.
+     */
+    public static final class VersionedPoll {
+        private final PollResponse response;
+        private final PollVersion version;
+
+        private VersionedPoll(PollResponse response, PollVersion version) {
+            this.response = response;
+            this.version = version;
+        }
+
+        public PollResponse getResponse() {
+            return response;
+        }
+
+        public PollVersion getVersion() {
+            return version;
+        }
+    }
 }
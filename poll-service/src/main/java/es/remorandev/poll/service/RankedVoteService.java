@@ -0,0 +1,274 @@
+package es.remorandev.poll.service;
+
+import es.remorandev.poll.exception.BadRequestException;
+import es.remorandev.poll.model.Choice;
+import es.remorandev.poll.model.Poll;
+import es.remorandev.poll.model.PollType;
+import es.remorandev.poll.model.Vote;
+import es.remorandev.poll.payload.RankedResultResponse;
+import es.remorandev.poll.payload.RankedRoundResponse;
+import es.remorandev.poll.repository.PollRepository;
+import es.remorandev.poll.repository.VoteRepository;
+import es.remorandev.poll.tally.InstantRunoff;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Votos y resultados de las encuestas RANKED.
+ *
+ * Cada papeleta se guarda en ranked_ballots con su orden codificado (ver InstantRunoff) y el resultado se calcula
+ * sobre el numero de papeletas de cada orden, no sobre las papeletas. Esos recuentos y el resultado se guardan en
+ * memoria con la version de la encuesta a la que corresponden: un voto de esta instancia que lleva la encuesta a
+ * la version siguiente solo suma uno a su orden; cualquier otro cambio de version (votos de otras instancias,
+ * ediciones) hace que se vuelvan a leer los recuentos con un GROUP BY sobre el indice. Como mucho se guardan
+ * app.ranked.maxCachedPolls encuestas (se descartan primero las mas antiguas).
+ */
+@Service
+public class RankedVoteService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private PollRepository pollRepository;
+
+    @Value("${app.ranked.maxCachedPolls}")
+    private int maxCachedPolls;
+
+    private final Map<Long, Tally> tallies = new ConcurrentHashMap<>();
+    private final Queue<Long> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Ids de opcion del orden pedido como posiciones de las opciones de la encuesta, ordenadas por id.
+     */
+    public static int[] toPositions(Poll poll, List<Long> ranking) {
+        List<Long> choiceIds = sortedChoiceIds(poll);
+        if (ranking == null || ranking.isEmpty()) {
+            throw new BadRequestException("A ranked poll needs a ranking of at least one choice");
+        }
+        if (ranking.size() > choiceIds.size()) {
+            throw new BadRequestException("A ranking cannot have more than " + choiceIds.size() + " choices");
+        }
+
+        int[] positions = new int[ranking.size()];
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < positions.length; i++) {
+            Long choiceId = ranking.get(i);
+            positions[i] = choiceIds.indexOf(choiceId);
+            if (positions[i] < 0) {
+                throw new BadRequestException("Choice " + choiceId + " does not belong to this poll");
+            }
+            if (!seen.add(choiceId)) {
+                throw new BadRequestException("Choice " + choiceId + " appears more than once in the ranking");
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Guarda el voto (primera preferencia) y su papeleta en la misma transaccion que sube la version de la
+     * encuesta, para que cada version corresponda exactamente a un conjunto de papeletas.
+     */
+    @Transactional
+    public Vote saveBallot(Vote vote, int[] positions, Instant now) {
+        Vote saved = this.voteRepository.save(vote);
+        Long pollId = saved.getPoll().getId();
+        int ranking = InstantRunoff.encode(positions);
+        this.jdbcTemplate.update("INSERT INTO ranked_ballots (vote_id, poll_id, ranking) VALUES (?, ?, ?)",
+                saved.getId(), pollId, ranking);
+
+        // La fila de la encuesta queda bloqueada hasta el commit: la version leida es la de este voto
+        this.pollRepository.incrementVersion(pollId, now);
+        long version = this.jdbcTemplate.queryForObject("SELECT version FROM polls WHERE id = ?", Long.class, pollId);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                Tally tally = tallies.get(pollId);
+                if (tally != null) {
+                    tally.recordBallot(ranking, version);
+                }
+            }
+        });
+        return saved;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> getRanking(Poll poll, Long voteId) {
+        List<Integer> rankings = this.jdbcTemplate.queryForList(
+                "SELECT ranking FROM ranked_ballots WHERE vote_id = ?", Integer.class, voteId);
+        return rankings.isEmpty() ? null : toChoiceIds(poll, rankings.get(0));
+    }
+
+    /**
+     * Ordenes del usuario en las encuestas RANKED de la lista, por id de encuesta, a partir de sus votos.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<Long>> getRankings(List<Poll> polls, Map<Long, Vote> userVotes) {
+        Map<Long, Poll> ranked = new HashMap<>();
+        List<Object> voteIds = new ArrayList<>();
+        for (Poll poll : polls) {
+            Vote vote = userVotes.get(poll.getId());
+            if (poll.getType() == PollType.RANKED && vote != null) {
+                ranked.put(poll.getId(), poll);
+                voteIds.add(vote.getId());
+            }
+        }
+        if (voteIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Long, List<Long>> rankings = new HashMap<>();
+        this.jdbcTemplate.query(
+                "SELECT poll_id, ranking FROM ranked_ballots WHERE vote_id IN (" +
+                        String.join(", ", Collections.nCopies(voteIds.size(), "?")) + ")",
+                voteIds.toArray(),
+                (RowCallbackHandler) rs -> rankings.put(rs.getLong(1), toChoiceIds(ranked.get(rs.getLong(1)), rs.getInt(2))));
+        return rankings;
+    }
+
+    private static List<Long> toChoiceIds(Poll poll, int encodedRanking) {
+        List<Long> choiceIds = sortedChoiceIds(poll);
+        List<Long> ranking = new ArrayList<>();
+        for (int position : InstantRunoff.decode(encodedRanking)) {
+            ranking.add(choiceIds.get(position));
+        }
+        return ranking;
+    }
+
+    /**
+     * Resultados de las encuestas RANKED de la lista, por id de encuesta.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, RankedResultResponse> getResults(List<Poll> polls) {
+        List<Poll> ranked = polls.stream().filter(poll -> poll.getType() == PollType.RANKED).collect(Collectors.toList());
+        if (ranked.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // La version de la entidad puede venir atrasada de la cache de segundo nivel
+        Map<Long, Long> versions = new HashMap<>();
+        String placeholders = String.join(", ", Collections.nCopies(ranked.size(), "?"));
+        this.jdbcTemplate.query("SELECT id, version FROM polls WHERE id IN (" + placeholders + ")",
+                ranked.stream().map(Poll::getId).toArray(),
+                (RowCallbackHandler) rs -> versions.put(rs.getLong(1), rs.getLong(2)));
+
+        Map<Long, RankedResultResponse> results = new HashMap<>();
+        for (Poll poll : ranked) {
+            Long version = versions.get(poll.getId());
+            if (version != null) {
+                results.put(poll.getId(), getResult(poll, version));
+            }
+        }
+        return results;
+    }
+
+    private RankedResultResponse getResult(Poll poll, long version) {
+        Tally tally = this.tallies.get(poll.getId());
+        if (tally == null) {
+            tally = new Tally();
+            Tally existing = this.tallies.putIfAbsent(poll.getId(), tally);
+            if (existing != null) {
+                tally = existing;
+            } else {
+                this.insertionOrder.add(poll.getId());
+                evictOverflow();
+            }
+        }
+
+        synchronized (tally) {
+            if (tally.version < version) {
+                load(poll.getId(), tally);
+            }
+            if (tally.result == null) {
+                tally.result = toResponse(sortedChoiceIds(poll),
+                        InstantRunoff.run(poll.getChoices().size(), tally.rankingCounts));
+            }
+            return tally.result;
+        }
+    }
+
+    /**
+     * Relee la version y los recuentos en la misma transaccion (misma vista de los datos).
+     */
+    private void load(Long pollId, Tally tally) {
+        Long version = this.jdbcTemplate.queryForObject("SELECT version FROM polls WHERE id = ?", Long.class, pollId);
+        Map<Integer, Long> rankingCounts = new HashMap<>();
+        this.jdbcTemplate.query("SELECT ranking, COUNT(*) FROM ranked_ballots WHERE poll_id = ? GROUP BY ranking",
+                new Object[]{pollId},
+                (RowCallbackHandler) rs -> rankingCounts.put(rs.getInt(1), rs.getLong(2)));
+
+        tally.version = version;
+        tally.rankingCounts = rankingCounts;
+        tally.result = null;
+    }
+
+    private void evictOverflow() {
+        while (this.tallies.size() > this.maxCachedPolls) {
+            Long oldest = this.insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            this.tallies.remove(oldest);
+        }
+    }
+
+    private static RankedResultResponse toResponse(List<Long> choiceIds, InstantRunoff.Result result) {
+        List<RankedRoundResponse> rounds = new ArrayList<>();
+        for (InstantRunoff.Round round : result.getRounds()) {
+            Map<Long, Long> voteCounts = new LinkedHashMap<>();
+            for (int position = 0; position < choiceIds.size(); position++) {
+                if (round.isContinuing(position)) {
+                    voteCounts.put(choiceIds.get(position), round.getVotes(position));
+                }
+            }
+            rounds.add(new RankedRoundResponse(voteCounts, round.getExhausted(),
+                    round.getEliminated() < 0 ? null : choiceIds.get(round.getEliminated())));
+        }
+        return new RankedResultResponse(result.getWinner() < 0 ? null : choiceIds.get(result.getWinner()), rounds);
+    }
+
+    private static List<Long> sortedChoiceIds(Poll poll) {
+        return poll.getChoices().stream().map(Choice::getId).sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Papeletas por orden codificado hasta version, y el resultado calculado con ellas (null si hay que calcularlo).
+     */
+    private static final class Tally {
+        private long version = -1;
+        private Map<Integer, Long> rankingCounts = new HashMap<>();
+        private RankedResultResponse result;
+
+        private synchronized void recordBallot(int ranking, long ballotVersion) {
+            if (this.version == ballotVersion - 1) {
+                this.rankingCounts.merge(ranking, 1L, Long::sum);
+                this.version = ballotVersion;
+                this.result = null;
+            }
+        }
+    }
+}
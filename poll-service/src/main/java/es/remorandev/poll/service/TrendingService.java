@@ -0,0 +1,233 @@
+package es.remorandev.poll.service;
+
+import es.remorandev.poll.event.DomainEvent;
+import es.remorandev.poll.event.DomainEventListener;
+import es.remorandev.poll.event.PollExpired;
+import es.remorandev.poll.event.VoteCast;
+import es.remorandev.poll.exception.BadRequestException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encuestas con mas votos en los ultimos 5 minutos, 1 hora y 24 horas.
+ *
+ * Cada encuesta con votos recientes tiene dos anillos de contadores: 60 cubetas de un minuto (ventanas de 5 minutos
+ * y 1 hora) y 24 cubetas de una hora (ventana de 24 horas). Un voto solo incrementa la cubeta actual de cada anillo.
+ * Periodicamente se recalcula el top-K de cada ventana con un monton de minimos de tamaño K y se publica como una
+ * lista inmutable, de modo que una consulta no recorre nada. Al arrancar se cargan los votos de las ultimas 24 horas.
+ *
+ * Los votos llegan como eventos VoteCast del bus. Una encuesta que expira (PollExpired) ya no puede recibir votos
+ * y deja de contar. Cada instancia solo ve los votos que recibe ella misma (y los de la carga inicial).
+ */
+@Service
+public class TrendingService implements DomainEventListener {
+
+    public enum Window {
+        FIVE_MINUTES("5m"),
+        ONE_HOUR("1h"),
+        ONE_DAY("24h");
+
+        private final String code;
+
+        Window(String code) {
+            this.code = code;
+        }
+
+        public static Window fromCode(String code) {
+            for (Window window : values()) {
+                if (window.code.equals(code)) {
+                    return window;
+                }
+            }
+            throw new BadRequestException("Unknown trending window '" + code + "', expected 5m, 1h or 24h");
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.trending.topK}")
+    private int topK;
+
+    private final Map<Long, PollWindow> windows = new ConcurrentHashMap<>();
+
+    private volatile Map<Window, List<Long>> ranking = Collections.emptyMap();
+
+    private static final Logger logger = LoggerFactory.getLogger(TrendingService.class);
+
+    /**
+     * Se ejecuta antes de que el servidor acepte peticiones, asi ningun voto se cuenta dos veces.
+     */
+    @PostConstruct
+    public void seed() {
+        Instant now = Instant.now();
+        long since = epochMinute(now) - TimeUnit.DAYS.toMinutes(1) + 1;
+        int[] rows = {0};
+
+        // Las encuestas ya vencidas no pueden estar en tendencia (onEvents las quita al vencer)
+        this.jdbcTemplate.query(
+                "SELECT v.poll_id, TIMESTAMPDIFF(MINUTE, '1970-01-01', v.created_at) AS minute, COUNT(*) FROM votes v " +
+                        "JOIN polls p ON p.id = v.poll_id " +
+                        "WHERE v.created_at >= ? AND p.expiration_date_time > ? GROUP BY v.poll_id, minute ORDER BY minute",
+                new Object[]{new Timestamp(TimeUnit.MINUTES.toMillis(since)), Timestamp.from(now)},
+                rs -> {
+                    record(rs.getLong(1), rs.getLong(2), rs.getLong(3));
+                    rows[0]++;
+                });
+
+        refresh();
+        logger.info("Trending counters seeded with {} polls from {} minute buckets", this.windows.size(), rows[0]);
+    }
+
+    @Override
+    public void onEvents(List<DomainEvent> events) {
+        for (DomainEvent event : events) {
+            if (event instanceof VoteCast) {
+                VoteCast vote = (VoteCast) event;
+                record(vote.getPollId(), epochMinute(vote.getVotedAt()), 1);
+            } else if (event instanceof PollExpired) {
+                this.windows.remove(((PollExpired) event).getPollId());
+            }
+        }
+    }
+
+    /**
+     * Ids de las encuestas en tendencia, de mas a menos votos en la ventana.
+     */
+    public List<Long> getTrendingPollIds(Window window, int limit) {
+        List<Long> pollIds = this.ranking.getOrDefault(window, Collections.emptyList());
+        return pollIds.size() <= limit ? pollIds : pollIds.subList(0, limit);
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    @Scheduled(fixedRateString = "${app.trending.refreshIntervalMs}")
+    public void refresh() {
+        long nowMinute = epochMinute(Instant.now());
+
+        Map<Window, PriorityQueue<long[]>> heaps = new EnumMap<>(Window.class);
+        // Monton de minimos por {votos, pollId}: la cima es la encuesta que sale si llega otra con mas votos
+        Comparator<long[]> order = Comparator.<long[]>comparingLong(entry -> entry[0]).thenComparingLong(entry -> -entry[1]);
+        for (Window window : Window.values()) {
+            heaps.put(window, new PriorityQueue<>(this.topK + 1, order));
+        }
+
+        for (Map.Entry<Long, PollWindow> entry : this.windows.entrySet()) {
+            long[] counts = entry.getValue().counts(nowMinute);
+            for (Window window : Window.values()) {
+                long votes = counts[window.ordinal()];
+                if (votes == 0) {
+                    continue;
+                }
+                PriorityQueue<long[]> heap = heaps.get(window);
+                heap.offer(new long[]{votes, entry.getKey()});
+                if (heap.size() > this.topK) {
+                    heap.poll();
+                }
+            }
+
+            if (counts[Window.ONE_DAY.ordinal()] == 0) {
+                // Dentro de compute para no perder un voto que llegue a la vez
+                this.windows.computeIfPresent(entry.getKey(), (pollId, pollWindow) -> pollWindow.isEmpty(nowMinute) ? null : pollWindow);
+            }
+        }
+
+        Map<Window, List<Long>> newRanking = new EnumMap<>(Window.class);
+        heaps.forEach((window, heap) -> {
+            List<long[]> entries = new ArrayList<>(heap);
+            entries.sort(order.reversed());
+            List<Long> pollIds = new ArrayList<>(entries.size());
+            entries.forEach(entry -> pollIds.add(entry[1]));
+            newRanking.put(window, Collections.unmodifiableList(pollIds));
+        });
+        this.ranking = newRanking;
+    }
+
+    private void record(long pollId, long epochMinute, long votes) {
+        this.windows.compute(pollId, (id, pollWindow) -> {
+            if (pollWindow == null) {
+                pollWindow = new PollWindow();
+            }
+            pollWindow.add(epochMinute, votes);
+            return pollWindow;
+        });
+    }
+
+    private static long epochMinute(Instant instant) {
+        return TimeUnit.MILLISECONDS.toMinutes(instant.toEpochMilli());
+    }
+
+    /**
+     * Anillos de cubetas de una encuesta. Cada cubeta guarda el minuto (u hora) al que pertenece:
+     * si no coincide con el actual es de una vuelta anterior y cuenta como vacia.
+     */
+    private static final class PollWindow {
+        private static final int MINUTES = 60;
+        private static final int HOURS = 24;
+
+        private final long[] minuteCounts = new long[MINUTES];
+        private final long[] minuteStamps = new long[MINUTES];
+        private final long[] hourCounts = new long[HOURS];
+        private final long[] hourStamps = new long[HOURS];
+
+        synchronized void add(long epochMinute, long votes) {
+            addToRing(this.minuteCounts, this.minuteStamps, epochMinute, votes);
+            addToRing(this.hourCounts, this.hourStamps, epochMinute / 60, votes);
+        }
+
+        /**
+         * Votos en cada ventana, en el orden de {@link Window}.
+         */
+        synchronized long[] counts(long nowMinute) {
+            long fiveMinutes = sumRing(this.minuteCounts, this.minuteStamps, nowMinute, 5);
+            long oneHour = sumRing(this.minuteCounts, this.minuteStamps, nowMinute, MINUTES);
+            long oneDay = sumRing(this.hourCounts, this.hourStamps, nowMinute / 60, HOURS);
+            return new long[]{fiveMinutes, oneHour, oneDay};
+        }
+
+        synchronized boolean isEmpty(long nowMinute) {
+            return sumRing(this.hourCounts, this.hourStamps, nowMinute / 60, HOURS) == 0;
+        }
+
+        private static void addToRing(long[] counts, long[] stamps, long slot, long votes) {
+            int index = (int) (slot % counts.length);
+            if (stamps[index] == slot) {
+                counts[index] += votes;
+            } else if (stamps[index] < slot) {
+                stamps[index] = slot;
+                counts[index] = votes;
+            }
+        }
+
+        private static long sumRing(long[] counts, long[] stamps, long currentSlot, int slots) {
+            long sum = 0;
+            for (long slot = currentSlot - slots + 1; slot <= currentSlot; slot++) {
+                int index = (int) (slot % counts.length);
+                if (stamps[index] == slot) {
+                    sum += counts[index];
+                }
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package es.remorandev.poll.service;
+
+import es.remorandev.poll.exception.ResourceNotFoundException;
+import es.remorandev.poll.model.User;
+import es.remorandev.poll.payload.UserProfile;
+import es.remorandev.poll.repository.PollRepository;
+import es.remorandev.poll.repository.UserRepository;
+import es.remorandev.poll.repository.VoteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Lecturas de usuarios. Son transacciones de solo lectura, asi que van a las replicas (ver ReplicaRoutingDataSource).
+ */
+@Service
+public class UserService {
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PollRepository pollRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Transactional(readOnly = true)
+    public boolean isUsernameAvailable(String username) {
+        return !this.userRepository.existsByUsername(username);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isEmailAvailable(String email) {
+        return !this.userRepository.existsByUsername(email);
+    }
+
+    @Transactional(readOnly = true)
+    public UserProfile getUserProfile(String username) {
+        User user = this.userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+
+        long pollCount = this.pollRepository.countByCreatedBy(user.getId());
+        long voteCount = this.voteRepository.countByUserId(user.getId());
+
+        return new UserProfile(user.getId(), user.getUsername(), user.getName(), user.getCreatedAt(), pollCount, voteCount);
+    }
+}
@@ -0,0 +1,79 @@
+package es.remorandev.poll.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Mueve a votes_archive los votos de las encuestas que expiraron hace mas de app.votes.archiveAfterDays dias.
+ * Cada encuesta se archiva en su propia transaccion, de modo que sus votos nunca quedan repartidos
+ * entre las dos tablas. Una vez archivadas todas sus encuestas, VotePartitionManager elimina la particion.
+ */
+@Service
+public class VoteArchiveService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.votes.archiveAfterDays}")
+    private int archiveAfterDays;
+
+    @Value("${app.votes.archiveBatchSize}")
+    private int archiveBatchSize;
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteArchiveService.class);
+
+    @Scheduled(initialDelayString = "${app.votes.archiveIntervalMs}", fixedDelayString = "${app.votes.archiveIntervalMs}")
+    public void archiveExpiredPolls() {
+        Instant cutoff = archiveCutoff();
+        int archivedPolls = 0;
+        long archivedVotes = 0;
+
+        List<Long> pollIds;
+        do {
+            pollIds = this.jdbcTemplate.queryForList(
+                    "SELECT p.id FROM polls p WHERE p.expiration_date_time < ? " +
+                            "AND EXISTS (SELECT 1 FROM votes v WHERE v.poll_id = p.id) " +
+                            "ORDER BY p.expiration_date_time LIMIT ?",
+                    Long.class, Timestamp.from(cutoff), this.archiveBatchSize);
+
+            for (Long pollId : pollIds) {
+                archivedVotes += archivePoll(pollId);
+                archivedPolls++;
+            }
+        } while (pollIds.size() == this.archiveBatchSize);
+
+        if (archivedPolls > 0) {
+            logger.info("Archived {} votes from {} polls expired before {}", archivedVotes, archivedPolls, cutoff);
+        }
+    }
+
+    public Instant archiveCutoff() {
+        return Instant.now().minus(Duration.ofDays(this.archiveAfterDays));
+    }
+
+    private int archivePoll(Long pollId) {
+        Integer moved = this.transactionTemplate.execute(status -> {
+            this.jdbcTemplate.update(
+                    "INSERT IGNORE INTO votes_archive (poll_id, user_id, choice_id, created_at, selection) " +
+                            "SELECT poll_id, user_id, choice_id, created_at, selection FROM votes WHERE poll_id = ?",
+                    pollId);
+            return this.jdbcTemplate.update("DELETE FROM votes WHERE poll_id = ?", pollId);
+        });
+
+        return moved == null ? 0 : moved;
+    }
+}
@@ -0,0 +1,251 @@
+package es.remorandev.poll.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.remorandev.poll.exception.BadRequestException;
+import es.remorandev.poll.model.Choice;
+import es.remorandev.poll.model.Poll;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exporta los votos de una encuesta en CSV o NDJSON escribiendo directamente en la respuesta.
+ *
+ * Las consultas usan un cursor de solo avance de MySQL (fetchSize Integer.MIN_VALUE): el driver entrega las filas
+ * a medida que llegan en lugar de cargar el resultado completo, y cada fila se escribe en un buffer de tamaño fijo
+ * que se vuelca a la respuesta al llenarse, asi que la memoria no depende del numero de votos. Los votos de una
+ * encuesta estan enteros en votes o en votes_archive, y se leen una tabla detras de otra dentro de la misma
+ * transaccion de solo lectura (en una replica si las hay).
+ *
+ * En una encuesta MULTIPLE choice_id solo guarda la primera opcion marcada, asi que cada voto se escribe como una
+ * fila por opcion de su mascara (selection).
+ */
+@Service
+public class VoteExportService {
+
+    public enum Format {
+        CSV("csv", "text/csv"),
+        NDJSON("ndjson", "application/x-ndjson");
+
+        private final String code;
+        private final String contentType;
+
+        Format(String code, String contentType) {
+            this.code = code;
+            this.contentType = contentType;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static Format fromCode(String code) {
+            for (Format format : values()) {
+                if (format.code.equals(code)) {
+                    return format;
+                }
+            }
+            throw new BadRequestException("Unknown export format '" + code + "', expected csv or ndjson");
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] QUERIES = {
+            "SELECT v.user_id, u.username, v.choice_id, v.selection, v.created_at FROM votes v " +
+                    "JOIN users u ON u.id = v.user_id WHERE v.poll_id = ?",
+            "SELECT a.user_id, u.username, a.choice_id, a.selection, a.created_at FROM votes_archive a " +
+                    "JOIN users u ON u.id = a.user_id WHERE a.poll_id = ?"
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private TransactionTemplate readOnlyTransactionTemplate;
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteExportService.class);
+
+    @PostConstruct
+    public void initialize() {
+        this.readOnlyTransactionTemplate = new TransactionTemplate(this.transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Escribe los votos de la encuesta en {@code outputStream} y devuelve cuantas filas ha escrito (una por opcion
+     * marcada). La encuesta debe tener sus opciones cargadas.
+     */
+    public long export(Poll poll, Format format, OutputStream outputStream) throws IOException {
+        Map<Long, String> choiceTexts = new HashMap<>();
+        for (Choice choice : poll.getChoices()) {
+            choiceTexts.put(choice.getId(), choice.getText());
+        }
+        List<Long> pollChoiceIds = MultiSelectVoteService.sortedChoiceIds(poll);
+
+        long start = System.nanoTime();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer, this.objectMapper);
+
+        long[] rows = {0};
+        try {
+            rowWriter.writeHeader();
+            this.readOnlyTransactionTemplate.execute(status -> {
+                RowCallbackHandler handler = rs -> {
+                    int selection = rs.getInt("selection");
+                    if (rs.wasNull()) {
+                        long choiceId = rs.getLong("choice_id");
+                        writeRow(rowWriter, rs, choiceId, choiceTexts.get(choiceId));
+                        rows[0]++;
+                        return;
+                    }
+                    for (Long choiceId : MultiSelectVoteService.toChoiceIds(pollChoiceIds, selection)) {
+                        writeRow(rowWriter, rs, choiceId, choiceTexts.get(choiceId));
+                        rows[0]++;
+                    }
+                };
+                for (String query : QUERIES) {
+                    this.jdbcTemplate.query(connection -> {
+                        PreparedStatement statement = connection.prepareStatement(query,
+                                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                        // Con MySQL Connector/J, Integer.MIN_VALUE activa el resultado en streaming fila a fila
+                        statement.setFetchSize(Integer.MIN_VALUE);
+                        statement.setLong(1, poll.getId());
+                        return statement;
+                    }, handler);
+                }
+                return null;
+            });
+            rowWriter.finish();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.info("Exported {} vote rows of poll {} as {} in {} ms ({} rows/s)",
+                rows[0], poll.getId(), format.getCode(), elapsedMs, rows[0] * 1000 / elapsedMs);
+
+        return rows[0];
+    }
+
+    private static void writeRow(RowWriter rowWriter, ResultSet rs, long choiceId, String choiceText) throws SQLException {
+        try {
+            rowWriter.writeRow(rs.getLong("user_id"), rs.getString("username"), choiceId,
+                    choiceText != null ? choiceText : "", rs.getTimestamp("created_at").toInstant());
+        } catch (IOException ex) {
+            // El cliente ha cortado la descarga; se propaga para cerrar el cursor
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private interface RowWriter {
+        void writeHeader() throws IOException;
+
+        void writeRow(long userId, String username, long choiceId, String choice, Instant votedAt) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void writeHeader() throws IOException {
+            this.writer.write("user_id,username,choice_id,choice,voted_at\r\n");
+        }
+
+        @Override
+        public void writeRow(long userId, String username, long choiceId, String choice, Instant votedAt) throws IOException {
+            this.writer.write(Long.toString(userId));
+            this.writer.write(',');
+            this.writer.write(escape(username));
+            this.writer.write(',');
+            this.writer.write(Long.toString(choiceId));
+            this.writer.write(',');
+            this.writer.write(escape(choice));
+            this.writer.write(',');
+            this.writer.write(votedAt.toString());
+            this.writer.write("\r\n");
+        }
+
+        @Override
+        public void finish() throws IOException {
+            this.writer.flush();
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private static class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer, ObjectMapper objectMapper) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Una linea por voto, sin el espacio que Jackson pone por defecto entre valores raiz
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void writeHeader() {
+        }
+
+        @Override
+        public void writeRow(long userId, String username, long choiceId, String choice, Instant votedAt) throws IOException {
+            this.generator.writeStartObject();
+            this.generator.writeNumberField("userId", userId);
+            this.generator.writeStringField("username", username);
+            this.generator.writeNumberField("choiceId", choiceId);
+            this.generator.writeStringField("choice", choice);
+            this.generator.writeStringField("votedAt", votedAt.toString());
+            this.generator.writeEndObject();
+            this.generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            this.generator.flush();
+        }
+    }
+}
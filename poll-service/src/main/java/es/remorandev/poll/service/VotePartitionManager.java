@@ -0,0 +1,104 @@
+package es.remorandev.poll.service;
+
+import es.remorandev.poll.util.VotePartitions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Mantiene las particiones mensuales de la tabla votes: crea por adelantado las de los proximos meses
+ * partiendo la particion pmax (siempre vacia) y elimina las particiones antiguas que el archivado ha vaciado.
+ * Si la tabla no esta particionada (ver db/migration/V2__partition_votes.sql) no hace nada.
+ */
+@Service
+public class VotePartitionManager {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private VoteArchiveService voteArchiveService;
+
+    @Value("${app.votes.partitionsAhead}")
+    private int partitionsAhead;
+
+    private static final Logger logger = LoggerFactory.getLogger(VotePartitionManager.class);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${app.votes.partitionMaintenanceCron}", zone = "UTC")
+    public void maintainPartitions() {
+        List<String> partitions = this.jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'votes' AND PARTITION_NAME IS NOT NULL " +
+                        "ORDER BY PARTITION_ORDINAL_POSITION",
+                String.class);
+
+        if (partitions.isEmpty()) {
+            logger.debug("Table votes is not partitioned, skipping partition maintenance");
+            return;
+        }
+
+        createUpcomingPartitions(partitions);
+        dropArchivedPartitions(partitions);
+    }
+
+    private void createUpcomingPartitions(List<String> partitions) {
+        int lastPeriod = partitions.stream()
+                .mapToInt(VotePartitions::periodOfPartition)
+                .max()
+                .orElse(0);
+
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        StringBuilder definitions = new StringBuilder();
+        for (int i = 0; i <= this.partitionsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            int period = VotePartitions.periodOf(month);
+            if (period > lastPeriod) {
+                definitions.append("PARTITION ").append(VotePartitions.partitionName(period))
+                        .append(" VALUES LESS THAN (").append(VotePartitions.periodOf(month.plusMonths(1))).append("), ");
+            }
+        }
+
+        if (definitions.length() == 0) {
+            return;
+        }
+
+        this.jdbcTemplate.execute("ALTER TABLE votes REORGANIZE PARTITION " + VotePartitions.MAX_PARTITION + " INTO (" +
+                definitions + "PARTITION " + VotePartitions.MAX_PARTITION + " VALUES LESS THAN MAXVALUE)");
+        logger.info("Created votes partitions up to {}", current.plusMonths(this.partitionsAhead));
+    }
+
+    private void dropArchivedPartitions(List<String> partitions) {
+        // Las encuestas duran como mucho unos dias, asi que un periodo anterior al mes del corte
+        // solo contiene votos de encuestas que ya deberian estar archivadas
+        int cutoffPeriod = VotePartitions.periodOf(this.voteArchiveService.archiveCutoff());
+
+        for (String partition : partitions) {
+            int period = VotePartitions.periodOfPartition(partition);
+            if (period < 0 || period >= cutoffPeriod) {
+                continue;
+            }
+
+            List<Integer> rows = this.jdbcTemplate.queryForList(
+                    "SELECT 1 FROM votes PARTITION (" + partition + ") LIMIT 1", Integer.class);
+            if (rows.isEmpty()) {
+                this.jdbcTemplate.execute("ALTER TABLE votes DROP PARTITION " + partition);
+                logger.info("Dropped archived votes partition {}", partition);
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package es.remorandev.poll.service;
+
+import es.remorandev.poll.event.DomainEvent;
+import es.remorandev.poll.event.DomainEventListener;
+import es.remorandev.poll.event.VoteCast;
+import es.remorandev.poll.exception.BadRequestException;
+import es.remorandev.poll.payload.TimelineBucket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Evolucion de los votos de cada encuesta por opcion, en cubetas de un minuto, una hora y un dia (tabla vote_buckets).
+ *
+ * Los votos llegan en lotes como eventos VoteCast del bus y cada lote incrementa sus cubetas con un unico upsert,
+ * asi que leer la evolucion cuesta tantas filas como cubetas con votos y nunca recorre la tabla de votos. Se devuelven como mucho las ultimas app.timeline.maxBuckets
+ * cubetas hasta el momento indicado; las cubetas sin votos no aparecen.
+ */
+@Service
+public class VoteTimelineService implements DomainEventListener {
+
+    public enum Resolution {
+        MINUTE("minute", "m", ChronoUnit.MINUTES),
+        HOUR("hour", "h", ChronoUnit.HOURS),
+        DAY("day", "d", ChronoUnit.DAYS);
+
+        private final String code;
+        private final String column;
+        private final ChronoUnit unit;
+
+        Resolution(String code, String column, ChronoUnit unit) {
+            this.code = code;
+            this.column = column;
+            this.unit = unit;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public static Resolution fromCode(String code) {
+            for (Resolution resolution : values()) {
+                if (resolution.code.equals(code)) {
+                    return resolution;
+                }
+            }
+            throw new BadRequestException("Unknown timeline resolution '" + code + "', expected minute, hour or day");
+        }
+    }
+
+    /**
+     * Voto ya guardado que hay que sumar a sus cubetas.
+     */
+    public static class TimelineVote {
+        private final long pollId;
+        private final long choiceId;
+        private final Instant votedAt;
+
+        public TimelineVote(long pollId, long choiceId, Instant votedAt) {
+            this.pollId = pollId;
+            this.choiceId = choiceId;
+            this.votedAt = votedAt;
+        }
+    }
+
+    private static final int BUCKETS_PER_STATEMENT = 1000;
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MultiSelectVoteService multiSelectVoteService;
+
+    @Value("${app.timeline.maxBuckets}")
+    private int maxBuckets;
+
+    @Override
+    public void onEvents(List<DomainEvent> events) {
+        List<VoteCast> cast = new ArrayList<>();
+        Set<Long> multiplePollIds = new HashSet<>();
+        for (DomainEvent event : events) {
+            if (event instanceof VoteCast) {
+                VoteCast vote = (VoteCast) event;
+                cast.add(vote);
+                if (vote.getSelection() != 0) {
+                    multiplePollIds.add(vote.getPollId());
+                }
+            }
+        }
+        if (cast.isEmpty()) {
+            return;
+        }
+
+        // Una papeleta MULTIPLE suma un voto a cada opcion marcada
+        Map<Long, List<Long>> choiceIds = this.multiSelectVoteService.choiceIdsByPoll(multiplePollIds);
+        List<TimelineVote> votes = new ArrayList<>(cast.size());
+        for (VoteCast vote : cast) {
+            if (vote.getSelection() == 0) {
+                votes.add(new TimelineVote(vote.getPollId(), vote.getChoiceId(), vote.getVotedAt()));
+            } else {
+                for (Long choiceId : MultiSelectVoteService.toChoiceIds(
+                        choiceIds.getOrDefault(vote.getPollId(), Collections.emptyList()), vote.getSelection())) {
+                    votes.add(new TimelineVote(vote.getPollId(), choiceId, vote.getVotedAt()));
+                }
+            }
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // En una transaccion: un lote grande son varias sentencias y un reintento no debe sumar dos veces
+                this.transactionTemplate.execute(status -> {
+                    recordVotes(votes);
+                    return null;
+                });
+                return;
+            } catch (PessimisticLockingFailureException ex) {
+                // Puede coincidir con una importacion masiva sobre las mismas cubetas
+                if (attempt == MAX_WRITE_ATTEMPTS) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Suma un lote de votos agrupandolos antes por cubeta. Las filas se escriben en el orden de la clave primaria
+     * para que dos lotes concurrentes de la misma encuesta bloqueen las cubetas en el mismo orden.
+     */
+    public void recordVotes(List<TimelineVote> votes) {
+        Map<BucketKey, Long> counts = new TreeMap<>();
+        for (TimelineVote vote : votes) {
+            for (Resolution resolution : Resolution.values()) {
+                counts.merge(new BucketKey(vote.pollId, resolution.column, vote.votedAt.truncatedTo(resolution.unit),
+                        vote.choiceId), 1L, Long::sum);
+            }
+        }
+
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        for (Map.Entry<BucketKey, Long> entry : counts.entrySet()) {
+            sql.append(args.isEmpty() ? "" : ", ").append("(?, ?, ?, ?, ?)");
+            BucketKey key = entry.getKey();
+            args.add(key.pollId);
+            args.add(key.resolution);
+            args.add(Timestamp.from(key.start));
+            args.add(key.choiceId);
+            args.add(entry.getValue());
+            if (args.size() == BUCKETS_PER_STATEMENT * 5) {
+                upsertBuckets(sql, args);
+            }
+        }
+        if (!args.isEmpty()) {
+            upsertBuckets(sql, args);
+        }
+    }
+
+    private void upsertBuckets(StringBuilder values, List<Object> args) {
+        this.jdbcTemplate.update("INSERT INTO vote_buckets (poll_id, resolution, bucket_start, choice_id, vote_count) VALUES " +
+                values + " ON DUPLICATE KEY UPDATE vote_count = vote_count + VALUES(vote_count)", args.toArray());
+        values.setLength(0);
+        args.clear();
+    }
+
+    /**
+     * Cubetas en orden cronologico; los recuentos de cada una siguen el orden de {@code choiceIds}.
+     */
+    public List<TimelineBucket> getTimeline(Long pollId, List<Long> choiceIds, Resolution resolution, Instant until) {
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < choiceIds.size(); i++) {
+            positions.put(choiceIds.get(i), i);
+        }
+
+        Instant last = until.truncatedTo(resolution.unit);
+        Instant first = last.minus(this.maxBuckets - 1, resolution.unit);
+
+        List<TimelineBucket> buckets = new ArrayList<>();
+        this.jdbcTemplate.query("SELECT bucket_start, choice_id, vote_count FROM vote_buckets " +
+                        "WHERE poll_id = ? AND resolution = ? AND bucket_start BETWEEN ? AND ? ORDER BY bucket_start",
+                (RowCallbackHandler) rs -> {
+                    Instant start = rs.getTimestamp("bucket_start").toInstant();
+                    TimelineBucket bucket = buckets.isEmpty() ? null : buckets.get(buckets.size() - 1);
+                    if (bucket == null || !bucket.getStart().equals(start)) {
+                        bucket = new TimelineBucket(start, new long[choiceIds.size()]);
+                        buckets.add(bucket);
+                    }
+                    Integer position = positions.get(rs.getLong("choice_id"));
+                    if (position != null) {
+                        bucket.getVoteCounts()[position] += rs.getLong("vote_count");
+                    }
+                },
+                pollId, resolution.column, Timestamp.from(first), Timestamp.from(last));
+
+        return buckets;
+    }
+
+    private static final class BucketKey implements Comparable<BucketKey> {
+        private final long pollId;
+        private final String resolution;
+        private final Instant start;
+        private final long choiceId;
+
+        private BucketKey(long pollId, String resolution, Instant start, long choiceId) {
+            this.pollId = pollId;
+            this.resolution = resolution;
+            this.start = start;
+            this.choiceId = choiceId;
+        }
+
+        @Override
+        public int compareTo(BucketKey other) {
+            int order = Long.compare(this.pollId, other.pollId);
+            if (order == 0) {
+                order = this.resolution.compareTo(other.resolution);
+            }
+            if (order == 0) {
+                order = this.start.compareTo(other.start);
+            }
+            return order != 0 ? order : Long.compare(this.choiceId, other.choiceId);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package es.remorandev.poll.tally;
+
+import es.remorandev.poll.model.ChoiceVoteCount;
+import es.remorandev.poll.model.TallyDelta;
+import es.remorandev.poll.model.Vote;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Recuento en memoria valido con varias instancias (app.tally.mode=cluster).
+ *
+ * Cada opcion es un G-Counter: un contador propio que solo incrementa esta instancia y el ultimo valor
+ * conocido de cada una de las demas. El recuento es la suma de todos. Periodicamente se publican los contadores
+ * propios que han cambiado y se fusionan los recibidos tomando el maximo por instancia, sin coordinacion por voto;
+ * las instancias convergen en un intervalo de sincronizacion.
+ *
+ * Los votos anteriores a la linea base (ver TallyBaseline) los aporta la instancia "baseline".
+ * Si una instancia cae sin publicar, se pierden sus incrementos desde la ultima sincronizacion, y los votos escritos
+ * sin pasar por recordVote (una importacion) no los cuenta nadie. Por eso la linea base se reconstruye cada
+ * rebuildIntervalMs (y con rebuild()): se vuelve a contar hasta el ultimo voto creado hace mas de commitLagMs (los ids
+ * no se confirman en orden) y se descartan los contadores de todas las instancias. Cada instancia lo detecta al
+ * sincronizar y rehace su contador propio con los votos que ha contado y la nueva linea base no incluye. Para eso
+ * guarda los votos contados hasta que la linea base no ha cambiado al sincronizar y tienen mas de commitLagMs, porque
+ * entonces cualquier reconstruccion posterior los incluye.
+ */
+public class ClusterVoteTally implements VoteTally {
+    private final String nodeId;
+    private final TallyTransport transport;
+    private final long rebuildIntervalMs;
+    private final long commitLagMs;
+
+    private volatile Map<Long, PollCounters> pollCounters = new ConcurrentHashMap<>();
+    private final Set<ChoiceCounter> dirty = ConcurrentHashMap.newKeySet();
+
+    // Votos contados que una reconstruccion de la linea base aun podria no incluir
+    private final Queue<RecentVote> recentVotes = new ConcurrentLinkedQueue<>();
+    private final AtomicLong recentVoteSequence = new AtomicLong();
+    private final ReadWriteLock rebaseLock = new ReentrantReadWriteLock();
+
+    private volatile long baselineMaxVoteId;
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterVoteTally.class);
+
+    public ClusterVoteTally(String nodeId, TallyTransport transport, long rebuildIntervalMs, long commitLagMs) {
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.rebuildIntervalMs = rebuildIntervalMs;
+        this.commitLagMs = commitLagMs;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        this.baselineMaxVoteId = this.transport.ensureBaseline();
+        // Recupera tambien el contador propio si la instancia se reinicia con el mismo nodeId
+        merge(this.pollCounters, this.transport.fetchChanges());
+        logger.info("Cluster vote tally started as node {} (baseline up to vote {})", this.nodeId, this.baselineMaxVoteId);
+    }
+
+    @Override
+    public List<ChoiceVoteCount> countByPollIdIn(List<Long> pollIds) {
+        Map<Long, PollCounters> pollCounters = this.pollCounters;
+        List<ChoiceVoteCount> counts = new ArrayList<>();
+        for (Long pollId : pollIds) {
+            PollCounters poll = pollCounters.get(pollId);
+            if (poll != null) {
+                poll.choices.values().forEach(counter -> counts.add(new ChoiceVoteCount(counter.choiceId, counter.value())));
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void recordVote(Vote vote) {
+        this.rebaseLock.readLock().lock();
+        try {
+            if (vote.getId() <= this.baselineMaxVoteId) {
+                return;
+            }
+
+            PollCounters poll = poll(this.pollCounters, vote.getPoll().getId());
+            ChoiceCounter counter = poll.counter(vote.getChoice().getId());
+            counter.local.incrementAndGet();
+            poll.revision.incrementAndGet();
+            this.dirty.add(counter);
+            this.recentVotes.add(new RecentVote(this.recentVoteSequence.incrementAndGet(), System.currentTimeMillis(),
+                    vote.getId(), counter.pollId, counter.choiceId));
+        } finally {
+            this.rebaseLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long revision(Long pollId) {
+        PollCounters poll = this.pollCounters.get(pollId);
+        return poll == null ? 0 : poll.revision.get();
+    }
+
+    /**
+     * Reconstruye la linea base ahora y la aplica en esta instancia; las demas la aplican al sincronizar.
+     */
+    @Override
+    public void rebuild() {
+        this.transport.rebuildBaseline(0);
+        sync();
+    }
+
+    @Scheduled(initialDelayString = "${app.tally.syncIntervalMs}", fixedDelayString = "${app.tally.syncIntervalMs}")
+    public void synchronize() {
+        try {
+            sync();
+        } catch (RuntimeException ex) {
+            logger.warn("Vote tally synchronization failed, retrying on next interval: {}", ex.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.tally.rebuildIntervalMs}", fixedDelayString = "${app.tally.rebuildIntervalMs}")
+    public void reconcile() {
+        try {
+            // Solo la primera instancia que llega en cada intervalo la reconstruye
+            this.transport.rebuildBaseline(this.rebuildIntervalMs);
+        } catch (RuntimeException ex) {
+            logger.warn("Vote tally baseline rebuild failed, retrying on next interval: {}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        publish();
+    }
+
+    private synchronized void sync() {
+        // Lo contado antes de preguntar ya estaba confirmado: una reconstruccion posterior lo incluye si ademas se
+        // creo hace mas de commitLagMs
+        long checkedAt = System.currentTimeMillis();
+        long checkedSequence = this.recentVoteSequence.get();
+        long currentBaseline = this.transport.currentBaseline();
+        if (currentBaseline != this.baselineMaxVoteId) {
+            rebase(currentBaseline);
+        } else {
+            RecentVote oldest;
+            while ((oldest = this.recentVotes.peek()) != null && oldest.sequence <= checkedSequence
+                    && oldest.recordedAt <= checkedAt - this.commitLagMs) {
+                this.recentVotes.poll();
+            }
+        }
+
+        publish();
+        merge(this.pollCounters, this.transport.fetchChanges());
+    }
+
+    /**
+     * Cambia a una linea base nueva: parte de los contadores publicados desde entonces y rehace el propio con los
+     * votos recientes que no incluye.
+     */
+    private void rebase(long newBaselineMaxVoteId) {
+        List<TallyDelta> deltas = this.transport.fetchAll();
+
+        this.rebaseLock.writeLock().lock();
+        try {
+            Map<Long, PollCounters> previous = this.pollCounters;
+            Map<Long, PollCounters> rebuilt = new ConcurrentHashMap<>();
+            this.dirty.clear();
+            this.recentVotes.removeIf(vote -> vote.voteId <= newBaselineMaxVoteId);
+            for (RecentVote vote : this.recentVotes) {
+                ChoiceCounter counter = poll(rebuilt, vote.pollId).counter(vote.choiceId);
+                counter.local.incrementAndGet();
+                this.dirty.add(counter);
+            }
+            merge(rebuilt, deltas);
+
+            // Los recuentos pueden haber cambiado sin cambiar la version de la encuesta
+            rebuilt.values().forEach(poll -> {
+                PollCounters old = previous.get(poll.pollId);
+                poll.revision.set(old == null ? 1 : old.revision.get() + 1);
+            });
+
+            this.pollCounters = rebuilt;
+            this.baselineMaxVoteId = newBaselineMaxVoteId;
+        } finally {
+            this.rebaseLock.writeLock().unlock();
+        }
+        logger.info("Vote tally switched to the baseline up to vote {} ({} recent votes kept)",
+                newBaselineMaxVoteId, this.recentVotes.size());
+    }
+
+    private void publish() {
+        if (this.dirty.isEmpty()) {
+            return;
+        }
+
+        List<ChoiceCounter> changed = new ArrayList<>();
+        for (ChoiceCounter counter : this.dirty) {
+            this.dirty.remove(counter);
+            changed.add(counter);
+        }
+
+        List<TallyDelta> deltas = new ArrayList<>(changed.size());
+        for (ChoiceCounter counter : changed) {
+            deltas.add(new TallyDelta(this.nodeId, counter.pollId, counter.choiceId, counter.local.get()));
+        }
+
+        try {
+            this.transport.publish(this.baselineMaxVoteId, deltas);
+        } catch (RuntimeException ex) {
+            this.dirty.addAll(changed);
+            throw ex;
+        }
+    }
+
+    private void merge(Map<Long, PollCounters> pollCounters, List<TallyDelta> deltas) {
+        for (TallyDelta delta : deltas) {
+            PollCounters poll = poll(pollCounters, delta.getPollId());
+            ChoiceCounter counter = poll.counter(delta.getChoiceId());
+
+            long before = counter.value();
+            if (this.nodeId.equals(delta.getNodeId())) {
+                counter.local.accumulateAndGet(delta.getVoteCount(), Math::max);
+            } else {
+                counter.remote.merge(delta.getNodeId(), delta.getVoteCount(), Math::max);
+            }
+            if (counter.value() != before) {
+                poll.revision.incrementAndGet();
+            }
+        }
+    }
+
+    private static PollCounters poll(Map<Long, PollCounters> pollCounters, Long pollId) {
+        return pollCounters.computeIfAbsent(pollId, PollCounters::new);
+    }
+
+    private static final class PollCounters {
+        private final Long pollId;
+        private final Map<Long, ChoiceCounter> choices = new ConcurrentHashMap<>();
+        private final AtomicLong revision = new AtomicLong();
+
+        private PollCounters(Long pollId) {
+            this.pollId = pollId;
+        }
+
+        private ChoiceCounter counter(Long choiceId) {
+            return this.choices.computeIfAbsent(choiceId, id -> new ChoiceCounter(this.pollId, choiceId));
+        }
+    }
+
+    private static final class ChoiceCounter {
+        private final Long pollId;
+        private final Long choiceId;
+        private final AtomicLong local = new AtomicLong();
+        private final Map<String, Long> remote = new ConcurrentHashMap<>();
+
+        private ChoiceCounter(Long pollId, Long choiceId) {
+            this.pollId = pollId;
+            this.choiceId = choiceId;
+        }
+
+        private long value() {
+            long value = this.local.get();
+            for (Long remoteValue : this.remote.values()) {
+                value += remoteValue;
+            }
+            return value;
+        }
+    }
+
+    private static final class RecentVote {
+        private final long sequence;
+        private final long recordedAt;
+        private final long voteId;
+        private final Long pollId;
+        private final Long choiceId;
+
+        private RecentVote(long sequence, long recordedAt, long voteId, Long pollId, Long choiceId) {
+            this.sequence = sequence;
+            this.recordedAt = recordedAt;
+            this.voteId = voteId;
+            this.pollId = pollId;
+            this.choiceId = choiceId;
+        }
+    }
+}
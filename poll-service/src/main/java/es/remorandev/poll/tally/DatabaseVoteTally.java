@@ -0,0 +1,28 @@
+package es.remorandev.poll.tally;
+
+import es.remorandev.poll.model.ChoiceVoteCount;
+import es.remorandev.poll.model.Vote;
+import es.remorandev.poll.repository.VoteRepository;
+
+import java.util.List;
+
+/**
+ * Recuento exacto con COUNT sobre votes y votes_archive en cada consulta (app.tally.mode=database).
+ */
+public class DatabaseVoteTally implements VoteTally {
+    private final VoteRepository voteRepository;
+
+    public DatabaseVoteTally(VoteRepository voteRepository) {
+        this.voteRepository = voteRepository;
+    }
+
+    @Override
+    public List<ChoiceVoteCount> countByPollIdIn(List<Long> pollIds) {
+        return this.voteRepository.countByPollIdInGroupByChoiceId(pollIds);
+    }
+
+    @Override
+    public void recordVote(Vote vote) {
+        // El voto ya esta en la tabla votes
+    }
+}
@@ -0,0 +1,207 @@
+package es.remorandev.poll.tally;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segunda vuelta instantanea sobre papeletas agrupadas por orden de preferencia.
+ *
+ * Un orden es una lista de posiciones de opciones (0..5, en el orden de id de las opciones) y se codifica como un
+ * entero en base 7, con la primera preferencia en la cifra menos significativa. Con 6 opciones hay como mucho
+ * 1956 ordenes distintos (720 si se ordenan todas), asi que cada ronda recorre esos grupos y no las papeletas.
+ *
+ * En cada ronda cada grupo cuenta para su opcion preferida que siga en juego; los que ya no tienen ninguna se
+ * agotan. Gana la opcion con mas de la mitad de los votos que siguen en juego. Si no, se elimina la menos votada;
+ * un empate se deshace por los votos de las rondas anteriores (de la mas reciente hacia atras) y despues por la
+ * posicion, eliminando la ultima. Si todas las que quedan empatan no hay ganador.
+ */
+public final class InstantRunoff {
+    public static final int MAX_CHOICES = 6;
+    private static final int RADIX = MAX_CHOICES + 1;
+
+    private InstantRunoff() {
+    }
+
+    public static int encode(int[] positions) {
+        int ranking = 0;
+        for (int i = positions.length - 1; i >= 0; i--) {
+            ranking = ranking * RADIX + positions[i] + 1;
+        }
+        return ranking;
+    }
+
+    public static int[] decode(int ranking) {
+        int length = 0;
+        for (int rest = ranking; rest > 0; rest /= RADIX) {
+            length++;
+        }
+        int[] positions = new int[length];
+        for (int i = 0; i < length; i++) {
+            positions[i] = ranking % RADIX - 1;
+            ranking /= RADIX;
+        }
+        return positions;
+    }
+
+    /**
+     * @param rankingCounts papeletas por orden codificado
+     */
+    public static Result run(int choiceCount, Map<Integer, Long> rankingCounts) {
+        int[][] rankings = new int[rankingCounts.size()][];
+        long[] counts = new long[rankings.length];
+        int group = 0;
+        for (Map.Entry<Integer, Long> entry : rankingCounts.entrySet()) {
+            rankings[group] = decode(entry.getKey());
+            counts[group] = entry.getValue();
+            group++;
+        }
+
+        boolean[] continuing = new boolean[choiceCount];
+        int remaining = choiceCount;
+        for (int i = 0; i < choiceCount; i++) {
+            continuing[i] = true;
+        }
+
+        List<Round> rounds = new ArrayList<>();
+        while (true) {
+            long[] votes = new long[choiceCount];
+            long exhausted = 0;
+            for (int g = 0; g < rankings.length; g++) {
+                int top = -1;
+                for (int position : rankings[g]) {
+                    if (continuing[position]) {
+                        top = position;
+                        break;
+                    }
+                }
+                if (top < 0) {
+                    exhausted += counts[g];
+                } else {
+                    votes[top] += counts[g];
+                }
+            }
+
+            long active = 0;
+            int leader = -1;
+            for (int i = 0; i < choiceCount; i++) {
+                if (continuing[i]) {
+                    active += votes[i];
+                    if (leader < 0 || votes[i] > votes[leader]) {
+                        leader = i;
+                    }
+                }
+            }
+
+            boolean[] inRound = continuing.clone();
+            if (active == 0) {
+                rounds.add(new Round(votes, inRound, exhausted, -1));
+                return new Result(rounds, -1);
+            }
+            if (votes[leader] * 2 > active || remaining == 1) {
+                rounds.add(new Round(votes, inRound, exhausted, -1));
+                return new Result(rounds, leader);
+            }
+
+            int eliminated = lowest(votes, continuing, rounds);
+            if (eliminated < 0) {
+                // Todas las que quedan empatan
+                rounds.add(new Round(votes, inRound, exhausted, -1));
+                return new Result(rounds, -1);
+            }
+            rounds.add(new Round(votes, inRound, exhausted, eliminated));
+            continuing[eliminated] = false;
+            remaining--;
+        }
+    }
+
+    /**
+     * Opcion a eliminar, o -1 si todas las que siguen en juego estan empatadas en todas las rondas.
+     */
+    private static int lowest(long[] votes, boolean[] continuing, List<Round> previousRounds) {
+        int lowest = -1;
+        boolean allTied = true;
+        for (int i = 0; i < votes.length; i++) {
+            if (!continuing[i]) {
+                continue;
+            }
+            if (lowest < 0) {
+                lowest = i;
+                continue;
+            }
+            int comparison = compare(i, lowest, votes, previousRounds);
+            if (comparison != 0) {
+                allTied = false;
+            }
+            // Con empate total gana la eliminacion la posicion mas alta
+            if (comparison <= 0) {
+                lowest = i;
+            }
+        }
+        return allTied ? -1 : lowest;
+    }
+
+    private static int compare(int a, int b, long[] votes, List<Round> previousRounds) {
+        int comparison = Long.compare(votes[a], votes[b]);
+        for (int r = previousRounds.size() - 1; comparison == 0 && r >= 0; r--) {
+            long[] roundVotes = previousRounds.get(r).votes;
+            comparison = Long.compare(roundVotes[a], roundVotes[b]);
+        }
+        return comparison;
+    }
+
+    public static class Result {
+        private final List<Round> rounds;
+        private final int winner;
+
+        Result(List<Round> rounds, int winner) {
+            this.rounds = Collections.unmodifiableList(rounds);
+            this.winner = winner;
+        }
+
+        public List<Round> getRounds() {
+            return rounds;
+        }
+
+        /**
+         * Posicion de la opcion ganadora, o -1 si no hay votos o hay empate.
+         */
+        public int getWinner() {
+            return winner;
+        }
+    }
+
+    public static class Round {
+        private final long[] votes;
+        private final boolean[] continuing;
+        private final long exhausted;
+        private final int eliminated;
+
+        Round(long[] votes, boolean[] continuing, long exhausted, int eliminated) {
+            this.votes = votes;
+            this.continuing = continuing;
+            this.exhausted = exhausted;
+            this.eliminated = eliminated;
+        }
+
+        public long getVotes(int position) {
+            return votes[position];
+        }
+
+        public boolean isContinuing(int position) {
+            return continuing[position];
+        }
+
+        public long getExhausted() {
+            return exhausted;
+        }
+
+        /**
+         * Posicion eliminada al final de la ronda, o -1 en la ultima.
+         */
+        public int getEliminated() {
+            return eliminated;
+        }
+    }
+}
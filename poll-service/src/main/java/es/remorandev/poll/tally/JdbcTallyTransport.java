@@ -0,0 +1,164 @@
+package es.remorandev.poll.tally;
+
+import es.remorandev.poll.model.TallyDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transporte sobre la tabla tally_deltas de la base de datos principal.
+ *
+ * Cada publicacion es un upsert que solo acepta valores mayores (GREATEST), y updated_at (hora de la base de datos)
+ * solo avanza cuando el valor crece. Las lecturas piden lo modificado desde la ultima marca vista menos un margen,
+ * para no perder filas confirmadas fuera de orden; las repeticiones no importan al fusionar por maximo.
+ *
+ * Reconstruir la linea base borra todas las filas y vuelve a contar desde votes y votes_archive en una transaccion.
+ * Los ids de votes no se confirman en orden, asi que la linea base llega solo hasta el ultimo voto creado hace mas de
+ * commitLagMs: los anteriores ya estan confirmados y los posteriores los siguen contando las instancias.
+ */
+public class JdbcTallyTransport implements TallyTransport {
+    public static final String BASELINE_NODE = "baseline";
+
+    private static final long FETCH_OVERLAP_MS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long commitLagMs;
+
+    private Timestamp lastSeen;
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcTallyTransport.class);
+
+    public JdbcTallyTransport(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, long commitLagMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.commitLagMs = commitLagMs;
+    }
+
+    @Override
+    public long ensureBaseline() {
+        List<Long> existing = this.jdbcTemplate.queryForList("SELECT max_vote_id FROM tally_baseline WHERE id = 1", Long.class);
+        if (!existing.isEmpty()) {
+            return existing.get(0);
+        }
+
+        // Si otra instancia la esta creando a la vez, el INSERT IGNORE espera a su commit y no inserta nada
+        return this.transactionTemplate.execute(status -> {
+            long maxVoteId = settledMaxVoteId();
+            int created = this.jdbcTemplate.update(
+                    "INSERT IGNORE INTO tally_baseline (id, max_vote_id, created_at) VALUES (1, ?, NOW(3))", maxVoteId);
+
+            if (created == 1) {
+                int rows = insertBaselineCounts(maxVoteId);
+                logger.info("Created vote tally baseline up to vote {} with {} choice counters", maxVoteId, rows);
+                return maxVoteId;
+            }
+
+            return this.jdbcTemplate.queryForObject("SELECT max_vote_id FROM tally_baseline WHERE id = 1", Long.class);
+        });
+    }
+
+    @Override
+    public long currentBaseline() {
+        // La lectura con bloqueo compartido espera a una reconstruccion en curso, que bloquea la fila en exclusiva
+        return this.jdbcTemplate.queryForObject(
+                "SELECT max_vote_id FROM tally_baseline WHERE id = 1 LOCK IN SHARE MODE", Long.class);
+    }
+
+    @Override
+    public long rebuildBaseline(long maxAgeMs) {
+        ensureBaseline();
+
+        // El bloqueo de la fila reparte las reconstrucciones entre las instancias y detiene las publicaciones
+        return this.transactionTemplate.execute(status -> {
+            Map<String, Object> baseline = this.jdbcTemplate.queryForMap(
+                    "SELECT max_vote_id, TIMESTAMPDIFF(MICROSECOND, created_at, NOW(3)) DIV 1000 AS age_ms " +
+                            "FROM tally_baseline WHERE id = 1 FOR UPDATE");
+            long previousMaxVoteId = ((Number) baseline.get("max_vote_id")).longValue();
+            if (((Number) baseline.get("age_ms")).longValue() < maxAgeMs) {
+                return previousMaxVoteId;
+            }
+
+            // Nunca retrocede: las instancias descartan los votos que ya cubre la linea base
+            long maxVoteId = Math.max(previousMaxVoteId, settledMaxVoteId());
+            this.jdbcTemplate.update("DELETE FROM tally_deltas");
+            int rows = insertBaselineCounts(maxVoteId);
+            this.jdbcTemplate.update("UPDATE tally_baseline SET max_vote_id = ?, created_at = NOW(3) WHERE id = 1", maxVoteId);
+            logger.info("Rebuilt vote tally baseline up to vote {} with {} choice counters", maxVoteId, rows);
+            return maxVoteId;
+        });
+    }
+
+    // Como la reconstruccion lee todo votes, el MAX sobre el rango de created_at no la encarece
+    private long settledMaxVoteId() {
+        return this.jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM votes WHERE created_at <= ?",
+                Long.class, new Timestamp(System.currentTimeMillis() - this.commitLagMs));
+    }
+
+    private int insertBaselineCounts(long maxVoteId) {
+        return this.jdbcTemplate.update(
+                "INSERT INTO tally_deltas (node_id, poll_id, choice_id, vote_count, updated_at) " +
+                        "SELECT ?, v.poll_id, v.choice_id, COUNT(*), NOW(3) FROM (" +
+                        "  SELECT poll_id, choice_id FROM votes WHERE id <= ? " +
+                        "  UNION ALL SELECT poll_id, choice_id FROM votes_archive" +
+                        ") v GROUP BY v.poll_id, v.choice_id",
+                BASELINE_NODE, maxVoteId);
+    }
+
+    @Override
+    public void publish(long baselineMaxVoteId, Collection<TallyDelta> deltas) {
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        for (TallyDelta delta : deltas) {
+            args.add(new Object[]{delta.getNodeId(), delta.getPollId(), delta.getChoiceId(), delta.getVoteCount(),
+                    baselineMaxVoteId});
+        }
+
+        // La fila de tally_baseline se lee con bloqueo compartido, asi que una publicacion no se cruza con una
+        // reconstruccion: espera a que termine y entonces no inserta nada.
+        // updated_at se asigna antes que vote_count para comparar con el valor anterior
+        this.jdbcTemplate.batchUpdate(
+                "INSERT INTO tally_deltas (node_id, poll_id, choice_id, vote_count, updated_at) " +
+                        "SELECT ?, ?, ?, ?, NOW(3) FROM tally_baseline WHERE id = 1 AND max_vote_id = ? " +
+                        "ON DUPLICATE KEY UPDATE " +
+                        "updated_at = IF(VALUES(vote_count) > vote_count, NOW(3), updated_at), " +
+                        "vote_count = GREATEST(vote_count, VALUES(vote_count))",
+                args);
+    }
+
+    @Override
+    public synchronized List<TallyDelta> fetchChanges() {
+        List<TallyDelta> changes = new ArrayList<>();
+        Timestamp[] maxSeen = {this.lastSeen};
+
+        String sql = "SELECT node_id, poll_id, choice_id, vote_count, updated_at FROM tally_deltas";
+        Object[] args = {};
+        if (this.lastSeen != null) {
+            sql += " WHERE updated_at >= ?";
+            args = new Object[]{new Timestamp(this.lastSeen.getTime() - FETCH_OVERLAP_MS)};
+        }
+
+        this.jdbcTemplate.query(sql, args, rs -> {
+            changes.add(new TallyDelta(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)));
+            Timestamp updatedAt = rs.getTimestamp(5);
+            if (maxSeen[0] == null || updatedAt.after(maxSeen[0])) {
+                maxSeen[0] = updatedAt;
+            }
+        });
+
+        this.lastSeen = maxSeen[0];
+        return changes;
+    }
+
+    @Override
+    public synchronized List<TallyDelta> fetchAll() {
+        this.lastSeen = null;
+        return fetchChanges();
+    }
+}
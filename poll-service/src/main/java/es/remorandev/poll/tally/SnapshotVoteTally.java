@@ -0,0 +1,293 @@
+package es.remorandev.poll.tally;
+
+import es.remorandev.poll.model.ChoiceVoteCount;
+import es.remorandev.poll.model.Vote;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recuento en memoria de las encuestas activas que arranca en caliente (app.tally.mode=snapshot).
+ *
+ * Los contadores se guardan cada app.tally.snapshotIntervalMs en una instantanea local (ver TallySnapshot) con la
+ * marca del ultimo voto incluido. Al arrancar se carga la instantanea y solo se leen de votes las filas posteriores
+ * a la marca; sin instantanea se cuenta todo una vez con un GROUP BY. Despues, cada app.tally.catchUpIntervalMs
+ * se leen las filas nuevas, asi que los votos de otras instancias (o de una importacion) se ven con ese retraso;
+ * los de esta instancia se cuentan al guardarse.
+ *
+ * Los ids de votes no se confirman en orden: la marca solo avanza hasta lo leido hace mas de app.tally.commitLagMs
+ * y los ids posteriores ya contados se recuerdan (un bit por id) para no contarlos dos veces. Por lo mismo, el
+ * GROUP BY del arranque en frio solo cuenta hasta el ultimo voto creado hace mas de commitLagMs, y los posteriores
+ * los lee la primera pasada de catchUp. Las encuestas expiradas, o sin votos desde el arranque, se cuentan en la
+ * base de datos como en el modo database.
+ */
+public class SnapshotVoteTally implements VoteTally {
+    private static final int CATCH_UP_PAGE_SIZE = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VoteTally databaseTally;
+    private final Path snapshotFile;
+    private final long commitLagMs;
+
+    private final Map<Long, PollCounters> pollCounters = new ConcurrentHashMap<>();
+
+    // Estado del avance; solo se modifica con el monitor de esta instancia
+    private long maxVoteId;
+    private BitSet applied = new BitSet();
+    private final Deque<long[]> catchUps = new ArrayDeque<>();
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotVoteTally.class);
+
+    public SnapshotVoteTally(JdbcTemplate jdbcTemplate, VoteTally databaseTally, Path snapshotFile, long commitLagMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseTally = databaseTally;
+        this.snapshotFile = snapshotFile;
+        this.commitLagMs = commitLagMs;
+    }
+
+    @PostConstruct
+    public void initialize() throws IOException {
+        long start = System.currentTimeMillis();
+        Files.createDirectories(this.snapshotFile.getParent());
+
+        Long databaseMaxVoteId = this.jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM votes", Long.class);
+        TallySnapshot snapshot = null;
+        try {
+            snapshot = TallySnapshot.read(this.snapshotFile);
+        } catch (IOException ex) {
+            logger.warn("Ignoring vote tally snapshot: {}", ex.getMessage());
+        }
+        if (snapshot != null && snapshot.getMaxVoteId() > databaseMaxVoteId) {
+            logger.warn("Ignoring vote tally snapshot up to vote {}: votes only go up to {}",
+                    snapshot.getMaxVoteId(), databaseMaxVoteId);
+            snapshot = null;
+        }
+
+        long loadedUpTo;
+        if (snapshot != null) {
+            restore(snapshot);
+            loadedUpTo = snapshot.getMaxVoteId();
+        } else {
+            loadedUpTo = loadFromDatabase();
+        }
+        long loaded = System.currentTimeMillis();
+
+        long caughtUp = catchUp();
+        logger.info("Vote tally warm with {} active polls in {} ms ({} up to vote {}, {} newer votes in {} ms)",
+                this.pollCounters.size(), System.currentTimeMillis() - start, snapshot != null ? "snapshot" : "database",
+                loadedUpTo, caughtUp, System.currentTimeMillis() - loaded);
+    }
+
+    @Override
+    public List<ChoiceVoteCount> countByPollIdIn(List<Long> pollIds) {
+        long now = System.currentTimeMillis();
+        List<ChoiceVoteCount> counts = new ArrayList<>();
+        List<Long> uncounted = new ArrayList<>();
+        for (Long pollId : pollIds) {
+            PollCounters poll = this.pollCounters.get(pollId);
+            if (poll == null || poll.expirationMillis <= now) {
+                uncounted.add(pollId);
+            } else {
+                poll.choices.forEach((choiceId, count) -> counts.add(new ChoiceVoteCount(choiceId, count.get())));
+            }
+        }
+
+        if (!uncounted.isEmpty()) {
+            counts.addAll(this.databaseTally.countByPollIdIn(uncounted));
+        }
+        return counts;
+    }
+
+    @Override
+    public void recordVote(Vote vote) {
+        apply(vote.getId(), vote.getPoll().getId(), vote.getChoice().getId(),
+                vote.getPoll().getExpirationDateTime().toEpochMilli());
+    }
+
+    @Override
+    public long revision(Long pollId) {
+        PollCounters poll = this.pollCounters.get(pollId);
+        return poll == null ? 0 : poll.revision.get();
+    }
+
+    /**
+     * Cuenta las filas de votes posteriores a la marca que aun no estaban contadas y devuelve cuantas eran.
+     */
+    @Scheduled(initialDelayString = "${app.tally.catchUpIntervalMs}", fixedDelayString = "${app.tally.catchUpIntervalMs}")
+    public long catchUp() {
+        long startedAt = System.currentTimeMillis();
+        long[] cursor = new long[1];
+        synchronized (this) {
+            cursor[0] = this.maxVoteId;
+        }
+        long[] counted = {0};
+        int[] rows = new int[1];
+        do {
+            rows[0] = 0;
+            this.jdbcTemplate.query(
+                    "SELECT v.id, v.poll_id, v.choice_id, p.expiration_date_time FROM votes v " +
+                            "JOIN polls p ON p.id = v.poll_id WHERE v.id > ? ORDER BY v.id LIMIT ?",
+                    new Object[]{cursor[0], CATCH_UP_PAGE_SIZE},
+                    (RowCallbackHandler) rs -> {
+                        cursor[0] = rs.getLong(1);
+                        rows[0]++;
+                        if (apply(cursor[0], rs.getLong(2), rs.getLong(3), rs.getTimestamp(4).getTime())) {
+                            counted[0]++;
+                        }
+                    });
+        } while (rows[0] == CATCH_UP_PAGE_SIZE);
+
+        // Lo leido en una pasada que empezo hace mas de commitLagMs ya no puede tener huecos
+        synchronized (this) {
+            this.catchUps.addLast(new long[]{startedAt, cursor[0]});
+            long mark = this.maxVoteId;
+            while (!this.catchUps.isEmpty() && this.catchUps.peekFirst()[0] <= startedAt - this.commitLagMs) {
+                mark = Math.max(mark, this.catchUps.removeFirst()[1]);
+            }
+            advanceMark(mark);
+        }
+
+        this.pollCounters.values().removeIf(poll -> poll.expirationMillis <= startedAt);
+        return counted[0];
+    }
+
+    @Scheduled(initialDelayString = "${app.tally.snapshotIntervalMs}", fixedDelayString = "${app.tally.snapshotIntervalMs}")
+    public void writeSnapshot() {
+        long start = System.currentTimeMillis();
+        TallySnapshot snapshot;
+        synchronized (this) {
+            List<TallySnapshot.PollEntry> polls = new ArrayList<>(this.pollCounters.size());
+            this.pollCounters.forEach((pollId, poll) -> {
+                if (poll.expirationMillis > start) {
+                    polls.add(poll.toEntry(pollId));
+                }
+            });
+            snapshot = new TallySnapshot(start, this.maxVoteId, this.applied.toLongArray(), polls);
+        }
+
+        try {
+            snapshot.write(this.snapshotFile);
+            logger.debug("Wrote vote tally snapshot with {} polls up to vote {} in {} ms",
+                    snapshot.getPolls().size(), snapshot.getMaxVoteId(), System.currentTimeMillis() - start);
+        } catch (IOException ex) {
+            logger.warn("Could not write vote tally snapshot {}: {}", this.snapshotFile, ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeSnapshot();
+    }
+
+    /**
+     * Cuenta el voto si no estaba contado ya; devuelve si lo ha contado.
+     */
+    private synchronized boolean apply(long voteId, long pollId, long choiceId, long expirationMillis) {
+        if (voteId <= this.maxVoteId) {
+            return false;
+        }
+        int bit = Math.toIntExact(voteId - this.maxVoteId - 1);
+        if (this.applied.get(bit)) {
+            return false;
+        }
+        this.applied.set(bit);
+
+        if (expirationMillis > System.currentTimeMillis()) {
+            PollCounters poll = this.pollCounters.computeIfAbsent(pollId, id -> new PollCounters(expirationMillis));
+            poll.choices.computeIfAbsent(choiceId, id -> new AtomicLong()).incrementAndGet();
+            poll.revision.incrementAndGet();
+        }
+        return true;
+    }
+
+    private synchronized void advanceMark(long mark) {
+        if (mark > this.maxVoteId) {
+            int shift = Math.toIntExact(mark - this.maxVoteId);
+            this.applied = this.applied.get(shift, Math.max(shift, this.applied.length()));
+            this.maxVoteId = mark;
+        }
+    }
+
+    private synchronized void restore(TallySnapshot snapshot) {
+        long now = System.currentTimeMillis();
+        for (TallySnapshot.PollEntry entry : snapshot.getPolls()) {
+            if (entry.getExpirationMillis() > now) {
+                PollCounters poll = new PollCounters(entry.getExpirationMillis());
+                for (int i = 0; i < entry.getChoiceIds().length; i++) {
+                    poll.choices.put(entry.getChoiceIds()[i], new AtomicLong(entry.getVoteCounts()[i]));
+                }
+                this.pollCounters.put(entry.getPollId(), poll);
+            }
+        }
+        this.maxVoteId = snapshot.getMaxVoteId();
+        this.applied = BitSet.valueOf(snapshot.getApplied());
+    }
+
+    /**
+     * Cuenta con un GROUP BY los votos hasta el ultimo creado hace mas de commitLagMs y devuelve su id. Los
+     * anteriores ya estan todos confirmados; los posteriores pueden tener huecos que se confirmen despues, asi que se
+     * dejan para catchUp.
+     */
+    private synchronized long loadFromDatabase() {
+        long now = System.currentTimeMillis();
+        List<Long> lastSettled = this.jdbcTemplate.queryForList(
+                "SELECT id FROM votes WHERE created_at <= ? ORDER BY created_at DESC, id DESC LIMIT 1",
+                Long.class, new Timestamp(now - this.commitLagMs));
+        long maxVoteId = lastSettled.isEmpty() ? 0 : lastSettled.get(0);
+
+        // Las encuestas activas no tienen votos archivados: basta con votes
+        this.jdbcTemplate.query(
+                "SELECT v.poll_id, v.choice_id, COUNT(*), p.expiration_date_time FROM votes v " +
+                        "JOIN polls p ON p.id = v.poll_id " +
+                        "WHERE p.expiration_date_time > ? AND v.id <= ? " +
+                        "GROUP BY v.poll_id, v.choice_id, p.expiration_date_time",
+                new Object[]{new Timestamp(now), maxVoteId},
+                (RowCallbackHandler) rs -> {
+                    long expirationMillis = rs.getTimestamp(4).getTime();
+                    this.pollCounters.computeIfAbsent(rs.getLong(1), id -> new PollCounters(expirationMillis))
+                            .choices.put(rs.getLong(2), new AtomicLong(rs.getLong(3)));
+                });
+        this.maxVoteId = maxVoteId;
+        this.applied = new BitSet();
+        return maxVoteId;
+    }
+
+    private static final class PollCounters {
+        private final long expirationMillis;
+        private final Map<Long, AtomicLong> choices = new ConcurrentHashMap<>();
+        private final AtomicLong revision = new AtomicLong();
+
+        private PollCounters(long expirationMillis) {
+            this.expirationMillis = expirationMillis;
+        }
+
+        private TallySnapshot.PollEntry toEntry(long pollId) {
+            long[] choiceIds = new long[this.choices.size()];
+            long[] voteCounts = new long[choiceIds.length];
+            int i = 0;
+            for (Map.Entry<Long, AtomicLong> choice : this.choices.entrySet()) {
+                choiceIds[i] = choice.getKey();
+                voteCounts[i] = choice.getValue().get();
+                i++;
+            }
+            return new TallySnapshot.PollEntry(pollId, this.expirationMillis, choiceIds, voteCounts);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package es.remorandev.poll.tally;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Instantanea binaria del recuento en memoria de SnapshotVoteTally: los contadores por opcion de las encuestas
+ * activas hasta la marca maxVoteId, mas los votos posteriores a la marca que ya estaban contados (applied, un
+ * bit por id a partir de maxVoteId + 1). Termina con un CRC32 de todo lo anterior; un fichero que no cuadra se
+ * descarta entero.
+ */
+public class TallySnapshot {
+    // 'TSN1'
+    private static final int MAGIC = 0x54534E31;
+
+    private final long createdAtMillis;
+    private final long maxVoteId;
+    private final long[] applied;
+    private final List<PollEntry> polls;
+
+    public TallySnapshot(long createdAtMillis, long maxVoteId, long[] applied, List<PollEntry> polls) {
+        this.createdAtMillis = createdAtMillis;
+        this.maxVoteId = maxVoteId;
+        this.applied = applied;
+        this.polls = polls;
+    }
+
+    /**
+     * Escribe en un fichero temporal y lo renombra, para que una caida a medias deje la instantanea anterior.
+     */
+    public void write(Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + this.polls.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeLong(this.createdAtMillis);
+        out.writeLong(this.maxVoteId);
+        out.writeInt(this.applied.length);
+        for (long word : this.applied) {
+            out.writeLong(word);
+        }
+        out.writeInt(this.polls.size());
+        for (PollEntry poll : this.polls) {
+            out.writeLong(poll.pollId);
+            out.writeLong(poll.expirationMillis);
+            out.writeInt(poll.choiceIds.length);
+            for (int i = 0; i < poll.choiceIds.length; i++) {
+                out.writeLong(poll.choiceIds[i]);
+                out.writeLong(poll.voteCounts[i]);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray(), 0, bytes.size());
+        out.writeLong(crc.getValue());
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Devuelve null si no hay instantanea; IOException si esta danada.
+     */
+    public static TallySnapshot read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < Long.BYTES) {
+            throw new IOException("Truncated tally snapshot " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong()) {
+            throw new IOException("Tally snapshot " + file + " failed its CRC check");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Long.BYTES));
+        if (in.readInt() != MAGIC) {
+            throw new IOException(file + " is not a tally snapshot");
+        }
+        long createdAtMillis = in.readLong();
+        long maxVoteId = in.readLong();
+        long[] applied = new long[in.readInt()];
+        for (int i = 0; i < applied.length; i++) {
+            applied[i] = in.readLong();
+        }
+        int pollCount = in.readInt();
+        List<PollEntry> polls = new ArrayList<>(pollCount);
+        for (int p = 0; p < pollCount; p++) {
+            long pollId = in.readLong();
+            long expirationMillis = in.readLong();
+            long[] choiceIds = new long[in.readInt()];
+            long[] voteCounts = new long[choiceIds.length];
+            for (int i = 0; i < choiceIds.length; i++) {
+                choiceIds[i] = in.readLong();
+                voteCounts[i] = in.readLong();
+            }
+            polls.add(new PollEntry(pollId, expirationMillis, choiceIds, voteCounts));
+        }
+        return new TallySnapshot(createdAtMillis, maxVoteId, applied, polls);
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public long getMaxVoteId() {
+        return maxVoteId;
+    }
+
+    public long[] getApplied() {
+        return applied;
+    }
+
+    public List<PollEntry> getPolls() {
+        return polls;
+    }
+
+    public static class PollEntry {
+        private final long pollId;
+        private final long expirationMillis;
+        private final long[] choiceIds;
+        private final long[] voteCounts;
+
+        public PollEntry(long pollId, long expirationMillis, long[] choiceIds, long[] voteCounts) {
+            this.pollId = pollId;
+            this.expirationMillis = expirationMillis;
+            this.choiceIds = choiceIds;
+            this.voteCounts = voteCounts;
+        }
+
+        public long getPollId() {
+            return pollId;
+        }
+
+        public long getExpirationMillis() {
+            return expirationMillis;
+        }
+
+        public long[] getChoiceIds() {
+            return choiceIds;
+        }
+
+        public long[] getVoteCounts() {
+            return voteCounts;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package es.remorandev.poll.tally;
+
+import es.remorandev.poll.model.TallyDelta;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Medio compartido por el que las instancias publican y reciben los contadores del modo cluster.
+ * Las entregas pueden repetirse o llegar desordenadas: la fusion por maximo es idempotente.
+ */
+public interface TallyTransport {
+
+    /**
+     * Crea la linea base si todavia no existe (una sola vez para todo el cluster)
+     * y devuelve el id del ultimo voto que incluye.
+     */
+    long ensureBaseline();
+
+    /**
+     * Id del ultimo voto de la linea base vigente. Si se esta reconstruyendo, espera a que termine.
+     */
+    long currentBaseline();
+
+    /**
+     * Vuelve a contar la linea base hasta el ultimo voto creado hace mas de app.tally.commitLagMs y descarta los
+     * contadores de todas las instancias, si la vigente tiene al menos maxAgeMs (0: siempre). Devuelve el id del
+     * ultimo voto de la linea base vigente.
+     */
+    long rebuildBaseline(long maxAgeMs);
+
+    /**
+     * Publica los contadores solo si la linea base sigue siendo la indicada; si no, los descarta.
+     */
+    void publish(long baselineMaxVoteId, Collection<TallyDelta> deltas);
+
+    /**
+     * Contadores que han cambiado desde la llamada anterior; la primera vez, todos.
+     */
+    List<TallyDelta> fetchChanges();
+
+    /**
+     * Todos los contadores; las siguientes llamadas a fetchChanges parten de aqui.
+     */
+    List<TallyDelta> fetchAll();
+}
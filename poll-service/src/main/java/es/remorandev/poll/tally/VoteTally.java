@@ -0,0 +1,39 @@
+package es.remorandev.poll.tally;
+
+import es.remorandev.poll.model.ChoiceVoteCount;
+import es.remorandev.poll.model.Vote;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Recuento de votos por opcion. La implementacion se elige con app.tally.mode (ver TallyConfig).
+ */
+public interface VoteTally {
+
+    List<ChoiceVoteCount> countByPollIdIn(List<Long> pollIds);
+
+    default List<ChoiceVoteCount> countByPollId(Long pollId) {
+        return countByPollIdIn(Collections.singletonList(pollId));
+    }
+
+    /**
+     * Se llama despues de guardar cada voto.
+     */
+    void recordVote(Vote vote);
+
+    /**
+     * Cambia cada vez que cambian los recuentos de la encuesta en esta instancia sin pasar por la version
+     * de la encuesta (por ejemplo, al fusionar contadores de otras instancias). Forma parte del ETag.
+     */
+    default long revision(Long pollId) {
+        return 0;
+    }
+
+    /**
+     * Vuelve a calcular los recuentos desde la base de datos, para los votos que no han pasado por recordVote o
+     * cuyo recuento se ha perdido. Las implementaciones que leen siempre de la base de datos no hacen nada.
+     */
+    default void rebuild() {
+    }
+}
@@ -5,4 +5,6 @@ public interface AppConstants {
     String DEFAULT_PAGE_SIZE = "30";
 
     int MAX_PAGE_SIZE = 50;
+
+    String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 }
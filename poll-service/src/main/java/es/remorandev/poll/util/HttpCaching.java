@@ -0,0 +1,123 @@
+package es.remorandev.poll.util;
+
+import es.remorandev.poll.model.PollVersion;
+import es.remorandev.poll.security.UserPrincipal;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Validadores (ETag / Last-Modified) y politicas Cache-Control de las respuestas de encuestas.
+ *
+ * Las respuestas incluyen la opcion votada por el usuario actual, por eso el ETag lleva el id del usuario
+ * y las respuestas autenticadas son siempre privadas. Las encuestas expiradas ya no aceptan votos, asi que
+ * su version anonima no vuelve a cambiar y los CDN pueden guardarla mucho tiempo.
+ *
+ * Cada formato (JSON, Smile, CBOR) es una representacion distinta, con su propio ETag.
+ */
+public class HttpCaching {
+    public static final MediaType APPLICATION_CBOR = MediaType.valueOf("application/cbor");
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    private static final List<MediaType> REPRESENTATIONS = Arrays.asList(
+            MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR);
+
+    public static String pollETag(PollVersion poll, UserPrincipal currentUser, Instant now, String representation) {
+        return "\"p" + poll.getPollId() + "-" + poll.getVersion() + "." + poll.getTallyRevision() + (poll.isExpired(now) ? "-x" : "")
+                + "-u" + userIdOf(currentUser) + representation + "\"";
+    }
+
+    public static String feedETag(Collection<PollVersion> polls, long totalElements, int page, int size,
+                                  UserPrincipal currentUser, Instant now, String representation) {
+        StringBuilder key = new StringBuilder(representation)
+                .append(page).append('/').append(size).append('/').append(totalElements)
+                .append("/u").append(userIdOf(currentUser));
+        for (PollVersion poll : polls) {
+            key.append('|').append(poll.getPollId()).append(':').append(poll.getVersion())
+                    .append('.').append(poll.getTallyRevision());
+            if (poll.isExpired(now)) {
+                key.append('x');
+            }
+        }
+        return "\"f" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Ultimo cambio de un conjunto de encuestas, nunca anterior a {@code floor}.
+     */
+    public static Instant lastModified(Collection<PollVersion> polls, Instant floor, Instant now) {
+        Instant lastModified = floor;
+        for (PollVersion poll : polls) {
+            Instant pollLastModified = poll.getLastModified(now);
+            if (lastModified == null || pollLastModified.isAfter(lastModified)) {
+                lastModified = pollLastModified;
+            }
+        }
+        return lastModified;
+    }
+
+    public static String pollCacheControl(PollVersion poll, UserPrincipal currentUser, Instant now, Duration expiredMaxAge) {
+        if (currentUser == null && poll.isExpired(now)) {
+            return CacheControl.maxAge(expiredMaxAge).cachePublic().getHeaderValue() + ", immutable";
+        }
+        return feedCacheControl(currentUser);
+    }
+
+    public static String feedCacheControl(UserPrincipal currentUser) {
+        CacheControl cacheControl = CacheControl.noCache();
+        return (currentUser == null ? cacheControl.cachePublic() : cacheControl.cachePrivate()).getHeaderValue();
+    }
+
+    /**
+     * Sufijo del ETag segun el formato que elegira la negociacion de contenido a partir de la cabecera Accept:
+     * vacio para JSON, "-application/cbor" o "-application/x-jackson-smile" para los binarios.
+     */
+    public static String representationOf(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return "";
+        }
+
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException ex) {
+            return "";
+        }
+        MediaType.sortBySpecificityAndQuality(acceptedTypes);
+
+        for (MediaType acceptedType : acceptedTypes) {
+            for (MediaType representation : REPRESENTATIONS) {
+                if (acceptedType.isCompatibleWith(representation)) {
+                    return representation.equals(MediaType.APPLICATION_JSON) ? "" : "-" + representation;
+                }
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Se aplica antes de comprobar el If-None-Match para que tambien acompañe a los 304.
+     * Spring Security no sobrescribe un Cache-Control ya presente.
+     */
+    public static void applyCacheControl(HttpServletResponse response, String cacheControl) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.AUTHORIZATION);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    }
+
+    private static long userIdOf(UserPrincipal currentUser) {
+        return currentUser == null ? 0 : currentUser.getId();
+    }
+}
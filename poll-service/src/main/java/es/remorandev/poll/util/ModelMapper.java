@@ -20,6 +20,7 @@ public class ModelMapper {
         pollResponse.setExpirationDateTime(poll.getExpirationDateTime());
         Instant now = Instant.now();
         pollResponse.setExpired(poll.getExpirationDateTime().isBefore(now));
+        pollResponse.setType(poll.getType());
 
         List<ChoiceResponse> choiceResponses = poll.getChoices().stream().map(choice -> {
             ChoiceResponse choiceResponse = new ChoiceResponse();
@@ -0,0 +1,87 @@
+package es.remorandev.poll.util;
+
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logger para eventos que se repiten mucho y que cualquiera puede provocar (tokens invalidos, votos duplicados...).
+ *
+ * Cada mensaje (su formato) se escribe como mucho permitsPerInterval veces por intervalo; el resto se cuenta y el
+ * siguiente mensaje que pasa indica cuantos se omitieron. Asi una avalancha de peticiones basura no se convierte en
+ * una avalancha de escrituras en el log.
+ */
+public class RateLimitedLogger {
+    // Los formatos son constantes del codigo; el limite solo protege de un uso con mensajes construidos al vuelo
+    private static final int MAX_WINDOWS = 1000;
+    private static final String OVERFLOW_KEY = "";
+
+    private final Logger logger;
+    private final int permitsPerInterval;
+    private final long intervalNanos;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    public RateLimitedLogger(Logger logger, int permitsPerInterval, Duration interval) {
+        this.logger = logger;
+        this.permitsPerInterval = permitsPerInterval;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    public void info(String format, Object... arguments) {
+        if (this.logger.isInfoEnabled()) {
+            long suppressed = acquire(format);
+            if (suppressed >= 0) {
+                this.logger.info(withSuppressed(format, suppressed), arguments);
+            }
+        }
+    }
+
+    public void warn(String format, Object... arguments) {
+        if (this.logger.isWarnEnabled()) {
+            long suppressed = acquire(format);
+            if (suppressed >= 0) {
+                this.logger.warn(withSuppressed(format, suppressed), arguments);
+            }
+        }
+    }
+
+    /**
+     * Devuelve -1 si el mensaje no se debe escribir o, si se escribe, cuantos se omitieron desde el ultimo.
+     */
+    private long acquire(String format) {
+        Window window = this.windows.get(format);
+        if (window == null) {
+            String key = this.windows.size() < MAX_WINDOWS ? format : OVERFLOW_KEY;
+            window = this.windows.computeIfAbsent(key, k -> new Window(System.nanoTime()));
+        }
+
+        long now = System.nanoTime();
+        long start = window.start.get();
+        if (now - start >= this.intervalNanos && window.start.compareAndSet(start, now)) {
+            window.logged.set(0);
+        }
+        if (window.logged.incrementAndGet() > this.permitsPerInterval) {
+            window.suppressed.incrementAndGet();
+            return -1;
+        }
+        return window.suppressed.getAndSet(0);
+    }
+
+    private static String withSuppressed(String format, long suppressed) {
+        return suppressed == 0 ? format : format + " (" + suppressed + " similar messages suppressed)";
+    }
+
+    private static class Window {
+        private final AtomicLong start;
+        private final AtomicInteger logged = new AtomicInteger();
+        private final AtomicLong suppressed = new AtomicLong();
+
+        Window(long start) {
+            this.start = new AtomicLong(start);
+        }
+    }
+}
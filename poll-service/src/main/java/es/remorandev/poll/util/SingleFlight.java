@@ -0,0 +1,94 @@
+package es.remorandev.poll.util;
+
+import es.remorandev.poll.exception.AppException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa las llamadas concurrentes con la misma clave: la primera ejecuta la carga y las que llegan mientras tanto
+ * esperan su resultado (o su excepcion) en lugar de repetirla. No guarda nada: en cuanto la carga termina la clave
+ * queda libre y la siguiente llamada vuelve a cargar.
+ *
+ * Quien espera mas de timeoutMs deja de esperar a esa carga: el primero en hacerlo la sustituye por una suya y los
+ * demas se unen a la nueva, asi que una carga atascada no retiene a nadie y tampoco provoca una carga por llamada.
+ * Cuenta las llamadas de cada tipo en app.singleflight.calls (outcome: leader, collapsed, timeout).
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutMs;
+
+    private final Counter leaders;
+    private final Counter collapsed;
+    private final Counter timeouts;
+
+    public SingleFlight(String name, long timeoutMs, MeterRegistry meterRegistry) {
+        this.timeoutMs = timeoutMs;
+        this.leaders = meterRegistry.counter("app.singleflight.calls", "name", name, "outcome", "leader");
+        this.collapsed = meterRegistry.counter("app.singleflight.calls", "name", name, "outcome", "collapsed");
+        this.timeouts = meterRegistry.counter("app.singleflight.calls", "name", name, "outcome", "timeout");
+        meterRegistry.gauge("app.singleflight.in_flight", Tags.of("name", name), this.inFlight, ConcurrentMap::size);
+    }
+
+    public V execute(K key, Supplier<V> load) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> stalled = null;
+        while (true) {
+            CompletableFuture<V> existing = stalled != null && this.inFlight.replace(key, stalled, flight)
+                    ? null
+                    : this.inFlight.putIfAbsent(key, flight);
+            if (existing == null) {
+                return lead(key, flight, load);
+            }
+
+            if (stalled == null) {
+                this.collapsed.increment();
+            }
+            try {
+                return await(existing);
+            } catch (TimeoutException ex) {
+                this.timeouts.increment();
+                stalled = existing;
+            }
+        }
+    }
+
+    private V lead(K key, CompletableFuture<V> flight, Supplier<V> load) {
+        this.leaders.increment();
+        try {
+            V value = load.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            this.inFlight.remove(key, flight);
+        }
+    }
+
+    private V await(CompletableFuture<V> flight) throws TimeoutException {
+        try {
+            return flight.get(this.timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AppException("Interrupted while waiting for a shared load", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new AppException("Shared load failed", ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package es.remorandev.poll.util;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+/**
+ * Utilidades para el particionado de la tabla votes por periodo (yyyyMM) de creacion de la encuesta.
+ */
+public final class VotePartitions {
+    public static final String HISTORY_PARTITION = "p_history";
+    public static final String MAX_PARTITION = "pmax";
+
+    private VotePartitions() {
+    }
+
+    public static int periodOf(Instant instant) {
+        return periodOf(YearMonth.from(instant.atZone(ZoneOffset.UTC)));
+    }
+
+    public static int periodOf(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+
+    public static YearMonth monthOf(int period) {
+        return YearMonth.of(period / 100, period % 100);
+    }
+
+    public static String partitionName(int period) {
+        return "p" + period;
+    }
+
+    /**
+     * Devuelve el periodo de una particion mensual, 0 para p_history o -1 si no es una particion mensual.
+     */
+    public static int periodOfPartition(String partitionName) {
+        if (HISTORY_PARTITION.equals(partitionName)) {
+            return 0;
+        }
+        if (partitionName.length() == 7 && partitionName.charAt(0) == 'p') {
+            try {
+                return Integer.parseInt(partitionName.substring(1));
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,121 @@
+package es.remorandev.poll.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limite adaptativo de peticiones en curso, basado en el algoritmo de gradiente de Netflix concurrency-limits.
+ *
+ * Cada ventana compara la latencia reciente (media de la ventana) con la latencia de referencia (media
+ * exponencial lenta). Si la latencia reciente sube, el gradiente baja de 1 y el limite se reduce; si se
+ * mantiene, el limite crece poco a poco (raiz cuadrada del limite) mientras se este usando. Las peticiones
+ * de menor prioridad solo se admiten hasta una fraccion del limite, de modo que se descartan primero.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Priority {
+        CRITICAL(1.0),
+        HIGH(0.9),
+        LOW(0.7);
+
+        private final double limitFraction;
+
+        Priority(double limitFraction) {
+            this.limitFraction = limitFraction;
+        }
+    }
+
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_WINDOW = 100;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder windowRttSum = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicLong nextUpdate;
+
+    private volatile int limit;
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long windowMs) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.nextUpdate = new AtomicLong(System.nanoTime() + this.windowNanos);
+    }
+
+    public boolean tryAcquire(Priority priority) {
+        int admissionLimit = Math.max(1, (int) (this.limit * priority.limitFraction));
+        while (true) {
+            int current = this.inFlight.get();
+            if (current >= admissionLimit) {
+                return false;
+            }
+            if (this.inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long rttNanos) {
+        release();
+        this.windowRttSum.add(rttNanos);
+        this.windowSamples.increment();
+
+        long now = System.nanoTime();
+        long next = this.nextUpdate.get();
+        if (now - next >= 0 && this.nextUpdate.compareAndSet(next, now + this.windowNanos)) {
+            updateLimit();
+        }
+    }
+
+    /**
+     * Libera la plaza sin aportar una muestra de latencia.
+     */
+    public void release() {
+        this.inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return this.limit;
+    }
+
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    // Solo la ejecuta el hilo que gana el compareAndSet de nextUpdate
+    private void updateLimit() {
+        long samples = this.windowSamples.sumThenReset();
+        long rttSum = this.windowRttSum.sumThenReset();
+        if (samples == 0) {
+            return;
+        }
+
+        double shortRtt = (double) rttSum / samples;
+        this.longRtt = this.longRtt == 0 ? shortRtt : this.longRtt + (shortRtt - this.longRtt) / LONG_WINDOW;
+        // Si la latencia ha bajado mucho, la referencia se recupera mas deprisa
+        if (this.longRtt / shortRtt > 2) {
+            this.longRtt *= 0.95;
+        }
+
+        int currentLimit = this.limit;
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * this.longRtt / shortRtt));
+        double newLimit = currentLimit * gradient + Math.sqrt(currentLimit);
+        newLimit = currentLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+
+        // No crecer si el limite actual ni siquiera se esta usando
+        if (newLimit > currentLimit && this.inFlight.get() < currentLimit / 2) {
+            return;
+        }
+
+        this.limit = (int) Math.max(this.minLimit, Math.min(this.maxLimit, Math.round(newLimit)));
+    }
+}
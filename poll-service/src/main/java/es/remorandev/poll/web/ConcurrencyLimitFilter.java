@@ -0,0 +1,123 @@
+package es.remorandev.poll.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.remorandev.poll.payload.ApiResponse;
+import es.remorandev.poll.security.JwtTokenProvider;
+import es.remorandev.poll.web.AdaptiveConcurrencyLimiter.Priority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Descarta con un 503 rapido las peticiones que superan el limite adaptativo de peticiones en curso,
+ * antes de que lleguen a Spring Security o a la base de datos. Los votos tienen la maxima prioridad,
+ * despues las peticiones autenticadas y por ultimo las anonimas (principalmente el feed). Como se ejecuta antes que
+ * Spring Security, una peticion solo cuenta como autenticada si trae un token Bearer valido.
+ *
+ * Las peticiones asincronas (como la exportacion de votos) ocupan su plaza hasta que terminan, pero su duracion no
+ * se usa como muestra de latencia: depende del tamaño de la respuesta y del cliente, no de la carga.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final JwtTokenProvider tokenProvider;
+    private final ObjectMapper objectMapper;
+    private final Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> accepted = new EnumMap<>(Priority.class);
+
+    public ConcurrencyLimitFilter(AdaptiveConcurrencyLimiter limiter, JwtTokenProvider tokenProvider,
+                                  ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.limiter = limiter;
+        this.tokenProvider = tokenProvider;
+        this.objectMapper = objectMapper;
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase();
+            this.accepted.put(priority, meterRegistry.counter("concurrency_limit.requests", "priority", tag, "outcome", "accepted"));
+            this.rejected.put(priority, meterRegistry.counter("concurrency_limit.requests", "priority", tag, "outcome", "rejected"));
+        }
+        meterRegistry.gauge("concurrency_limit.limit", limiter, AdaptiveConcurrencyLimiter::getLimit);
+        meterRegistry.gauge("concurrency_limit.in_flight", limiter, AdaptiveConcurrencyLimiter::getInFlight);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Priority priority = classify(request);
+
+        if (!this.limiter.tryAcquire(priority)) {
+            this.rejected.get(priority).increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            this.objectMapper.writeValue(response.getOutputStream(), new ApiResponse(false, "Service is overloaded, please try again later"));
+            return;
+        }
+
+        this.accepted.get(priority).increment();
+        long start = System.nanoTime();
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            async = request.isAsyncStarted();
+        } finally {
+            if (async) {
+                request.getAsyncContext().addListener(new ReleaseOnComplete());
+            } else {
+                this.limiter.release(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private Priority classify(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)
+                || !this.tokenProvider.validateToken(authorization.substring(BEARER_PREFIX.length()))) {
+            return Priority.LOW;
+        }
+        if (HttpMethod.POST.matches(request.getMethod()) && request.getRequestURI().endsWith("/votes")) {
+            return Priority.CRITICAL;
+        }
+        return Priority.HIGH;
+    }
+
+    private class ReleaseOnComplete implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limiter.release();
+        }
+
+        // onComplete se llama tambien despues de un timeout o un error
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+-- Esquema tal y como lo generaba Hibernate con ddl-auto=update (mismos nombres de claves), de modo que las bases de
+-- datos existentes se marcan directamente como version 1 (spring.flyway.baseline-version) y las nuevas quedan iguales.
+
+CREATE TABLE users (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    created_at DATETIME     NOT NULL,
+    updated_at DATETIME     NOT NULL,
+    email      VARCHAR(40)  DEFAULT NULL,
+    name       VARCHAR(40)  DEFAULT NULL,
+    password   VARCHAR(100) DEFAULT NULL,
+    username   VARCHAR(15)  DEFAULT NULL,
+    PRIMARY KEY (id),
+    UNIQUE KEY UKr43af9ap4edm43mmtq01oddj6 (username),
+    UNIQUE KEY UK6dotkott2kjsp8vw4d0m25fb7 (email)
+) ENGINE = InnoDB;
+
+CREATE TABLE roles (
+    id   BIGINT      NOT NULL AUTO_INCREMENT,
+    name VARCHAR(60) DEFAULT NULL,
+    PRIMARY KEY (id),
+    UNIQUE KEY UK_nb4h0p6txrmfc0xbrd1kglp9t (name)
+) ENGINE = InnoDB;
+
+CREATE TABLE user_roles (
+    user_id BIGINT NOT NULL,
+    role_id BIGINT NOT NULL,
+    PRIMARY KEY (user_id, role_id),
+    KEY FKh8ciramu9cc9q3qcqiv4ue8a6 (role_id),
+    CONSTRAINT FKh8ciramu9cc9q3qcqiv4ue8a6 FOREIGN KEY (role_id) REFERENCES roles (id),
+    CONSTRAINT FKhfh9dx7w3ubf1co1vdev94g3f FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE polls (
+    id                   BIGINT       NOT NULL AUTO_INCREMENT,
+    created_at           DATETIME     NOT NULL,
+    updated_at           DATETIME     NOT NULL,
+    created_by           BIGINT       DEFAULT NULL,
+    updated_by           BIGINT       DEFAULT NULL,
+    expiration_date_time DATETIME     NOT NULL,
+    question             VARCHAR(140) DEFAULT NULL,
+    version              BIGINT       NOT NULL,
+    PRIMARY KEY (id),
+    KEY idx_polls_created_at (created_at),
+    KEY idx_polls_created_by_created_at (created_by, created_at)
+) ENGINE = InnoDB;
+
+CREATE TABLE choices (
+    id      BIGINT      NOT NULL AUTO_INCREMENT,
+    text    VARCHAR(40) DEFAULT NULL,
+    poll_id BIGINT      NOT NULL,
+    PRIMARY KEY (id),
+    KEY FK1i68hpih40n447wqx4lpef6ot (poll_id),
+    CONSTRAINT FK1i68hpih40n447wqx4lpef6ot FOREIGN KEY (poll_id) REFERENCES polls (id)
+) ENGINE = InnoDB;
+
+-- Sin claves foraneas: V2 particiona la tabla
+CREATE TABLE votes (
+    id          BIGINT   NOT NULL AUTO_INCREMENT,
+    created_at  DATETIME NOT NULL,
+    updated_at  DATETIME NOT NULL,
+    poll_period INT      NOT NULL,
+    choice_id   BIGINT   NOT NULL,
+    poll_id     BIGINT   NOT NULL,
+    user_id     BIGINT   NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_votes_poll_user (poll_id, user_id, poll_period),
+    KEY idx_votes_created_at (created_at),
+    KEY idx_votes_user_created_at (user_id, created_at, poll_id)
+) ENGINE = InnoDB;
+
+CREATE TABLE votes_archive (
+    poll_id    BIGINT   NOT NULL,
+    user_id    BIGINT   NOT NULL,
+    choice_id  BIGINT   NOT NULL,
+    created_at DATETIME NOT NULL,
+    PRIMARY KEY (poll_id, user_id),
+    KEY idx_votes_archive_user (user_id, created_at)
+) ENGINE = InnoDB ROW_FORMAT = COMPRESSED KEY_BLOCK_SIZE = 8;
+
+CREATE TABLE tally_baseline (
+    id          INT      NOT NULL,
+    created_at  DATETIME NOT NULL,
+    max_vote_id BIGINT   NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE tally_deltas (
+    choice_id  BIGINT      NOT NULL,
+    node_id    VARCHAR(64) NOT NULL,
+    poll_id    BIGINT      NOT NULL,
+    updated_at DATETIME(3) NOT NULL,
+    vote_count BIGINT      NOT NULL,
+    PRIMARY KEY (choice_id, node_id),
+    KEY idx_tally_deltas_updated_at (updated_at)
+) ENGINE = InnoDB;
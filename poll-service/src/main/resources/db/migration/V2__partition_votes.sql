@@ -0,0 +1,40 @@
+-- Convierte la tabla votes en una tabla particionada por periodo (yyyyMM) de creacion de la encuesta.
+-- Las bases de datos ya convertidas a mano con el antiguo script db/votes-partitioning.sql no se tocan.
+-- Despues, VotePartitionManager crea las particiones de los meses siguientes y elimina las ya archivadas.
+
+SET @partitioned = (SELECT COUNT(*) FROM information_schema.PARTITIONS
+                    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'votes' AND PARTITION_NAME IS NOT NULL);
+
+-- votes_archive creada por Hibernate no estaba comprimida
+SET @compressed = (SELECT COUNT(*) FROM information_schema.TABLES
+                   WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'votes_archive' AND ROW_FORMAT = 'Compressed');
+SET @sql = IF(@compressed = 0, 'ALTER TABLE votes_archive ROW_FORMAT = COMPRESSED KEY_BLOCK_SIZE = 8', 'SELECT 1');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- MySQL no admite claves foraneas en tablas particionadas
+SET @fks = (SELECT GROUP_CONCAT(CONCAT('DROP FOREIGN KEY ', CONSTRAINT_NAME)) FROM information_schema.TABLE_CONSTRAINTS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'votes' AND CONSTRAINT_TYPE = 'FOREIGN KEY');
+SET @sql = IF(@fks IS NULL, 'SELECT 1', CONCAT('ALTER TABLE votes ', @fks));
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- Toda clave unica debe incluir la columna de particionado. Las bases de datos creadas por Hibernate pueden tener
+-- una clave unica generada sobre (poll_id, user_id), asi que se eliminan todas y se vuelve a crear uk_votes_poll_user
+SET @uks = (SELECT GROUP_CONCAT(DISTINCT CONCAT('DROP INDEX ', INDEX_NAME)) FROM information_schema.STATISTICS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'votes' AND NON_UNIQUE = 0 AND INDEX_NAME <> 'PRIMARY');
+SET @sql = IF(@partitioned > 0 OR @uks IS NULL, 'SELECT 1', CONCAT('ALTER TABLE votes ', @uks));
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql = IF(@partitioned > 0, 'SELECT 1',
+              CONCAT('ALTER TABLE votes DROP PRIMARY KEY, ADD PRIMARY KEY (id, poll_period), ',
+                     'ADD UNIQUE KEY uk_votes_poll_user (poll_id, user_id, poll_period)'));
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- Historico, mes actual y pmax; VotePartitionManager parte pmax para los meses siguientes
+SET @current = YEAR(UTC_DATE()) * 100 + MONTH(UTC_DATE());
+SET @next = YEAR(UTC_DATE() + INTERVAL 1 MONTH) * 100 + MONTH(UTC_DATE() + INTERVAL 1 MONTH);
+SET @sql = IF(@partitioned > 0, 'SELECT 1',
+              CONCAT('ALTER TABLE votes PARTITION BY RANGE (poll_period) (',
+                     'PARTITION p_history VALUES LESS THAN (', @current, '), ',
+                     'PARTITION p', @current, ' VALUES LESS THAN (', @next, '), ',
+                     'PARTITION pmax VALUES LESS THAN MAXVALUE)'));
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
@@ -0,0 +1,8 @@
+-- Indices para las consultas frecuentes que el esquema de Hibernate no cubria
+
+-- Recuento de votos por opcion (WHERE poll_id IN (...) GROUP BY choice_id) resuelto solo con el indice
+ALTER TABLE votes ADD INDEX idx_votes_poll_choice (poll_id, choice_id);
+ALTER TABLE votes_archive ADD INDEX idx_votes_archive_poll_choice (poll_id, choice_id);
+
+-- Busqueda de encuestas expiradas para archivar sus votos (VoteArchiveService)
+ALTER TABLE polls ADD INDEX idx_polls_expiration (expiration_date_time);
@@ -0,0 +1,2 @@
+-- Roles que la aplicacion asigna en el registro
+INSERT IGNORE INTO roles (name) VALUES ('ROLE_USER'), ('ROLE_ADMIN');
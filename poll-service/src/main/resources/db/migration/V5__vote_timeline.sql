@@ -0,0 +1,28 @@
+-- Votos por encuesta, opcion e intervalo de tiempo (m: minuto, h: hora, d: dia, en UTC) para la evolucion de
+-- una encuesta. VoteTimelineService suma cada voto nuevo en las tres resoluciones.
+CREATE TABLE vote_buckets (
+    poll_id      BIGINT   NOT NULL,
+    resolution   CHAR(1)  NOT NULL,
+    bucket_start DATETIME NOT NULL,
+    choice_id    BIGINT   NOT NULL,
+    vote_count   BIGINT   NOT NULL,
+    PRIMARY KEY (poll_id, resolution, bucket_start, choice_id)
+) ENGINE = InnoDB;
+
+-- Cubetas de los votos existentes, tanto de votes como de votes_archive
+INSERT INTO vote_buckets (poll_id, resolution, bucket_start, choice_id, vote_count)
+SELECT poll_id, 'm', DATE_FORMAT(created_at, '%Y-%m-%d %H:%i:00'), choice_id, COUNT(*)
+FROM (SELECT poll_id, choice_id, created_at FROM votes
+      UNION ALL
+      SELECT poll_id, choice_id, created_at FROM votes_archive) v
+GROUP BY poll_id, DATE_FORMAT(created_at, '%Y-%m-%d %H:%i:00'), choice_id;
+
+INSERT INTO vote_buckets (poll_id, resolution, bucket_start, choice_id, vote_count)
+SELECT poll_id, 'h', DATE_FORMAT(bucket_start, '%Y-%m-%d %H:00:00'), choice_id, SUM(vote_count)
+FROM vote_buckets WHERE resolution = 'm'
+GROUP BY poll_id, DATE_FORMAT(bucket_start, '%Y-%m-%d %H:00:00'), choice_id;
+
+INSERT INTO vote_buckets (poll_id, resolution, bucket_start, choice_id, vote_count)
+SELECT poll_id, 'd', DATE(bucket_start), choice_id, SUM(vote_count)
+FROM vote_buckets WHERE resolution = 'h'
+GROUP BY poll_id, DATE(bucket_start), choice_id;
@@ -0,0 +1,12 @@
+-- Tipo de encuesta (ver PollType); las existentes son de una sola opcion
+ALTER TABLE polls ADD COLUMN type VARCHAR(10) NOT NULL DEFAULT 'SINGLE';
+
+-- Orden de preferencia de cada voto de una encuesta RANKED, codificado con InstantRunoff.encode. La fila de votes
+-- (vote_id) guarda la primera preferencia. El recuento agrupa por (poll_id, ranking) solo con el indice
+CREATE TABLE ranked_ballots (
+    vote_id BIGINT NOT NULL,
+    poll_id BIGINT NOT NULL,
+    ranking INT    NOT NULL,
+    PRIMARY KEY (vote_id),
+    KEY idx_ranked_ballots_poll_ranking (poll_id, ranking)
+) ENGINE = InnoDB;
@@ -0,0 +1,8 @@
+-- Opciones marcadas en un voto de una encuesta MULTIPLE, como mascara de bits sobre sus posiciones (ver
+-- MultiSelectVoteService); NULL en el resto. choice_id guarda la primera opcion marcada
+ALTER TABLE votes ADD COLUMN selection TINYINT NULL;
+ALTER TABLE votes_archive ADD COLUMN selection TINYINT NULL;
+
+-- El recuento por opcion agrupa por (poll_id, selection) solo con el indice
+CREATE INDEX idx_votes_poll_selection ON votes (poll_id, selection);
+CREATE INDEX idx_votes_archive_poll_selection ON votes_archive (poll_id, selection);
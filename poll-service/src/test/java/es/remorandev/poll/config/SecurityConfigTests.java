@@ -0,0 +1,51 @@
+package es.remorandev.poll.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "app.rateLimit.routes.availability.permitsPerSecond=0.001",
+        "app.rateLimit.routes.availability.burst=2"
+})
+@AutoConfigureMockMvc
+class SecurityConfigTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void anonymousPublicReadsAreRateLimitedByIp() throws Exception {
+        // Sin Authorization: la atiende la cadena reducida de lecturas publicas
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(checkUsername("10.1.0.1"))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(checkUsername("10.1.0.1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"));
+
+        // Otra IP tiene su propia cubeta
+        mockMvc.perform(checkUsername("10.1.0.2"))
+                .andExpect(status().isOk());
+    }
+
+    private static MockHttpServletRequestBuilder checkUsername(String remoteAddr) {
+        return get("/api/user/checkUsernameAvailability")
+                .param("username", "nobody")
+                .with(request -> {
+                    request.setRemoteAddr(remoteAddr);
+                    return request;
+                });
+    }
+}
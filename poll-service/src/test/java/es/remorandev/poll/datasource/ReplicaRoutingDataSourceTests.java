@@ -0,0 +1,98 @@
+package es.remorandev.poll.datasource;
+
+import es.remorandev.poll.config.ReplicaProperties;
+import es.remorandev.poll.security.UserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.*;
+
+class ReplicaRoutingDataSourceTests {
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+
+    private DataSource primary;
+    private DataSource replica;
+    private DataSource brokenReplica;
+    private ReadYourWritesTracker tracker;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        replica = mock(DataSource.class);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        brokenReplica = mock(DataSource.class);
+        when(brokenReplica.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+        ReplicaProperties properties = new ReplicaProperties();
+        properties.setStickyWindowMs(60000);
+        tracker = new ReadYourWritesTracker(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void writesGoToPrimary() throws SQLException {
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(replica), tracker, 1000);
+
+        assertSame(primaryConnection, dataSource.getConnection());
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplica() throws SQLException {
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(replica), tracker, 1000);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertSame(replicaConnection, dataSource.getConnection());
+    }
+
+    @Test
+    void userWhoJustVotedReadsFromPrimary() throws SQLException {
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(replica), tracker, 1000);
+        UserPrincipal user = new UserPrincipal(7L, "Name", "user", "user@mail.com", "secret", Collections.emptyList());
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        tracker.markWrite(7L);
+
+        assertSame(primaryConnection, dataSource.getConnection());
+    }
+
+    @Test
+    void unavailableReplicaIsSkippedUntilRetry() throws SQLException {
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primary, Arrays.asList(brokenReplica, replica), tracker, 60000);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        for (int i = 0; i < 4; i++) {
+            assertSame(replicaConnection, dataSource.getConnection());
+        }
+        verify(brokenReplica, times(1)).getConnection();
+    }
+
+    @Test
+    void fallsBackToPrimaryWhenNoReplicaIsAvailable() throws SQLException {
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(brokenReplica), tracker, 60000);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertSame(primaryConnection, dataSource.getConnection());
+        assertSame(primaryConnection, dataSource.getConnection());
+        verify(brokenReplica, times(1)).getConnection();
+    }
+}
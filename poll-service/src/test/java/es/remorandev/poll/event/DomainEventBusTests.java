@@ -0,0 +1,116 @@
+package es.remorandev.poll.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DomainEventBusTests {
+    private DomainEventBus bus;
+
+    @AfterEach
+    void tearDown() {
+        if (bus != null) {
+            bus.shutdown();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void everyListenerReceivesEveryEventInPublicationOrderWhenTheRingWraps() throws InterruptedException {
+        int producers = 4;
+        int eventsPerProducer = 10000;
+        RecordingListener fast = new RecordingListener(producers * eventsPerProducer, 0);
+        RecordingListener slow = new RecordingListener(producers * eventsPerProducer, 1);
+        bus = new DomainEventBus(Arrays.asList(fast, slow), 64, null);
+        bus.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int producer = 0; producer < producers; producer++) {
+            long userId = producer;
+            Thread thread = new Thread(() -> {
+                for (long i = 0; i < eventsPerProducer; i++) {
+                    bus.publish(new VoteCast(i, 1L, userId, Instant.EPOCH, 0));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (RecordingListener listener : Arrays.asList(fast, slow)) {
+            assertTrue(listener.done.await(30, TimeUnit.SECONDS));
+            // Cada productor ve sus eventos en el orden en que los publico
+            long[] next = new long[producers];
+            for (VoteCast vote : listener.votes) {
+                assertEquals(next[(int) vote.getUserId()]++, vote.getPollId());
+            }
+            assertTrue(Arrays.stream(next).allMatch(count -> count == eventsPerProducer));
+        }
+        assertTrue(slow.largestBatch > 1);
+    }
+
+    @Test
+    void eventsPublishedInATransactionAreDeliveredAfterCommit() throws InterruptedException {
+        RecordingListener listener = new RecordingListener(1, 0);
+        bus = new DomainEventBus(Collections.singletonList(listener), 16, null);
+        bus.start();
+
+        TransactionSynchronizationManager.initSynchronization();
+        bus.publish(new PollExpired(7L, Instant.EPOCH));
+        assertFalse(listener.done.await(100, TimeUnit.MILLISECONDS));
+
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, listener.others);
+    }
+
+    private static class RecordingListener implements DomainEventListener {
+        private final List<VoteCast> votes = new ArrayList<>();
+        private final CountDownLatch done;
+        private final long delayMillis;
+        private volatile int others;
+        private int largestBatch;
+
+        RecordingListener(int expected, long delayMillis) {
+            this.done = new CountDownLatch(expected);
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void onEvents(List<DomainEvent> events) {
+            largestBatch = Math.max(largestBatch, events.size());
+            for (DomainEvent event : events) {
+                if (event instanceof VoteCast) {
+                    votes.add((VoteCast) event);
+                } else {
+                    others++;
+                }
+                done.countDown();
+            }
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package es.remorandev.poll.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VoteJournalTests {
+    private static final Logger logger = LoggerFactory.getLogger(VoteJournalTests.class);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAreReplayedInOrderAcrossSegmentsAndAfterReopening() throws IOException {
+        VoteJournal journal = new VoteJournal(directory, 100, null);
+        for (long i = 0; i < 250; i++) {
+            journal.append(i, i * 10, i * 100, i * 1000, (int) (i % 64));
+        }
+        journal.close();
+
+        VoteJournal reopened = new VoteJournal(directory, 100, null);
+        for (long i = 250; i < 260; i++) {
+            reopened.append(i, i * 10, i * 100, i * 1000, (int) (i % 64));
+        }
+
+        List<Long> pollIds = new ArrayList<>();
+        VoteJournal.ReplayResult result = reopened.replay((pollId, choiceId, userId, votedAtMillis, selection) -> {
+            assertEquals(pollId * 10, choiceId);
+            assertEquals(pollId * 100, userId);
+            assertEquals(pollId * 1000, votedAtMillis);
+            assertEquals(pollId % 64, selection);
+            pollIds.add(pollId);
+        });
+
+        assertEquals(3, result.getSegments());
+        assertEquals(260, result.getRecords());
+        assertEquals(0, result.getCorruptRecords());
+        for (int i = 0; i < pollIds.size(); i++) {
+            assertEquals(i, pollIds.get(i).longValue());
+        }
+    }
+
+    @Test
+    void corruptAndTornRecordsAreSkipped() throws IOException {
+        VoteJournal journal = new VoteJournal(directory, 100, null);
+        for (long i = 0; i < 5; i++) {
+            journal.append(i, 1, 1, 1, 0);
+        }
+        journal.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve(String.format("votes-%020d.journal", 0)).toFile(), "rw")) {
+            // Un bit cambiado en el pollId del tercer registro
+            file.seek(2 * VoteJournal.RECORD_SIZE + 15);
+            file.write(file.readByte() ^ 1);
+            // Sexto registro a medias: la marca llego al disco pero el resto no
+            file.seek(5 * VoteJournal.RECORD_SIZE);
+            file.writeInt(0x564F5431);
+        }
+
+        VoteJournal reopened = new VoteJournal(directory, 100, null);
+        reopened.append(5, 1, 1, 1, 0);
+
+        List<Long> pollIds = new ArrayList<>();
+        VoteJournal.ReplayResult result = reopened.replay((pollId, choiceId, userId, votedAtMillis, selection) -> pollIds.add(pollId));
+
+        assertEquals(5, result.getRecords());
+        assertEquals(2, result.getCorruptRecords());
+        assertEquals(5, pollIds.get(4).longValue());
+    }
+
+    @Test
+    void appendAndReplayThroughput() throws IOException {
+        int records = 1_000_000;
+        VoteJournal journal = new VoteJournal(directory, 1 << 18, null);
+
+        long start = System.nanoTime();
+        for (long i = 0; i < records; i++) {
+            journal.append(i & 1023, i & 3, i, i, 0);
+        }
+        journal.force();
+        long appendNanos = System.nanoTime() - start;
+
+        long[] counts = new long[4];
+        start = System.nanoTime();
+        VoteJournal.ReplayResult result = journal.replay((pollId, choiceId, userId, votedAtMillis, selection) -> counts[(int) choiceId]++);
+        long replayNanos = System.nanoTime() - start;
+
+        assertEquals(records, result.getRecords());
+        assertEquals(4, result.getSegments());
+        assertEquals(records / 4, counts[3]);
+        logger.info("Vote journal: {} records appended at {} records/s (with force), replayed at {} records/s",
+                records, records * 1_000_000_000L / appendNanos, records * 1_000_000_000L / replayNanos);
+    }
+}
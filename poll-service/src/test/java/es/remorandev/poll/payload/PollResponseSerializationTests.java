@@ -0,0 +1,110 @@
+package es.remorandev.poll.payload;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara el tamaño (sin comprimir y con gzip) de paginas de encuestas serializadas en JSON, Smile y CBOR,
+ * con la misma configuracion de Jackson que la aplicacion.
+ */
+class PollResponseSerializationTests {
+    private static final int[] PAGE_SIZES = {1, 10, 30, 50};
+
+    private final ObjectMapper json = mapper(new JsonFactory());
+    private final ObjectMapper smile = mapper(new SmileFactory());
+    private final ObjectMapper cbor = mapper(new CBORFactory());
+
+    @Test
+    void binaryFormatsAreSmallerAndCarryTheSameContent() throws IOException {
+        for (int pageSize : PAGE_SIZES) {
+            PagedResponse<PollResponse> page = page(pageSize);
+            byte[] jsonBytes = json.writeValueAsBytes(page);
+            byte[] smileBytes = smile.writeValueAsBytes(page);
+            byte[] cborBytes = cbor.writeValueAsBytes(page);
+
+            assertTrue(smileBytes.length < jsonBytes.length, "smile, page size " + pageSize);
+            assertTrue(cborBytes.length < jsonBytes.length, "cbor, page size " + pageSize);
+            assertEquals(json.readTree(jsonBytes), smile.readTree(smileBytes));
+            assertEquals(json.readTree(jsonBytes), cbor.readTree(cborBytes));
+        }
+    }
+
+    @Test
+    void gzipLeavesAllFormatsAtAboutTheSameSize() throws IOException {
+        for (int pageSize : PAGE_SIZES) {
+            PagedResponse<PollResponse> page = page(pageSize);
+            int jsonGzip = gzip(json.writeValueAsBytes(page)).length;
+
+            // Comprimidas, Smile y CBOR apenas ganan a JSON: la ventaja es no tener que comprimir
+            for (ObjectMapper binary : new ObjectMapper[]{smile, cbor}) {
+                int binaryGzip = gzip(binary.writeValueAsBytes(page)).length;
+                assertTrue(Math.abs(binaryGzip - jsonGzip) <= jsonGzip / 10,
+                        binary.getFactory().getFormatName() + " gzip " + binaryGzip + " vs json " + jsonGzip + ", page size " + pageSize);
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static ObjectMapper mapper(JsonFactory factory) {
+        return Jackson2ObjectMapperBuilder.json()
+                .factory(factory)
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .timeZone(TimeZone.getTimeZone("UTC"))
+                .build();
+    }
+
+    private static PagedResponse<PollResponse> page(int size) {
+        Instant now = Instant.parse("2020-01-15T10:00:00Z");
+        List<PollResponse> polls = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            PollResponse poll = new PollResponse();
+            poll.setId(1000L + i);
+            poll.setQuestion("What is your favourite programming language for backend number " + i + "?");
+            poll.setCreatedBy(new UserSummary(10L + i, "user" + i, "User Number " + i));
+            poll.setCreationDateTyme(now.minus(Duration.ofHours(i)));
+            poll.setExpirationDateTime(now.plus(Duration.ofDays(1)));
+            poll.setExpired(false);
+
+            List<ChoiceResponse> choices = new ArrayList<>();
+            String[] texts = {"Java", "Kotlin", "Go", "Rust"};
+            for (int c = 0; c < texts.length; c++) {
+                ChoiceResponse choice = new ChoiceResponse();
+                choice.setId(4000L + i * 4 + c);
+                choice.setText(texts[c]);
+                choice.setVoteCount((i * 37 + c * 11) % 500);
+                choices.add(choice);
+            }
+            poll.setChoices(choices);
+            poll.setTotalVotes(choices.stream().mapToLong(ChoiceResponse::getVoteCount).sum());
+            if (i % 3 == 0) {
+                poll.setSelectedChoice(choices.get(0).getId());
+            }
+            polls.add(poll);
+        }
+        return new PagedResponse<>(polls, 0, size, 500, (500 + size - 1) / size, false);
+    }
+}
@@ -0,0 +1,427 @@
+package es.remorandev.poll.repository;
+
+import es.remorandev.poll.model.Poll;
+import es.remorandev.poll.model.Vote;
+import es.remorandev.poll.service.MultiSelectVoteService;
+import es.remorandev.poll.service.RankedVoteService;
+import es.remorandev.poll.service.VoteTimelineService;
+import es.remorandev.poll.tally.InstantRunoff;
+import es.remorandev.poll.util.KeysetCursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ejecuta las consultas de PollRepository, VoteRepository, UserRepository y de los servicios de encuestas RANKED,
+ * MULTIPLE y de evolucion contra la base de datos local (polling_app_test, creada por las migraciones), repite cada
+ * sentencia capturada con EXPLAIN y los mismos parametros, y falla si alguna recorre una tabla entera.
+ *
+ * Quedan fuera las consultas de arranque y mantenimiento que agregan tablas enteras a proposito (linea base y
+ * recarga de los recuentos, exportacion, archivado).
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:mysql://localhost:3307/polling_app_test?createDatabaseIfNotExist=true&rewriteBatchedStatements=true&useSSL=false&serverTimezone=UTC&useLegacyDatetimeCode=false",
+        "logging.level.org.hibernate.SQL=INFO"
+})
+class QueryPlanTests {
+    private static final int USERS = 50;
+    private static final int POLLS = 20000;
+    private static final int CHOICES_PER_POLL = 3;
+    private static final int VOTES_PER_POLL = 4;
+    private static final int ARCHIVED_POLLS = 5000;
+    // Las encuestas con id % 10 == RANKED_POLLS son RANKED y las que dan MULTIPLE_POLLS, MULTIPLE
+    private static final int RANKED_POLLS = 1;
+    private static final int MULTIPLE_POLLS = 2;
+
+    @Autowired
+    private PollRepository pollRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RankedVoteService rankedVoteService;
+
+    @Autowired
+    private MultiSelectVoteService multiSelectVoteService;
+
+    @Autowired
+    private VoteTimelineService voteTimelineService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StatementRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        seedIfSparse();
+        recorder.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        recorder.stop();
+    }
+
+    @Test
+    void pollQueriesUseIndexes() {
+        Long userId = 1L;
+        Long pollId = (long) POLLS / 2;
+        Instant createdAt = Instant.now().minus(POLLS / 2, ChronoUnit.MINUTES);
+
+        transactionTemplate.execute(status -> {
+            pollRepository.findAll(PageRequest.of(0, 20, Sort.Direction.DESC, "createdAt"))
+                    .forEach(poll -> poll.getChoices().size());
+            pollRepository.findByCreatedBy(userId, PageRequest.of(0, 20, Sort.Direction.DESC, "createdAt"));
+            pollRepository.countByCreatedBy(userId);
+            pollRepository.findLatestByCreatedBy(userId, PageRequest.of(0, 21));
+            pollRepository.findByCreatedByBefore(userId, createdAt, pollId, PageRequest.of(0, 21));
+            pollRepository.findByIdIn(Arrays.asList(1L, 2L, 3L));
+            pollRepository.findByIdIn(Arrays.asList(1L, 2L, 3L), Sort.by(Sort.Direction.DESC, "createdAt"));
+            pollRepository.findById(pollId);
+            pollRepository.findVersionById(pollId);
+            pollRepository.findAllVersions(PageRequest.of(1, 20, Sort.Direction.DESC, "createdAt"));
+            pollRepository.findLatestCreatedAt();
+            userRepository.findByUsername("plan" + userId);
+            userRepository.findByIdIn(Arrays.asList(1L, 2L, 3L));
+            return null;
+        });
+        pollRepository.incrementVersion(pollId, Instant.now());
+
+        assertNoFullScans();
+    }
+
+    @Test
+    void voteQueriesUseIndexes() {
+        Long userId = 2L;
+        List<Long> pollIds = Arrays.asList(1L, 2L, 3L, (long) POLLS);
+
+        transactionTemplate.execute(status -> {
+            voteRepository.countByPollIdInGroupByChoiceId(pollIds);
+            voteRepository.countByPollIdGroupByChoiceId(1L);
+            voteRepository.findByUserIdAndPollIdIn(userId, pollIds);
+            voteRepository.findByUserIdAndPollId(userId, 1L);
+            voteRepository.countByUserId(userId);
+            voteRepository.findVotedPollsByUserId(userId, null, 21);
+            voteRepository.findVotedPollsByUserId(userId, new KeysetCursor(Instant.now().minus(1, ChronoUnit.DAYS), 10L), 21);
+            return null;
+        });
+
+        assertNoFullScans();
+    }
+
+    @Test
+    void rankedMultipleAndTimelineQueriesUseIndexes() {
+        long rankedPollId = POLLS - 10 + RANKED_POLLS;
+        long multiplePollId = POLLS - 10 + MULTIPLE_POLLS;
+
+        transactionTemplate.execute(status -> {
+            Poll ranked = pollRepository.findById(rankedPollId).get();
+            Poll multiple = pollRepository.findById(multiplePollId).get();
+            List<Poll> polls = Arrays.asList(ranked, multiple);
+
+            rankedVoteService.getResults(polls);
+            // El primer voto sembrado de cada encuesta es del usuario pollId % USERS + 1
+            Vote vote = voteRepository.findByUserIdAndPollId(rankedPollId % USERS + 1, rankedPollId);
+            rankedVoteService.getRanking(ranked, vote.getId());
+            rankedVoteService.getRankings(polls, Collections.singletonMap(rankedPollId, vote));
+            multiSelectVoteService.countByPolls(polls);
+            multiSelectVoteService.choiceIdsByPoll(Arrays.asList(rankedPollId, multiplePollId));
+            for (VoteTimelineService.Resolution resolution : VoteTimelineService.Resolution.values()) {
+                voteTimelineService.getTimeline(multiplePollId, Arrays.asList(1L, 2L, 3L), resolution, Instant.now());
+            }
+            return null;
+        });
+
+        assertNoFullScans();
+    }
+
+    private void assertNoFullScans() {
+        List<StatementRecorder.Statement> statements = recorder.getStatements();
+        assertFalse(statements.isEmpty(), "No se ha capturado ninguna consulta");
+
+        List<String> fullScans = new ArrayList<>();
+        try (Connection connection = recorder.getTarget().getConnection()) {
+            for (StatementRecorder.Statement statement : statements) {
+                for (String table : explainFullScans(connection, statement)) {
+                    fullScans.add(table + ": " + statement.sql);
+                }
+            }
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        assertTrue(fullScans.isEmpty(), "Consultas que recorren tablas enteras:\n" + String.join("\n", fullScans));
+    }
+
+    private List<String> explainFullScans(Connection connection, StatementRecorder.Statement statement) throws Exception {
+        List<String> tables = new ArrayList<>();
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + statement.sql)) {
+            for (Map.Entry<Integer, Object> parameter : statement.parameters.entrySet()) {
+                if (parameter.getValue() == null) {
+                    explain.setNull(parameter.getKey(), Types.NULL);
+                } else {
+                    explain.setObject(parameter.getKey(), parameter.getValue());
+                }
+            }
+            try (ResultSet plan = explain.executeQuery()) {
+                while (plan.next()) {
+                    String table = plan.getString("table");
+                    // Las tablas derivadas (<derivedN>, <unionN,M>) se materializan a partir de otras filas del plan
+                    if ("ALL".equals(plan.getString("type")) && table != null && !table.startsWith("<")) {
+                        tables.add(table);
+                    }
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Con pocas filas el optimizador prefiere recorrer la tabla aunque exista un indice (por ejemplo para el
+     * ORDER BY created_at DESC LIMIT del feed), asi que la base de datos de pruebas se rellena la primera vez
+     * con un volumen suficiente.
+     */
+    private void seedIfSparse() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Integer polls = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM polls", Integer.class);
+        if (polls == null || polls < POLLS) {
+            seedPolls(jdbcTemplate);
+        }
+        Integer ballots = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ranked_ballots", Integer.class);
+        if (ballots == null || ballots == 0) {
+            seedPollTypes(jdbcTemplate);
+        }
+    }
+
+    private void seedPolls(JdbcTemplate jdbcTemplate) {
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        int period = Integer.parseInt(now.toString().substring(0, 7).replace("-", ""));
+
+        List<Object[]> users = new ArrayList<>();
+        for (long id = 1; id <= USERS; id++) {
+            users.add(new Object[]{id, "Plan " + id, "plan" + id, "plan" + id + "@example.com", ts(now), ts(now)});
+        }
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO users (id, name, username, email, password, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, 'x', ?, ?)", users);
+
+        List<Object[]> pollRows = new ArrayList<>();
+        List<Object[]> choiceRows = new ArrayList<>();
+        List<Object[]> voteRows = new ArrayList<>();
+        List<Object[]> archivedRows = new ArrayList<>();
+        for (long pollId = 1; pollId <= POLLS; pollId++) {
+            Timestamp createdAt = ts(now.minus(pollId, ChronoUnit.MINUTES));
+            long createdBy = pollId % USERS + 1;
+            pollRows.add(new Object[]{pollId, "Pregunta " + pollId, createdBy, createdBy, createdAt, createdAt,
+                    ts(now.plus(1, ChronoUnit.DAYS))});
+            for (int c = 0; c < CHOICES_PER_POLL; c++) {
+                choiceRows.add(new Object[]{(pollId - 1) * CHOICES_PER_POLL + c + 1, "Opcion " + c, pollId});
+            }
+            for (int v = 0; v < VOTES_PER_POLL; v++) {
+                long userId = (pollId + v) % USERS + 1;
+                long choiceId = (pollId - 1) * CHOICES_PER_POLL + v % CHOICES_PER_POLL + 1;
+                if (pollId <= ARCHIVED_POLLS) {
+                    archivedRows.add(new Object[]{pollId, userId, choiceId, createdAt});
+                } else {
+                    voteRows.add(new Object[]{pollId, userId, choiceId, period, createdAt, createdAt});
+                }
+            }
+        }
+
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO polls (id, question, created_by, updated_by, created_at, updated_at, " +
+                "expiration_date_time, version) VALUES (?, ?, ?, ?, ?, ?, ?, 0)", pollRows);
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO choices (id, text, poll_id) VALUES (?, ?, ?)", choiceRows);
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO votes (poll_id, user_id, choice_id, poll_period, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", voteRows);
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO votes_archive (poll_id, user_id, choice_id, created_at) " +
+                "VALUES (?, ?, ?, ?)", archivedRows);
+        jdbcTemplate.execute("ANALYZE TABLE users, polls, choices, votes, votes_archive");
+    }
+
+    /**
+     * Convierte parte de las encuestas sembradas en RANKED y MULTIPLE y rellena las tablas que se anadieron despues
+     * (ranked_ballots, votes.selection, vote_buckets) a partir de sus votos.
+     */
+    private void seedPollTypes(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("UPDATE polls SET type = 'RANKED' WHERE id % 10 = ? AND id > ?", RANKED_POLLS, ARCHIVED_POLLS);
+        jdbcTemplate.update("UPDATE polls SET type = 'MULTIPLE' WHERE id % 10 = ?", MULTIPLE_POLLS);
+
+        // La primera preferencia es la opcion del voto y el resto siguen en orden
+        int[] rankings = new int[CHOICES_PER_POLL];
+        for (int first = 0; first < CHOICES_PER_POLL; first++) {
+            int[] positions = new int[CHOICES_PER_POLL];
+            for (int i = 0; i < CHOICES_PER_POLL; i++) {
+                positions[i] = (first + i) % CHOICES_PER_POLL;
+            }
+            rankings[first] = InstantRunoff.encode(positions);
+        }
+        jdbcTemplate.update("INSERT IGNORE INTO ranked_ballots (vote_id, poll_id, ranking) " +
+                        "SELECT id, poll_id, ELT((choice_id - 1) % 3 + 1, ?, ?, ?) FROM votes WHERE poll_id % 10 = ?",
+                rankings[0], rankings[1], rankings[2], RANKED_POLLS);
+
+        // Una opcion marcada por voto, la de choice_id
+        for (String table : Arrays.asList("votes", "votes_archive")) {
+            jdbcTemplate.update("UPDATE " + table + " SET selection = 1 << ((choice_id - 1) % 3) WHERE poll_id % 10 = ?",
+                    MULTIPLE_POLLS);
+        }
+
+        jdbcTemplate.update("INSERT IGNORE INTO vote_buckets (poll_id, resolution, bucket_start, choice_id, vote_count) " +
+                "SELECT poll_id, 'm', DATE_FORMAT(created_at, '%Y-%m-%d %H:%i:00'), choice_id, COUNT(*) " +
+                "FROM (SELECT poll_id, choice_id, created_at FROM votes " +
+                "UNION ALL SELECT poll_id, choice_id, created_at FROM votes_archive) v " +
+                "GROUP BY poll_id, DATE_FORMAT(created_at, '%Y-%m-%d %H:%i:00'), choice_id");
+        jdbcTemplate.update("INSERT IGNORE INTO vote_buckets (poll_id, resolution, bucket_start, choice_id, vote_count) " +
+                "SELECT poll_id, 'h', DATE_FORMAT(bucket_start, '%Y-%m-%d %H:00:00'), choice_id, SUM(vote_count) " +
+                "FROM vote_buckets WHERE resolution = 'm' GROUP BY poll_id, DATE_FORMAT(bucket_start, '%Y-%m-%d %H:00:00'), choice_id");
+        jdbcTemplate.update("INSERT IGNORE INTO vote_buckets (poll_id, resolution, bucket_start, choice_id, vote_count) " +
+                "SELECT poll_id, 'd', DATE(bucket_start), choice_id, SUM(vote_count) " +
+                "FROM vote_buckets WHERE resolution = 'h' GROUP BY poll_id, DATE(bucket_start), choice_id");
+        jdbcTemplate.execute("ANALYZE TABLE polls, votes, votes_archive, ranked_ballots, vote_buckets");
+    }
+
+    private static Timestamp ts(Instant instant) {
+        return Timestamp.from(instant);
+    }
+
+    @TestConfiguration
+    static class RecorderConfig {
+
+        @Bean
+        static StatementRecorder statementRecorder() {
+            return new StatementRecorder();
+        }
+    }
+
+    /**
+     * Envuelve el DataSource de la aplicacion y guarda las sentencias preparadas (con sus parametros) que se
+     * ejecutan mientras esta activo.
+     */
+    static class StatementRecorder implements BeanPostProcessor {
+        private final List<Statement> statements = new CopyOnWriteArrayList<>();
+        private volatile boolean recording;
+        private DataSource target;
+
+        static class Statement {
+            final String sql;
+            final Map<Integer, Object> parameters;
+
+            Statement(String sql, Map<Integer, Object> parameters) {
+                this.sql = sql;
+                this.parameters = parameters;
+            }
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource) || !"dataSource".equals(beanName)) {
+                return bean;
+            }
+            target = (DataSource) bean;
+            return proxy(DataSource.class, target, (method, args, result) ->
+                    method.getName().equals("getConnection") ? proxyConnection((Connection) result) : result);
+        }
+
+        void start() {
+            statements.clear();
+            recording = true;
+        }
+
+        void stop() {
+            recording = false;
+        }
+
+        List<Statement> getStatements() {
+            return new ArrayList<>(statements);
+        }
+
+        DataSource getTarget() {
+            return target;
+        }
+
+        private Connection proxyConnection(Connection connection) {
+            return proxy(Connection.class, connection, (method, args, result) -> {
+                if (method.getName().equals("prepareStatement") && isRecordable((String) args[0])) {
+                    return proxyStatement((PreparedStatement) result, (String) args[0]);
+                }
+                return result;
+            });
+        }
+
+        private PreparedStatement proxyStatement(PreparedStatement statement, String sql) {
+            Map<Integer, Object> parameters = new TreeMap<>();
+            return proxy(PreparedStatement.class, statement, (method, args, result) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                } else if (name.startsWith("execute") && recording) {
+                    statements.add(new Statement(sql, new TreeMap<>(parameters)));
+                } else if (name.equals("clearParameters")) {
+                    parameters.clear();
+                }
+                return result;
+            });
+        }
+
+        private static boolean isRecordable(String sql) {
+            String start = sql.trim().toLowerCase();
+            return start.startsWith("select") || start.startsWith("update") || start.startsWith("delete");
+        }
+
+        interface ResultHandler {
+            Object handle(Method method, Object[] args, Object result) throws Exception;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, ResultHandler handler) {
+            InvocationHandler invocationHandler = (proxy, method, args) -> {
+                try {
+                    return handler.handle(method, args, method.invoke(target, args));
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            };
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package es.remorandev.poll.security;
+
+import es.remorandev.poll.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTests {
+
+    @Test
+    void newClientsGetTheirOwnBucketWhenTheMapIsFull() {
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setPattern("/api/**");
+        route.setKey(RateLimitProperties.KeyType.IP);
+        route.setPermitsPerSecond(0.001);
+        route.setBurst(1);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setMaxBuckets(2);
+        properties.getRoutes().put("api", route);
+        RateLimiter rateLimiter = new RateLimiter(properties, new SimpleMeterRegistry());
+
+        // Dos clientes que agotan su cubeta llenan el mapa
+        for (String ip : new String[]{"10.0.0.1", "10.0.0.2"}) {
+            assertEquals(0, rateLimiter.tryAcquire(request(ip), null));
+            assertTrue(rateLimiter.tryAcquire(request(ip), null) > 0);
+        }
+
+        // Cada cliente nuevo sigue teniendo su propia rafaga en lugar de compartir una cubeta comun
+        for (int i = 3; i < 10; i++) {
+            assertEquals(0, rateLimiter.tryAcquire(request("10.0.0." + i), null));
+        }
+        assertTrue(rateLimiter.tryAcquire(request("10.0.0.9"), null) > 0);
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/polls");
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+}
@@ -0,0 +1,76 @@
+package es.remorandev.poll.service;
+
+import es.remorandev.poll.payload.ImportReport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Importa contra la base de datos local (polling_app_test, creada por las migraciones).
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:mysql://localhost:3307/polling_app_test?createDatabaseIfNotExist=true&rewriteBatchedStatements=true&useSSL=false&serverTimezone=UTC&useLegacyDatetimeCode=false"
+})
+class BulkImportServiceTests {
+    private static final String PASSWORD_HASH = "$2a$10$N9qo8uLOickgx2ZMRZoMyeIjZAgcfl7p92ldGxad68LJZdL17lhWy";
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void duplicatesAreSkippedInsteadOfAbortingTheImport() throws Exception {
+        jdbcTemplate.update("INSERT IGNORE INTO roles (id, name) VALUES (1, 'ROLE_USER'), (2, 'ROLE_ADMIN')");
+        String prefix = "d" + ThreadLocalRandom.current().nextInt(100000);
+        Instant now = Instant.now();
+        jdbcTemplate.update("INSERT INTO users (name, username, email, password, created_at, updated_at) VALUES (?, ?, ?, ?, NOW(), NOW())",
+                "Taken", prefix + "taken", prefix + "taken@x.es", PASSWORD_HASH);
+
+        String createdAt = now.minus(1, ChronoUnit.HOURS).toString();
+        String input = String.join("\n",
+                user(1, prefix + "a", prefix + "a@x.es"),
+                user(2, prefix + "b", (prefix + "A@X.ES").toUpperCase()),
+                user(3, (prefix + "a").toUpperCase(), prefix + "c@x.es"),
+                user(4, prefix + "taken", prefix + "d@x.es"),
+                user(5, prefix + "e", prefix + "e@x.es"),
+                "{\"type\":\"poll\",\"id\":1,\"createdBy\":1,\"question\":\"Duplicates?\",\"choices\":[\"A\",\"B\"]," +
+                        "\"createdAt\":\"" + createdAt + "\",\"expirationDateTime\":\"" + now.plus(1, ChronoUnit.DAYS) + "\"}",
+                vote(1, 0, createdAt),
+                vote(1, 1, createdAt),
+                vote(5, 1, createdAt));
+
+        ImportReport report = bulkImportService.importRecords(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+
+        assertNull(report.getAbortedBy());
+        assertEquals(2, report.getUsers());
+        assertEquals(1, report.getPolls());
+        assertEquals(2, report.getVotes());
+        assertEquals(4, report.getSkipped());
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE username IN (?, ?)", Integer.class, prefix + "a", prefix + "e"));
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM votes v JOIN users u ON u.id = v.user_id WHERE u.username IN (?, ?)",
+                Integer.class, prefix + "a", prefix + "e"));
+    }
+
+    private static String user(int id, String username, String email) {
+        return "{\"type\":\"user\",\"id\":" + id + ",\"name\":\"User " + id + "\",\"username\":\"" + username + "\"," +
+                "\"email\":\"" + email + "\",\"passwordHash\":\"" + PASSWORD_HASH + "\"}";
+    }
+
+    private static String vote(int user, int choice, String createdAt) {
+        return "{\"type\":\"vote\",\"poll\":1,\"user\":" + user + ",\"choice\":" + choice + ",\"createdAt\":\"" + createdAt + "\"}";
+    }
+}
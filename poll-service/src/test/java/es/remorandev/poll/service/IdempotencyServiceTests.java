@@ -0,0 +1,108 @@
+package es.remorandev.poll.service;
+
+import es.remorandev.poll.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyServiceTests {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger slowRuns = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        this.release.countDown();
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    void inFlightRequestsAreNotEvictedWhenTheStoreIsFull() throws Exception {
+        IdempotencyService service = service(60000, 1);
+        Future<String> first = startSlow(service);
+
+        // No hay ninguna terminada que descartar: la peticion nueva se rechaza en lugar de echar a la que esta en curso
+        assertThrows(ServiceUnavailableException.class, () -> service.execute("other", 1L, "b", () -> "other"));
+
+        Future<String> retry = this.executor.submit(() -> service.execute("slow", 1L, "slow", this::slowAction));
+        this.release.countDown();
+        assertEquals("slow", first.get(5, TimeUnit.SECONDS));
+        assertEquals("slow", retry.get(5, TimeUnit.SECONDS));
+        assertEquals(1, this.slowRuns.get());
+    }
+
+    @Test
+    void theOldestCompletedRequestIsEvictedFirst() throws Exception {
+        IdempotencyService service = service(60000, 2);
+        AtomicInteger runs = new AtomicInteger();
+        service.execute("done", 1L, "a", runs::incrementAndGet);
+        Future<String> slow = startSlow(service);
+
+        service.execute("new", 1L, "c", () -> "new");
+
+        // "done" ha hecho sitio y se vuelve a ejecutar; "slow" sigue agrupando los reintentos
+        assertEquals(2, service.execute("done", 1L, "a", runs::incrementAndGet));
+        Future<String> retry = this.executor.submit(() -> service.execute("slow", 1L, "slow", this::slowAction));
+        this.release.countDown();
+        assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+        assertEquals("slow", retry.get(5, TimeUnit.SECONDS));
+        assertEquals(1, this.slowRuns.get());
+    }
+
+    @Test
+    void expiredResultsBehindAnInFlightRequestAreEvicted() throws Exception {
+        IdempotencyService service = service(50, 100);
+        Future<String> slow = startSlow(service);
+        AtomicInteger runs = new AtomicInteger();
+        service.execute("done", 1L, "b", runs::incrementAndGet);
+
+        Thread.sleep(100);
+        service.evictExpired();
+
+        // Solo queda la que esta en curso
+        assertEquals(1, ((Map<?, ?>) ReflectionTestUtils.getField(service, "entries")).size());
+        Future<String> retry = this.executor.submit(() -> service.execute("slow", 1L, "slow", this::slowAction));
+        this.release.countDown();
+        assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+        assertEquals("slow", retry.get(5, TimeUnit.SECONDS));
+        assertEquals(1, this.slowRuns.get());
+    }
+
+    private Future<String> startSlow(IdempotencyService service) throws InterruptedException {
+        Future<String> future = this.executor.submit(() -> service.execute("slow", 1L, "slow", this::slowAction));
+        assertTrue(this.started.await(5, TimeUnit.SECONDS));
+        return future;
+    }
+
+    private String slowAction() {
+        this.slowRuns.incrementAndGet();
+        this.started.countDown();
+        try {
+            this.release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return "slow";
+    }
+
+    private static IdempotencyService service(long ttlMs, int maxEntries) {
+        IdempotencyService service = new IdempotencyService();
+        ReflectionTestUtils.setField(service, "ttlMs", ttlMs);
+        ReflectionTestUtils.setField(service, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(service, "waitTimeoutMs", 5000L);
+        return service;
+    }
+}
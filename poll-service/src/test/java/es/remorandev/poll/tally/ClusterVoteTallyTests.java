@@ -0,0 +1,285 @@
+package es.remorandev.poll.tally;
+
+import es.remorandev.poll.model.ChoiceVoteCount;
+import es.remorandev.poll.model.Choice;
+import es.remorandev.poll.model.Poll;
+import es.remorandev.poll.model.TallyDelta;
+import es.remorandev.poll.model.Vote;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ClusterVoteTallyTests {
+    private static final long POLL = 1L;
+    private static final long RED = 10L;
+    private static final long BLUE = 11L;
+    // Mayor que lo que tarda cada prueba: ningun voto contado se descarta por antiguo
+    private static final long COMMIT_LAG_MS = 60000;
+
+    private InMemoryTallyTransport.Store store;
+    private long nextVoteId;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryTallyTransport.Store();
+        nextVoteId = 1000;
+    }
+
+    @Test
+    void nodesConvergeAfterSynchronizing() {
+        ClusterVoteTally a = node("a");
+        ClusterVoteTally b = node("b");
+
+        vote(a, RED);
+        vote(a, RED);
+        vote(b, RED);
+        vote(b, BLUE);
+
+        assertEquals(2L, counts(a).get(RED));
+        assertEquals(1L, counts(b).get(RED));
+
+        a.synchronize();
+        b.synchronize();
+        a.synchronize();
+
+        assertEquals(counts(a), counts(b));
+        assertEquals(3L, counts(a).get(RED));
+        assertEquals(1L, counts(a).get(BLUE));
+    }
+
+    @Test
+    void repeatedAndStaleDeliveriesDoNotChangeTheCount() {
+        ClusterVoteTally a = node("a");
+        ClusterVoteTally b = node("b");
+
+        vote(b, RED);
+        vote(b, RED);
+        b.synchronize();
+        a.synchronize();
+
+        store.deliverAgain(new TallyDelta("b", POLL, RED, 1));
+        store.deliverAgain(new TallyDelta("b", POLL, RED, 2));
+        a.synchronize();
+
+        assertEquals(2L, counts(a).get(RED));
+    }
+
+    @Test
+    void restartedNodeContinuesFromItsPublishedCounter() {
+        ClusterVoteTally a = node("a");
+        vote(a, RED);
+        vote(a, RED);
+        a.shutdown();
+
+        ClusterVoteTally restarted = node("a");
+        vote(restarted, RED);
+        restarted.synchronize();
+
+        ClusterVoteTally b = node("b");
+        assertEquals(3L, counts(b).get(RED));
+    }
+
+    @Test
+    void votesCoveredByTheBaselineAreNotCountedTwice() {
+        store.baselineMaxVoteId = 500;
+        store.deliverAgain(new TallyDelta(JdbcTallyTransport.BASELINE_NODE, POLL, RED, 7));
+        ClusterVoteTally a = node("a");
+
+        Vote old = vote(499, RED);
+        a.recordVote(old);
+        vote(a, RED);
+
+        assertEquals(8L, counts(a).get(RED));
+    }
+
+    @Test
+    void revisionChangesWhenRemoteCountsAreMerged() {
+        ClusterVoteTally a = node("a");
+        ClusterVoteTally b = node("b");
+        long before = a.revision(POLL);
+
+        vote(b, RED);
+        b.synchronize();
+        a.synchronize();
+
+        assertNotEquals(before, a.revision(POLL));
+    }
+
+    @Test
+    void rebuildingTheBaselineRecoversTheVotesOfANodeThatDiedBeforePublishing() {
+        ClusterVoteTally a = node("a");
+        ClusterVoteTally b = node("b");
+
+        // a cae sin sincronizar
+        vote(a, RED);
+        vote(a, RED);
+        vote(b, BLUE);
+        b.synchronize();
+
+        store.rebuild();
+        // b cuenta un voto nuevo antes de enterarse de la reconstruccion
+        vote(b, RED);
+        b.synchronize();
+
+        assertEquals(3L, counts(b).get(RED));
+        assertEquals(1L, counts(b).get(BLUE));
+        ClusterVoteTally c = node("c");
+        assertEquals(counts(b), counts(c));
+    }
+
+    @Test
+    void nodesThatMissedARebuildCannotPublishOldCounters() {
+        ClusterVoteTally a = node("a");
+        vote(a, RED);
+        vote(a, RED);
+
+        store.rebuild();
+        a.shutdown();
+
+        ClusterVoteTally b = node("b");
+        assertEquals(2L, counts(b).get(RED));
+    }
+
+    @Test
+    void votesLeftOutOfARebuildByTheCommitLagAreStillCounted() {
+        ClusterVoteTally a = node("a");
+        vote(a, RED);
+        long settled = nextVoteId - 1;
+        vote(a, RED);
+        vote(a, BLUE);
+        // La linea base no ha cambiado; aun asi los votos recientes se guardan
+        a.synchronize();
+
+        // La reconstruccion solo incluye el primer voto, el unico creado hace mas de commitLagMs
+        store.rebuild(settled);
+        a.synchronize();
+
+        assertEquals(2L, counts(a).get(RED));
+        assertEquals(1L, counts(a).get(BLUE));
+        assertEquals(counts(a), counts(node("b")));
+    }
+
+    private ClusterVoteTally node(String nodeId) {
+        ClusterVoteTally tally = new ClusterVoteTally(nodeId, new InMemoryTallyTransport(store), 3600000, COMMIT_LAG_MS);
+        tally.initialize();
+        return tally;
+    }
+
+    private void vote(ClusterVoteTally tally, long choiceId) {
+        long id = nextVoteId++;
+        store.votes.put(id, choiceId);
+        tally.recordVote(vote(id, choiceId));
+    }
+
+    private static Vote vote(long id, long choiceId) {
+        Poll poll = new Poll();
+        poll.setId(POLL);
+        Choice choice = new Choice();
+        choice.setId(choiceId);
+
+        Vote vote = new Vote();
+        vote.setId(id);
+        vote.setPoll(poll);
+        vote.setChoice(choice);
+        return vote;
+    }
+
+    private static Map<Long, Long> counts(ClusterVoteTally tally) {
+        return tally.countByPollIdIn(Collections.singletonList(POLL)).stream()
+                .collect(Collectors.toMap(ChoiceVoteCount::getChoiceId, ChoiceVoteCount::getVoteCount));
+    }
+
+    /**
+     * Transporte en memoria: un registro compartido de publicaciones que cada instancia lee desde su propia posicion.
+     */
+    private static class InMemoryTallyTransport implements TallyTransport {
+        private final Store store;
+        private int position;
+        private int generation;
+
+        InMemoryTallyTransport(Store store) {
+            this.store = store;
+        }
+
+        @Override
+        public long ensureBaseline() {
+            return store.baselineMaxVoteId;
+        }
+
+        @Override
+        public long currentBaseline() {
+            return store.baselineMaxVoteId;
+        }
+
+        @Override
+        public long rebuildBaseline(long maxAgeMs) {
+            store.rebuild();
+            return store.baselineMaxVoteId;
+        }
+
+        @Override
+        public void publish(long baselineMaxVoteId, Collection<TallyDelta> deltas) {
+            if (baselineMaxVoteId == store.baselineMaxVoteId) {
+                store.log.addAll(deltas);
+            }
+        }
+
+        @Override
+        public List<TallyDelta> fetchChanges() {
+            // Despues de una reconstruccion el registro vuelve a empezar
+            if (store.generation != generation) {
+                return fetchAll();
+            }
+            List<TallyDelta> changes = new ArrayList<>(store.log.subList(position, store.log.size()));
+            position = store.log.size();
+            return changes;
+        }
+
+        @Override
+        public List<TallyDelta> fetchAll() {
+            generation = store.generation;
+            position = 0;
+            return fetchChanges();
+        }
+
+        static class Store {
+            private final List<TallyDelta> log = new ArrayList<>();
+            private final TreeMap<Long, Long> votes = new TreeMap<>();
+            private long baselineMaxVoteId;
+            private int generation;
+
+            void deliverAgain(TallyDelta delta) {
+                log.add(delta);
+            }
+
+            /**
+             * Cuenta todos los votos guardados en la linea base y descarta los contadores publicados.
+             */
+            void rebuild() {
+                rebuild(votes.isEmpty() ? baselineMaxVoteId : votes.lastKey());
+            }
+
+            /**
+             * Como rebuild(), pero la linea base solo llega hasta maxVoteId.
+             */
+            void rebuild(long maxVoteId) {
+                log.clear();
+                generation++;
+                baselineMaxVoteId = Math.max(baselineMaxVoteId, maxVoteId);
+                Map<Long, Long> counts = new TreeMap<>();
+                votes.headMap(baselineMaxVoteId, true).forEach((id, choiceId) -> counts.merge(choiceId, 1L, Long::sum));
+                counts.forEach((choiceId, count) -> log.add(new TallyDelta(JdbcTallyTransport.BASELINE_NODE, POLL, choiceId, count)));
+            }
+        }
+    }
+}
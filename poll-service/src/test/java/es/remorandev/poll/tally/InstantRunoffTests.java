@@ -0,0 +1,112 @@
+package es.remorandev.poll.tally;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InstantRunoffTests {
+
+    @Test
+    void rankingSurvivesAnEncodeAndDecodeRoundTrip() {
+        int[] positions = {3, 0, 5, 1};
+        assertArrayEquals(positions, InstantRunoff.decode(InstantRunoff.encode(positions)));
+        assertArrayEquals(new int[]{0}, InstantRunoff.decode(InstantRunoff.encode(new int[]{0})));
+    }
+
+    @Test
+    void lowestChoiceIsEliminatedAndItsBallotsTransferred() {
+        Map<Integer, Long> rankingCounts = new HashMap<>();
+        rankingCounts.put(InstantRunoff.encode(new int[]{0}), 4L);
+        rankingCounts.put(InstantRunoff.encode(new int[]{1, 2}), 3L);
+        rankingCounts.put(InstantRunoff.encode(new int[]{2, 1}), 2L);
+
+        InstantRunoff.Result result = InstantRunoff.run(3, rankingCounts);
+
+        // 4-3-2: sale la opcion 2 y sus papeletas pasan a la 1, que gana 5-4
+        assertEquals(2, result.getRounds().size());
+        assertEquals(2, result.getRounds().get(0).getEliminated());
+        assertEquals(5L, result.getRounds().get(1).getVotes(1));
+        assertEquals(1, result.getWinner());
+    }
+
+    @Test
+    void fullTieHasNoWinner() {
+        Map<Integer, Long> rankingCounts = new HashMap<>();
+        rankingCounts.put(InstantRunoff.encode(new int[]{0}), 2L);
+        rankingCounts.put(InstantRunoff.encode(new int[]{1}), 2L);
+
+        assertEquals(-1, InstantRunoff.run(2, rankingCounts).getWinner());
+        assertEquals(-1, InstantRunoff.run(2, Collections.emptyMap()).getWinner());
+    }
+
+    @Test
+    void groupedBallotsGiveTheSameWinnerAsCountingOneByOne() {
+        Random random = new Random(48);
+        for (int trial = 0; trial < 200; trial++) {
+            int choiceCount = 2 + random.nextInt(InstantRunoff.MAX_CHOICES - 1);
+            List<int[]> ballots = new ArrayList<>();
+            Map<Integer, Long> rankingCounts = new HashMap<>();
+            for (int b = 0; b < 50; b++) {
+                List<Integer> order = new ArrayList<>();
+                for (int i = 0; i < choiceCount; i++) {
+                    order.add(i);
+                }
+                Collections.shuffle(order, random);
+                int[] ballot = order.subList(0, 1 + random.nextInt(choiceCount)).stream().mapToInt(Integer::intValue).toArray();
+                ballots.add(ballot);
+                rankingCounts.merge(InstantRunoff.encode(ballot), 1L, Long::sum);
+            }
+
+            InstantRunoff.Result result = InstantRunoff.run(choiceCount, rankingCounts);
+            assertEquals(countOneByOne(choiceCount, ballots, result), result.getWinner());
+        }
+    }
+
+    /**
+     * Recuenta papeleta a papeleta eliminando lo mismo que el resultado agrupado y devuelve la opcion con mayoria.
+     */
+    private static int countOneByOne(int choiceCount, List<int[]> ballots, InstantRunoff.Result grouped) {
+        boolean[] continuing = new boolean[choiceCount];
+        Arrays.fill(continuing, true);
+        for (InstantRunoff.Round round : grouped.getRounds()) {
+            long[] votes = new long[choiceCount];
+            long active = 0;
+            for (int[] ballot : ballots) {
+                for (int position : ballot) {
+                    if (continuing[position]) {
+                        votes[position]++;
+                        active++;
+                        break;
+                    }
+                }
+            }
+            for (int i = 0; i < choiceCount; i++) {
+                assertEquals(continuing[i] ? votes[i] : 0, continuing[i] ? round.getVotes(i) : 0);
+            }
+            if (round.getEliminated() < 0) {
+                int leader = -1;
+                for (int i = 0; i < choiceCount; i++) {
+                    if (continuing[i] && (leader < 0 || votes[i] > votes[leader])) {
+                        leader = i;
+                    }
+                }
+                int remaining = 0;
+                for (boolean c : continuing) {
+                    remaining += c ? 1 : 0;
+                }
+                return active > 0 && (votes[leader] * 2 > active || remaining == 1) ? leader : -1;
+            }
+            continuing[round.getEliminated()] = false;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,177 @@
+package es.remorandev.poll.tally;
+
+import es.remorandev.poll.model.Choice;
+import es.remorandev.poll.model.ChoiceVoteCount;
+import es.remorandev.poll.model.Poll;
+import es.remorandev.poll.model.Vote;
+import es.remorandev.poll.repository.VoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Cuenta contra la base de datos local (polling_app_test, creada por las migraciones).
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:mysql://localhost:3307/polling_app_test?createDatabaseIfNotExist=true&useSSL=false&serverTimezone=UTC&useLegacyDatetimeCode=false"
+})
+class SnapshotVoteTallyTests {
+    private static final String INSERT_VOTE = "INSERT INTO votes (poll_id, user_id, choice_id, poll_period, created_at, updated_at) " +
+            "VALUES (?, ?, ?, 0, UTC_TIMESTAMP(), UTC_TIMESTAMP())";
+
+    // Mayor que lo que tarda cada prueba: la marca no avanza durante la prueba
+    private static final long COMMIT_LAG_MS = 60000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @TempDir
+    Path directory;
+
+    private Poll poll;
+    private Choice first;
+    private Choice second;
+
+    @BeforeEach
+    void createPoll() {
+        this.poll = new Poll();
+        this.poll.setExpirationDateTime(Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS));
+        this.poll.setId(insert("INSERT INTO polls (created_at, updated_at, expiration_date_time, question, version) " +
+                "VALUES (UTC_TIMESTAMP(), UTC_TIMESTAMP(), ?, 'Snapshot?', 0)", Timestamp.from(this.poll.getExpirationDateTime())));
+        this.first = choice("A");
+        this.second = choice("B");
+    }
+
+    @Test
+    void votesCommittedOutOfOrderAroundAColdStartAreCounted() throws Exception {
+        SnapshotVoteTally tally = tally();
+        try (Connection connection = this.dataSource.getConnection()) {
+            // El voto con el id menor se confirma despues de que el recuento arranque
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_VOTE)) {
+                statement.setLong(1, this.poll.getId());
+                statement.setLong(2, randomUserId());
+                statement.setLong(3, this.first.getId());
+                statement.executeUpdate();
+            }
+            insertVote(this.second);
+
+            tally.initialize();
+            assertEquals(counts(0, 1), count(tally));
+
+            connection.commit();
+        }
+
+        assertEquals(1, tally.catchUp());
+        assertEquals(counts(1, 1), count(tally));
+    }
+
+    @Test
+    void snapshotIsRestoredAndNewerVotesAreCountedOnce() throws Exception {
+        insertVote(this.first);
+        insertVote(this.second);
+
+        SnapshotVoteTally tally = tally();
+        tally.initialize();
+        assertEquals(counts(1, 1), count(tally));
+
+        // Un voto de esta instancia se cuenta al guardarse y catchUp no lo vuelve a contar
+        tally.recordVote(vote(insertVote(this.first), this.first));
+        assertEquals(0, tally.catchUp());
+        assertEquals(counts(2, 1), count(tally));
+        tally.shutdown();
+
+        insertVote(this.second);
+
+        // La instantanea recuerda los votos contados despues de su marca: solo se cuenta el nuevo
+        SnapshotVoteTally restored = tally();
+        restored.initialize();
+        assertEquals(counts(2, 2), count(restored));
+        assertEquals(0, restored.catchUp());
+        assertEquals(counts(2, 2), count(restored));
+    }
+
+    private SnapshotVoteTally tally() {
+        return new SnapshotVoteTally(this.jdbcTemplate, new DatabaseVoteTally(this.voteRepository),
+                this.directory.resolve("vote-tally.snapshot"), COMMIT_LAG_MS);
+    }
+
+    private Map<Long, Long> count(VoteTally tally) {
+        Map<Long, Long> counts = new HashMap<>();
+        for (ChoiceVoteCount count : tally.countByPollIdIn(Collections.singletonList(this.poll.getId()))) {
+            counts.put(count.getChoiceId(), count.getVoteCount());
+        }
+        return counts;
+    }
+
+    private Map<Long, Long> counts(long first, long second) {
+        Map<Long, Long> counts = new HashMap<>();
+        if (first > 0) {
+            counts.put(this.first.getId(), first);
+        }
+        if (second > 0) {
+            counts.put(this.second.getId(), second);
+        }
+        return counts;
+    }
+
+    private Choice choice(String text) {
+        Choice choice = new Choice(text);
+        choice.setId(insert("INSERT INTO choices (text, poll_id) VALUES (?, ?)", text, this.poll.getId()));
+        return choice;
+    }
+
+    private long insertVote(Choice choice) {
+        return insert(INSERT_VOTE, this.poll.getId(), randomUserId(), choice.getId());
+    }
+
+    private Vote vote(long id, Choice choice) {
+        Vote vote = new Vote();
+        vote.setId(id);
+        vote.setPoll(this.poll);
+        vote.setChoice(choice);
+        return vote;
+    }
+
+    private long insert(String sql, Object... args) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        this.jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    private static long randomUserId() {
+        return ThreadLocalRandom.current().nextLong(1L << 40, 1L << 50);
+    }
+}
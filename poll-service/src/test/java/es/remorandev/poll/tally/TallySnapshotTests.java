@@ -0,0 +1,62 @@
+package es.remorandev.poll.tally;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TallySnapshotTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotSurvivesAWriteAndReadRoundTrip() throws IOException {
+        Path file = directory.resolve("vote-tally.snapshot");
+        assertNull(TallySnapshot.read(file));
+
+        BitSet applied = new BitSet();
+        applied.set(0);
+        applied.set(70);
+        new TallySnapshot(1000L, 42L, applied.toLongArray(), Arrays.asList(
+                new TallySnapshot.PollEntry(1L, 5000L, new long[]{10L, 11L}, new long[]{3L, 4L}),
+                new TallySnapshot.PollEntry(2L, 6000L, new long[]{20L}, new long[]{1L})))
+                .write(file);
+
+        TallySnapshot snapshot = TallySnapshot.read(file);
+        assertEquals(1000L, snapshot.getCreatedAtMillis());
+        assertEquals(42L, snapshot.getMaxVoteId());
+        assertEquals(applied, BitSet.valueOf(snapshot.getApplied()));
+        assertEquals(2, snapshot.getPolls().size());
+        TallySnapshot.PollEntry first = snapshot.getPolls().get(0);
+        assertEquals(1L, first.getPollId());
+        assertEquals(5000L, first.getExpirationMillis());
+        assertArrayEquals(new long[]{10L, 11L}, first.getChoiceIds());
+        assertArrayEquals(new long[]{3L, 4L}, first.getVoteCounts());
+    }
+
+    @Test
+    void damagedSnapshotIsRejected() throws IOException {
+        Path file = directory.resolve("vote-tally.snapshot");
+        new TallySnapshot(1000L, 42L, new long[0], Arrays.asList(
+                new TallySnapshot.PollEntry(1L, 5000L, new long[]{10L}, new long[]{3L})))
+                .write(file);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            // Un recuento cambiado: el CRC ya no cuadra
+            raf.seek(raf.length() - 9);
+            raf.write(raf.readByte() ^ 1);
+        }
+
+        assertThrows(IOException.class, () -> TallySnapshot.read(file));
+    }
+}
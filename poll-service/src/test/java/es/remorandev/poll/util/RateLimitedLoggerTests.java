@@ -0,0 +1,59 @@
+package es.remorandev.poll.util;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RateLimitedLoggerTests {
+    private Logger logger;
+    private ListAppender<ILoggingEvent> appender;
+
+    @BeforeEach
+    void setUp() {
+        logger = (Logger) LoggerFactory.getLogger(RateLimitedLoggerTests.class);
+        appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    void writesAtMostThePermitsOfEachMessagePerInterval() {
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 3, Duration.ofHours(1));
+
+        for (int i = 0; i < 100; i++) {
+            rateLimitedLogger.warn("Invalid JWT token");
+            rateLimitedLogger.warn("Expired JWT token");
+        }
+
+        assertEquals(6, appender.list.size());
+    }
+
+    @Test
+    void reportsSuppressedMessagesWhenTheNextIntervalStarts() throws InterruptedException {
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 1, Duration.ofMillis(50));
+
+        for (int i = 0; i < 10; i++) {
+            rateLimitedLogger.info("User {} has already voted in Poll {}", i, 7);
+        }
+        Thread.sleep(60);
+        rateLimitedLogger.info("User {} has already voted in Poll {}", 10, 7);
+
+        assertEquals(2, appender.list.size());
+        assertEquals("User 0 has already voted in Poll 7", appender.list.get(0).getFormattedMessage());
+        assertEquals("User 10 has already voted in Poll 7 (9 similar messages suppressed)",
+                appender.list.get(1).getFormattedMessage());
+    }
+}
@@ -0,0 +1,114 @@
+package es.remorandev.poll.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTests {
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>("test", 10000, registry);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> singleFlight.execute(1L, () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return "poll 1";
+                })));
+            }
+
+            // Todos esperan a la primera carga antes de soltarla
+            while (registry.counter("app.singleflight.calls", "name", "test", "outcome", "collapsed").count() < 7) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("poll 1", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, registry.counter("app.singleflight.calls", "name", "test", "outcome", "leader").count());
+
+        // Terminada la carga, la siguiente llamada vuelve a cargar
+        assertEquals("again", singleFlight.execute(1L, () -> "again"));
+    }
+
+    @Test
+    void theFirstWaiterToTimeOutStartsTheNextLoadAndTheOthersJoinIt() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>("test", 300, registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch releaseSecond = new CountDownLatch(1);
+        AtomicInteger secondLoads = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute(1L, () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("load failed");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            List<Future<String>> waiters = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                waiters.add(executor.submit(() -> singleFlight.execute(1L, () -> {
+                    secondLoads.incrementAndGet();
+                    await(releaseSecond);
+                    return "second load";
+                })));
+            }
+
+            // La segunda carga no termina hasta que todos han dejado de esperar a la primera
+            while (registry.counter("app.singleflight.calls", "name", "test", "outcome", "timeout").count() < 4) {
+                Thread.sleep(5);
+            }
+            releaseSecond.countDown();
+
+            for (Future<String> waiter : waiters) {
+                assertEquals("second load", waiter.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, secondLoads.get());
+            assertEquals(2.0, registry.counter("app.singleflight.calls", "name", "test", "outcome", "leader").count());
+
+            // La primera carga sigue fallando para quien la empezo
+            release.countDown();
+            Exception ex = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
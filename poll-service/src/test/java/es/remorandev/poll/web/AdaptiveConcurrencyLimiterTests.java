@@ -0,0 +1,80 @@
+package es.remorandev.poll.web;
+
+import es.remorandev.poll.web.AdaptiveConcurrencyLimiter.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTests {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void limitGrowsWhileLatencyHoldsAndTheLimitIsInUse() {
+        // Con una ventana de 0 ms cada peticion que termina recalcula el limite
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 10, 200, 0);
+        acquire(limiter, Priority.CRITICAL, 15);
+
+        cycle(limiter, FAST, 20);
+        assertTrue(limiter.getLimit() > 20, "limit " + limiter.getLimit());
+        // Deja de crecer cuando ya no se usa ni la mitad
+        assertTrue(limiter.getLimit() <= 32, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void limitDoesNotGrowWhenItIsNotUsed() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 10, 200, 0);
+
+        cycle(limiter, FAST, 20);
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    void limitShrinksWhenLatencyRisesButNotBelowTheMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 20, 200, 0);
+        cycle(limiter, FAST, 5);
+        int before = limiter.getLimit();
+
+        cycle(limiter, SLOW, 5);
+        assertTrue(limiter.getLimit() < before, "limit " + limiter.getLimit() + " was " + before);
+
+        cycle(limiter, SLOW, 30);
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    void lowerPrioritiesAreShedFirst() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 10, 100);
+
+        acquire(limiter, Priority.LOW, 7);
+        assertFalse(limiter.tryAcquire(Priority.LOW));
+        acquire(limiter, Priority.HIGH, 2);
+        assertFalse(limiter.tryAcquire(Priority.HIGH));
+        acquire(limiter, Priority.CRITICAL, 1);
+        assertFalse(limiter.tryAcquire(Priority.CRITICAL));
+        assertEquals(10, limiter.getInFlight());
+
+        // Las plazas que se liberan solo las recupera quien cabe en su fraccion del limite
+        limiter.release();
+        limiter.release();
+        assertFalse(limiter.tryAcquire(Priority.LOW));
+        assertTrue(limiter.tryAcquire(Priority.HIGH));
+    }
+
+    private static void acquire(AdaptiveConcurrencyLimiter limiter, Priority priority, int permits) {
+        for (int i = 0; i < permits; i++) {
+            assertTrue(limiter.tryAcquire(priority), priority + " permit " + i);
+        }
+    }
+
+    private static void cycle(AdaptiveConcurrencyLimiter limiter, long rttNanos, int requests) {
+        for (int i = 0; i < requests; i++) {
+            assertTrue(limiter.tryAcquire(Priority.CRITICAL));
+            limiter.release(rttNanos);
+        }
+    }
+}
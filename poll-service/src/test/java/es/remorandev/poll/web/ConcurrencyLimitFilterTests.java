@@ -0,0 +1,79 @@
+package es.remorandev.poll.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.remorandev.poll.security.JwtTokenProvider;
+import es.remorandev.poll.security.UserPrincipal;
+import es.remorandev.poll.web.AdaptiveConcurrencyLimiter.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimitFilterTests {
+    private AdaptiveConcurrencyLimiter limiter;
+    private JwtTokenProvider tokenProvider;
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void createFilter() {
+        this.limiter = new AdaptiveConcurrencyLimiter(10, 1, 10, 100);
+        this.tokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(this.tokenProvider, "jwtSecret", "test-secret");
+        ReflectionTestUtils.setField(this.tokenProvider, "jwtExpirationInMs", 60000);
+        this.filter = new ConcurrencyLimitFilter(this.limiter, this.tokenProvider, new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void onlyAValidBearerTokenGetsAuthenticatedPriority() throws Exception {
+        // Ocupa todo lo que admite una peticion anonima
+        for (int i = 0; i < 7; i++) {
+            assertTrue(this.limiter.tryAcquire(Priority.LOW));
+        }
+
+        assertEquals(503, perform(request("x")).getStatus());
+        assertEquals(503, perform(request("Bearer forged.token.value")).getStatus());
+        assertEquals(200, perform(request("Bearer " + token())).getStatus());
+        assertEquals(7, this.limiter.getInFlight());
+    }
+
+    @Test
+    void asyncRequestsKeepTheirPermitUntilTheyComplete() throws Exception {
+        MockHttpServletRequest request = request(null);
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        this.filter.doFilter(request, response, (req, res) -> req.startAsync());
+        assertEquals(1, this.limiter.getInFlight());
+
+        request.getAsyncContext().complete();
+        assertEquals(0, this.limiter.getInFlight());
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        this.filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String authorization) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/polls");
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        return request;
+    }
+
+    private String token() {
+        UserPrincipal principal = new UserPrincipal(1L, "User", "user", "user@x.es", "secret", Collections.emptyList());
+        return this.tokenProvider.generateToken(new UsernamePasswordAuthenticationToken(principal, null));
+    }
+}